@@ -0,0 +1,128 @@
+package com.shiori.backend;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// ChapterNumber keys against the BigDecimal parsing they replace, on aggregate shaped labels
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChapterNumberBenchmark {
+
+    // chapters in the series, every tenth has a .5 and every fiftieth an extra next to it
+    @Param({"100", "1000"})
+    int chapters;
+
+    private String[] labels;
+    private ChapterIndex index;
+    private String lastRead;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<String> out = new ArrayList<>();
+        for (int i = 1; i <= chapters; i++) {
+            out.add(Integer.toString(i));
+            if (i % 10 == 0) out.add(i + ".5");
+            if (i % 50 == 0) out.add("Extra " + i);
+        }
+        // aggregate keys come in volume order, not sorted
+        Collections.shuffle(out, new Random(42));
+        labels = out.toArray(String[]::new);
+        index = ChapterIndex.of(out);
+        lastRead = Integer.toString(chapters / 2);
+    }
+
+    // what MangaDexParser.readMaxChapter did before
+    @Benchmark
+    public String maxBigDecimal() {
+        String best = null;
+        BigDecimal bestNum = null;
+        for (String label : labels) {
+            try {
+                BigDecimal num = new BigDecimal(label);
+                if (bestNum == null || num.compareTo(bestNum) > 0) {
+                    bestNum = num;
+                    best = label;
+                }
+            } catch (NumberFormatException ignore) {
+                // not numbered
+            }
+        }
+        return best;
+    }
+
+    @Benchmark
+    public String maxEncoded() {
+        String best = null;
+        long bestKey = ChapterNumber.ABSENT;
+        for (String label : labels) {
+            long key = ChapterNumber.encode(label);
+            if (ChapterNumber.isNumber(key) && key > bestKey) {
+                bestKey = key;
+                best = label;
+            }
+        }
+        return best;
+    }
+
+    // sorted distinct numbers the old way, against building the index
+    @Benchmark
+    public BigDecimal[] sortBigDecimal() {
+        List<BigDecimal> numbers = new ArrayList<>(labels.length);
+        for (String label : labels) {
+            try {
+                numbers.add(new BigDecimal(label));
+            } catch (NumberFormatException ignore) {
+                // not numbered
+            }
+        }
+        return numbers.stream().distinct().sorted().toArray(BigDecimal[]::new);
+    }
+
+    @Benchmark
+    public ChapterIndex buildIndex() {
+        ChapterIndex.Builder b = new ChapterIndex.Builder(labels.length);
+        for (String label : labels) b.add(label);
+        return b.build();
+    }
+
+    // chapters behind by parsing every label, against a binary search in a built index
+    @Benchmark
+    public int behindBigDecimal() {
+        BigDecimal read = new BigDecimal(lastRead);
+        int behind = 0;
+        for (String label : labels) {
+            try {
+                if (new BigDecimal(label).compareTo(read) > 0) behind++;
+            } catch (NumberFormatException ignore) {
+                // not numbered
+            }
+        }
+        return behind;
+    }
+
+    @Benchmark
+    public int behindIndex() {
+        return index.behind(lastRead);
+    }
+}
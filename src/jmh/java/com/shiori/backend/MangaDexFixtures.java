@@ -0,0 +1,117 @@
+package com.shiori.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// benchmark payloads, small ones are the recorded fixtures from src/test/resources/mangadex,
+// larger ones repeat the recorded items with fresh ids so field shapes match real responses
+final class MangaDexFixtures {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private MangaDexFixtures() {}
+
+    static byte[] recorded(String name) {
+        try (InputStream in = MangaDexFixtures.class.getResourceAsStream("/mangadex/" + name)) {
+            if (in == null) throw new IllegalStateException("missing fixture " + name);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static ObjectNode recordedTree(String name) {
+        try {
+            return (ObjectNode) MAPPER.readTree(recorded(name));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // /manga search response with size results
+    static byte[] search(int size) {
+        ObjectNode root = recordedTree("search.json");
+        List<JsonNode> templates = items(root);
+        if (size == templates.size()) return recorded("search.json");
+        ArrayNode data = root.putArray("data");
+        for (int i = 0; i < size; i++) {
+            ObjectNode manga = (ObjectNode) templates.get(i % templates.size()).deepCopy();
+            manga.put("id", String.format("b0000000-0000-4000-8000-%012d", i));
+            data.add(manga);
+        }
+        root.put("limit", size).put("total", size);
+        return bytes(root);
+    }
+
+    // /manga/{id}/feed response newest first, numbered chapters with the odd extra and multi group item
+    static byte[] feed(int chapters) {
+        ObjectNode root = recordedTree("feed.json");
+        List<JsonNode> templates = items(root);
+        ArrayNode data = root.putArray("data");
+        Instant newest = Instant.parse("2024-05-01T10:00:00Z");
+        for (int i = 0; i < chapters; i++) {
+            ObjectNode chapter = (ObjectNode) templates.get(i % templates.size()).deepCopy();
+            chapter.put("id", String.format("c0000000-0000-4000-8000-%012d", i));
+            ObjectNode attrs = (ObjectNode) chapter.get("attributes");
+            if (attrs.hasNonNull("chapter")) {
+                attrs.put("chapter", Integer.toString(chapters - i));
+                attrs.put("volume", Integer.toString((chapters - i) / 10 + 1));
+            }
+            String readableAt = newest.minusSeconds(86_400L * i).toString().replace("Z", "+00:00");
+            if (!attrs.path("readableAt").asText().isEmpty()) attrs.put("readableAt", readableAt);
+            attrs.put("createdAt", readableAt);
+            data.add(chapter);
+        }
+        root.put("limit", chapters).put("total", chapters);
+        return bytes(root);
+    }
+
+    // /manga/{id}/aggregate with volumes of chaptersPerVolume each, plus a "none" volume of extras
+    static byte[] aggregate(int volumes, int chaptersPerVolume) {
+        ObjectNode root = MAPPER.createObjectNode().put("result", "ok");
+        ObjectNode vols = root.putObject("volumes");
+        ObjectNode none = vols.putObject("none").put("volume", "none").put("count", 2);
+        ObjectNode extras = none.putObject("chapters");
+        extras.set("Extra", chapterNode("Extra", "x0"));
+        extras.set("Special", chapterNode("Special", "x1"));
+        int n = 1;
+        for (int v = volumes; v >= 1; v--) {
+            ObjectNode vol = vols.putObject(Integer.toString(v)).put("volume", Integer.toString(v)).put("count", chaptersPerVolume);
+            ObjectNode chs = vol.putObject("chapters");
+            for (int c = 0; c < chaptersPerVolume; c++, n++) {
+                // every fifth chapter has a half step like "41.5"
+                String key = c % 5 == 4 ? (n - 1) + ".5" : Integer.toString(n);
+                chs.set(key, chapterNode(key, "c" + n));
+            }
+        }
+        return bytes(root);
+    }
+
+    private static ObjectNode chapterNode(String chapter, String id) {
+        ObjectNode node = MAPPER.createObjectNode().put("chapter", chapter).put("id", id).put("count", 2);
+        node.putArray("others").add(id + "b");
+        return node;
+    }
+
+    static List<JsonNode> items(JsonNode root) {
+        List<JsonNode> out = new ArrayList<>();
+        root.path("data").forEach(out::add);
+        return out;
+    }
+
+    static byte[] bytes(JsonNode node) {
+        try {
+            return MAPPER.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.shiori.backend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shiori.backend.dto.ChapterResult;
+
+// the per item pieces of MangaDexParser and the aggregate scan
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MangaDexParserBenchmark {
+
+    private final MangaDexParser parser = new MangaDexParser();
+    private final JsonFactory json = new JsonFactory();
+
+    // title/altTitles pairs of the recorded search results, en main title, ko with alts, alt only
+    private JsonNode[] titles;
+    private JsonNode[] alts;
+    // one recorded chapter object, scanlation group included
+    private byte[] chapter;
+
+    @State(Scope.Benchmark)
+    public static class AggregateState {
+        // volumes x 10 chapters, 1000 is a long running series
+        @Param({"10", "100"})
+        int volumes;
+
+        byte[] aggregate;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            aggregate = MangaDexFixtures.aggregate(volumes, 10);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<JsonNode> manga = MangaDexFixtures.items(MangaDexFixtures.recordedTree("search.json"));
+        titles = manga.stream().map(m -> m.path("attributes").path("title")).toArray(JsonNode[]::new);
+        alts = manga.stream().map(m -> m.path("attributes").path("altTitles")).toArray(JsonNode[]::new);
+        chapter = MangaDexFixtures.bytes(MangaDexFixtures.items(MangaDexFixtures.recordedTree("feed.json")).get(0));
+    }
+
+    @Benchmark
+    public void pickTitle(Blackhole bh) {
+        for (int i = 0; i < titles.length; i++) {
+            bh.consume(parser.pickTitle(titles[i], alts[i]));
+        }
+    }
+
+    @Benchmark
+    public ChapterResult toChapterResult() throws IOException {
+        try (JsonParser p = json.createParser(chapter)) {
+            p.nextToken();
+            return parser.toChapterResult(p);
+        }
+    }
+
+    @Benchmark
+    public String aggregateMaxChapter(AggregateState s) throws IOException {
+        return parser.readMaxChapter(new ByteArrayInputStream(s.aggregate));
+    }
+}
@@ -0,0 +1,169 @@
+package com.shiori.backend;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shiori.backend.dto.ChapterResult;
+import com.shiori.backend.dto.MangaSearchResult;
+
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+// MangaDexService end to end with MangaDexClient stubbed to answer from memory:
+// rate limiter, single flight, cache miss, streaming parse. every call uses a new key so the caches never hit
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MangaDexServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SearchState {
+        // 3 is the recorded response, 100 the largest page mangadex hands out
+        @Param({"3", "100"})
+        int results;
+
+        MangaDexService service;
+        long n;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            service = service(MangaDexFixtures.search(results), new byte[0]);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FeedState {
+        @Param({"100", "500"})
+        int chapters;
+
+        MangaDexService service;
+        long n;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            service = service(new byte[0], MangaDexFixtures.feed(chapters));
+        }
+    }
+
+    @Benchmark
+    public List<MangaSearchResult> searchResults(SearchState s) {
+        return s.service.searchResults("berserk " + s.n++, s.results);
+    }
+
+    @Benchmark
+    public List<ChapterResult> getFeed(FeedState s) {
+        return s.service.getFeed("manga-" + s.n++, s.chapters, "en");
+    }
+
+    static MangaDexService service(byte[] search, byte[] feed) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // observations on, like in production, so their cost shows up in the numbers
+        ObservationRegistry observations = ObservationRegistry.create();
+        observations.observationConfig().observationHandler(new DefaultMeterObservationHandler(registry));
+
+        MangaDexRateLimitProperties limits = new MangaDexRateLimitProperties();
+        limits.setPermitsPerSecond(1e9);
+        limits.setBurst(1_000_000_000);
+
+        MangaDexResilienceProperties resilience = new MangaDexResilienceProperties();
+
+        ChapterSyncProperties sync = new ChapterSyncProperties();
+        sync.setServeLocal(false);
+
+        return new MangaDexService(
+            new StubClient(search, feed),
+            new SingleFlight(registry),
+            new MangaDexRateLimiter(limits, registry),
+            new ChapterService(null, null, null, sync, null),
+            new TrigramTitleIndex(new TitleSearchProperties()),
+            new MangaDexCacheProperties(),
+            new MangaDexDeltaProperties(),
+            new MangaDexResilience(resilience, registry),
+            resilience,
+            registry,
+            observations);
+    }
+
+    // answers every call with a fixed body, like a warm connection to a very fast mangadex
+    static final class StubClient implements MangaDexClient {
+        private static final Request REQUEST = Request.create(Request.HttpMethod.GET, "https://api.mangadex.org",
+            Map.of(), null, StandardCharsets.UTF_8, null);
+
+        private final byte[] search;
+        private final byte[] feed;
+
+        StubClient(byte[] search, byte[] feed) {
+            this.search = search;
+            this.feed = feed;
+        }
+
+        private static Response ok(byte[] body) {
+            return Response.builder().status(200).reason("OK").request(REQUEST).headers(Map.of()).body(body).build();
+        }
+
+        @Override
+        public Response search(String title, int limit, String includes, String contentRating) {
+            return ok(search);
+        }
+
+        @Override
+        public Response feedPage(String id, List<String> translatedLanguages, int limit, int offset,
+                                 String orderReadableAt, String includes, String contentRating) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Response byIds(List<String> ids, int limit, String includes, List<String> contentRating) {
+            return ok(search);
+        }
+
+        @Override
+        public Response feed(String id, String translatedLanguage, int limit, String orderReadableAt,
+                             String includes, String contentRating) {
+            return ok(feed);
+        }
+
+        @Override
+        public Response feedSince(String id, String translatedLanguage, int limit, int offset, String orderReadableAt,
+                                  String publishAtSince, int includeFuturePublishAt, String includes, String contentRating) {
+            return ok(feed);
+        }
+
+        @Override
+        public Response feedUpdatedSince(String id, String translatedLanguage, int limit, String orderReadableAt,
+                                         String updatedAtSince, String includes, String contentRating) {
+            return ok(feed);
+        }
+
+        @Override
+        public Response aggregate(String id, String translatedLanguage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Response chapterByNumber(String mangaId, String chapter, String translatedLanguage, String order,
+                                        int limit, String contentRating, String includes) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.shiori.backend;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+// capacity numbers for /api/md/* and /api/manga without touching mangadex or postgres.
+// starts MangaDexStub, then shiori in this jvm pointed at it, on h2 in postgres mode with the flyway schema,
+// seeds the library and runs a closed loop workload: concurrency virtual users each sending their next request
+// as soon as the last one was answered, picked from a weighted mix of scenarios. every concurrency step gets a
+// warmup and a measured run, throughput and latency percentiles per scenario are printed and written to
+// target/loadtest/<commit>-<time>.json, so runs of different commits compare on the same numbers.
+//   mvn -Ploadtest test-compile exec:exec -Dloadtest.args="concurrency=16,64,256 duration=60s latency=80ms"
+// options, key=value:
+//   concurrency (64): virtual users, a comma separated list runs one step each, the knee in req/s is saturation
+//   duration (30s) / warmup (10s): measured time and unmeasured time before it, per step
+//   mix (library:3,manga:2,typeahead:2,search:1,feed:2,latest:2): scenario weights, see SCENARIOS
+//   titles (2000): manga rows seeded into the library
+//   ids (500): distinct mangadex ids the /api/md scenarios pick from, fewer ids means more cache hits
+//   latency (50ms) / jitter (50ms) / error-rate (0) / throttle-rate (0) / stub-rps (0): MangaDexStub behaviour
+//   out (target/loadtest): where the json report goes
+// --name=value is passed on to shiori, e.g. --shiori.mangadex.http.client=jdk. the mangadex rate limit is
+// lifted by default so the numbers are shiori's, --shiori.mangadex.rate-limit.permits-per-second=5 puts it back
+public final class LoadTest {
+
+    private static final String[] WORDS = {
+        "Blade", "Moon", "Crimson", "Garden", "Silent", "Dragon", "Spring", "Ghost", "Iron", "Summer",
+        "Star", "Shadow", "Ocean", "Frost", "Clockwork", "Lantern", "River", "Hollow", "Sakura", "Thunder"};
+
+    private static final Map<String, Function<LoadTest, String>> SCENARIOS = Map.of(
+        // a library page, now and then filtered by status
+        "library", t -> "/api/manga?limit=50" + (t.random().nextInt(4) == 0 ? "&status=ONGOING" : ""),
+        "manga", t -> "/api/manga/" + t.libraryId(),
+        // local title search, answered from the title index
+        "typeahead", t -> "/api/md/search?title=" + t.prefix(),
+        // mangadex search, one cache entry per distinct title
+        "search", t -> "/api/md/search?remote=true&title=" + t.title(),
+        "feed", t -> "/api/md/manga/" + t.mangadexId() + "/feed?limit=10&lang=en",
+        "latest", t -> "/api/md/manga/" + t.mangadexId() + "/latest?lang=en");
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_KEYS = {"p50Millis", "p90Millis", "p99Millis", "p999Millis"};
+
+    // users and the client run on platform threads, off the virtual thread scheduler shiori uses, so a stalled
+    // carrier shows up as shiori's latency instead of also holding up the load
+    private final HttpClient http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+    private final String baseUrl;
+    private final List<String> titles;
+    private final List<String> mangadexIds;
+    private final long firstId;
+    private final int ids;
+
+    private LoadTest(String baseUrl, List<String> titles, List<String> mangadexIds, long firstId, int ids) {
+        this.baseUrl = baseUrl;
+        this.titles = titles;
+        this.mangadexIds = mangadexIds;
+        this.firstId = firstId;
+        this.ids = Math.max(1, Math.min(ids, mangadexIds.size()));
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Map<String, String> args = new LinkedHashMap<>();
+        Map<String, String> spring = new LinkedHashMap<>();
+        boolean stubOnly = false;
+        for (String arg : argv) {
+            if (arg.equals("stub")) {
+                stubOnly = true;
+            } else if (arg.startsWith("--") && arg.contains("=")) {
+                spring.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else if (arg.contains("=")) {
+                args.put(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                throw new IllegalArgumentException("expected key=value or --spring.property=value, got " + arg);
+            }
+        }
+        MangaDexStub.Options stubOptions = MangaDexStub.Options.of(args);
+
+        if (stubOnly) {
+            MangaDexStub stub = new MangaDexStub(Integer.parseInt(args.getOrDefault("port", "8089")), stubOptions);
+            System.out.println("MangaDex stub on " + stub.baseUrl() + ", " + stubOptions);
+            Thread.currentThread().join();
+            return;
+        }
+
+        try (MangaDexStub stub = new MangaDexStub(0, stubOptions)) {
+            ConfigurableApplicationContext context = SpringApplication.run(ShioriApplication.class,
+                springArgs(stub.baseUrl(), args.getOrDefault("out", "target/loadtest"), spring));
+            try {
+                run(context, stub, args);
+            } finally {
+                context.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    // shiori on the stub and an in memory h2, quiet logs. command line arguments so they win over application.properties
+    private static String[] springArgs(String stubUrl, String out, Map<String, String> overrides) {
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("server.port", "0");
+        props.put("spring.datasource.url",
+            "jdbc:h2:mem:shiori;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;NON_KEYWORDS=YEAR,VALUE;DB_CLOSE_DELAY=-1");
+        props.put("spring.datasource.username", "sa");
+        props.put("spring.datasource.password", "");
+        props.put("spring.datasource.hikari.maximum-pool-size", "20");
+        props.put("spring.jpa.properties.jakarta.persistence.database-product-name", "H2");
+        props.put("spring.jpa.show-sql", "false");
+        props.put("shiori.mangadex.http.base-url", stubUrl);
+        props.put("shiori.mangadex.rate-limit.permits-per-second", "100000");
+        props.put("shiori.mangadex.rate-limit.burst", "100000");
+        props.put("shiori.sync.enabled", "false");
+        props.put("shiori.refresh.enabled", "false");
+        props.put("shiori.search.mode", "memory");
+        props.put("shiori.covers.dir", out + "/covers");
+        props.put("logging.level.root", "WARN");
+        props.put("logging.level.com.shiori.backend.StartupReport", "INFO");
+        props.putAll(overrides);
+        return props.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue()).toArray(String[]::new);
+    }
+
+    private static void run(ConfigurableApplicationContext context, MangaDexStub stub, Map<String, String> args)
+            throws Exception {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        int titleCount = Integer.parseInt(args.getOrDefault("titles", "2000"));
+        List<String> titles = new ArrayList<>(titleCount);
+        List<String> mangadexIds = new ArrayList<>(titleCount);
+        long firstId = seed(context, titleCount, titles, mangadexIds);
+        LoadTest test = new LoadTest("http://127.0.0.1:" + port, titles, mangadexIds, firstId,
+            Integer.parseInt(args.getOrDefault("ids", "500")));
+
+        Map<String, Integer> mix = mix(args.getOrDefault("mix", "library:3,manga:2,typeahead:2,search:1,feed:2,latest:2"));
+        Duration warmup = DurationStyle.detectAndParse(args.getOrDefault("warmup", "10s"));
+        Duration duration = DurationStyle.detectAndParse(args.getOrDefault("duration", "30s"));
+        List<Map<String, Object>> steps = new ArrayList<>();
+        for (String c : args.getOrDefault("concurrency", "64").split(",")) {
+            steps.add(test.step(Integer.parseInt(c.trim()), mix, warmup, duration, stub));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("commit", commit());
+        report.put("time", LocalDateTime.now().toString());
+        report.put("java", System.getProperty("java.version"));
+        report.put("cpus", Runtime.getRuntime().availableProcessors());
+        report.put("options", args);
+        report.put("stub", stub.options().toString());
+        report.put("steps", steps);
+        Path dir = Path.of(args.getOrDefault("out", "target/loadtest"));
+        Files.createDirectories(dir);
+        Path file = dir.resolve(report.get("commit") + "-"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+
+        Map<String, Object> peak = steps.stream()
+            .max((a, b) -> Double.compare((double) a.get("throughput"), (double) b.get("throughput"))).orElseThrow();
+        System.out.printf("%npeak %.0f req/s at concurrency %s, report in %s%n",
+            (double) peak.get("throughput"), peak.get("concurrency"), file);
+    }
+
+    // titleCount manga rows in jdbc batches, then the memory title index picks them up
+    private static long seed(ConfigurableApplicationContext context, int titleCount, List<String> titles,
+                             List<String> mangadexIds) {
+        Random random = new Random(42);
+        for (int i = 0; i < titleCount; i++) {
+            titles.add(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i);
+            mangadexIds.add(UUID.nameUUIDFromBytes(("manga-" + i).getBytes(StandardCharsets.UTF_8)).toString());
+        }
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        jdbc.batchUpdate("insert into manga (title, mangadex_id, year, cover_image_url, status, created_at, updated_at) "
+            + "values (?, ?, ?, ?, ?, now(), now())", new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setString(1, titles.get(i));
+                    ps.setString(2, mangadexIds.get(i));
+                    ps.setInt(3, 1990 + i % 35);
+                    ps.setString(4, "https://uploads.mangadex.org/covers/" + mangadexIds.get(i) + "/cover.jpg");
+                    ps.setString(5, Manga.MangaStatus.values()[i % Manga.MangaStatus.values().length].name());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return titles.size();
+                }
+            });
+        context.getBean(TitleSearchService.class).reindex(mangadexIds);
+        Long first = jdbc.queryForObject("select min(id) from manga", Long.class);
+        return first != null ? first : 1;
+    }
+
+    private Map<String, Object> step(int concurrency, Map<String, Integer> mix, Duration warmup, Duration duration,
+                                     MangaDexStub stub) throws InterruptedException {
+        List<String> picks = new ArrayList<>();
+        mix.forEach((name, weight) -> {
+            for (int i = 0; i < weight; i++) picks.add(name);
+        });
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        mix.keySet().forEach(name -> scenarios.put(name, new Scenario()));
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        System.out.printf("%nconcurrency %d: %ds warmup, %ds measured%n", concurrency, warmup.toSeconds(), duration.toSeconds());
+        try (ExecutorService users = Executors.newThreadPerTaskExecutor(Thread.ofPlatform().name("user-", 0).factory())) {
+            users.submit(() -> {
+                // upstream counts of the measured part only
+                sleepUntil(measureFrom);
+                stub.countsThenReset();
+            });
+            for (int u = 0; u < concurrency; u++) {
+                users.submit(() -> {
+                    while (true) {
+                        String name = picks.get(ThreadLocalRandom.current().nextInt(picks.size()));
+                        long sent = System.nanoTime();
+                        if (sent >= end) return;
+                        int status = send(SCENARIOS.get(name).apply(this));
+                        long took = System.nanoTime() - sent;
+                        if (sent >= measureFrom) scenarios.get(name).record(status, took);
+                    }
+                });
+            }
+        }
+        Map<String, Long> upstream = stub.countsThenReset();
+
+        double seconds = duration.toNanos() / 1e9;
+        Histogram all = new Histogram(3);
+        long total = 0;
+        System.out.printf("%-10s %9s %9s %8s %8s %8s %8s %8s %8s %8s%n",
+            "scenario", "requests", "req/s", "shed", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map.Entry<String, Scenario> e : scenarios.entrySet()) {
+            Scenario s = e.getValue();
+            all.add(s.latency);
+            total += s.latency.getTotalCount();
+            rows.add(row(e.getKey(), s.latency, s.shed.sum(), s.errors.sum(), seconds));
+        }
+        Map<String, Object> totals = row("total", all,
+            scenarios.values().stream().mapToLong(s -> s.shed.sum()).sum(),
+            scenarios.values().stream().mapToLong(s -> s.errors.sum()).sum(), seconds);
+        System.out.printf("upstream: %d ok, %d failed, %d throttled%n",
+            upstream.get("ok"), upstream.get("failed"), upstream.get("throttled"));
+
+        Map<String, Object> step = new LinkedHashMap<>();
+        step.put("concurrency", concurrency);
+        step.put("requests", total);
+        step.put("throughput", total / seconds);
+        step.put("total", totals);
+        step.put("scenarios", rows);
+        step.put("upstream", upstream);
+        return step;
+    }
+
+    // prints one table row and returns it for the json report
+    private static Map<String, Object> row(String name, Histogram h, long shed, long errors, double seconds) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("scenario", name);
+        row.put("requests", h.getTotalCount());
+        row.put("throughput", h.getTotalCount() / seconds);
+        row.put("shed", shed);
+        row.put("errors", errors);
+        StringBuilder line = new StringBuilder(String.format("%-10s %9d %9.1f %8d %8d",
+            name, h.getTotalCount(), h.getTotalCount() / seconds, shed, errors));
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            double ms = h.getValueAtPercentile(PERCENTILES[i]) / 1000.0;
+            row.put(PERCENTILE_KEYS[i], ms);
+            line.append(String.format(" %8.1f", ms));
+        }
+        row.put("maxMillis", h.getMaxValue() / 1000.0);
+        line.append(String.format(" %8.1f", h.getMaxValue() / 1000.0));
+        System.out.println(line);
+        return row;
+    }
+
+    // the status, or 0 when there was no answer
+    private int send(String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(30))
+            .header("Accept-Encoding", "gzip")
+            .GET()
+            .build();
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    // latencies in microseconds up to a minute, 503 and 429 count as shed load rather than errors
+    private static final class Scenario {
+        final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        final LongAdder shed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        void record(int status, long nanos) {
+            latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), latency.getHighestTrackableValue()));
+            if (status == 503 || status == 429) shed.increment();
+            else if (status < 200 || status >= 400) errors.increment();
+        }
+    }
+
+    private ThreadLocalRandom random() {
+        return ThreadLocalRandom.current();
+    }
+
+    private long libraryId() {
+        return firstId + random().nextInt(titles.size());
+    }
+
+    private String mangadexId() {
+        return mangadexIds.get(random().nextInt(ids));
+    }
+
+    // the first word and part of the second, the way a typeahead query grows
+    private String prefix() {
+        String title = titles.get(random().nextInt(titles.size()));
+        int cut = title.indexOf(' ') + 3;
+        return encode(title.substring(0, Math.min(cut, title.length())));
+    }
+
+    private String title() {
+        return encode(WORDS[random().nextInt(WORDS.length)] + " " + random().nextInt(ids));
+    }
+
+    private static String encode(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Integer> mix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (!SCENARIOS.containsKey(kv[0])) {
+                throw new IllegalArgumentException("unknown scenario " + kv[0] + ", one of " + SCENARIOS.keySet());
+            }
+            int weight = kv.length > 1 ? Integer.parseInt(kv[1]) : 1;
+            if (weight > 0) mix.put(kv[0], weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("empty mix");
+        return mix;
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long left = nanoTime - System.nanoTime();
+        if (left <= 0) return;
+        try {
+            Thread.sleep(Duration.ofNanos(left));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // git describe of the working tree, dirty when it has changes, so a report names what was measured
+    private static String commit() {
+        try {
+            Process git = new ProcessBuilder("git", "describe", "--always", "--dirty").redirectErrorStream(true).start();
+            String out = new String(git.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+            return git.waitFor() == 0 && !out.isEmpty() ? out : "unknown";
+        } catch (IOException | InterruptedException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.shiori.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// stand-in for api.mangadex.org answering /manga, /manga/{id}/feed, /manga/{id}/aggregate and /chapter with
+// the recorded payloads in src/test/resources/mangadex, the same bytes whatever the id. every answer is held back
+// by latency plus up to jitter. a share of calls fails with 503 (errorRate) or is refused with a 429 and
+// Retry-After (throttleRate), and calls past rps in one second get a 429 right away, like mangadex's own limit.
+// on its own, for pointing a running instance at it (shiori.mangadex.http.base-url=http://127.0.0.1:<port>):
+//   mvn -Ploadtest test-compile exec:exec -Dloadtest.args="stub port=8089 latency=80ms throttle-rate=0.01"
+final class MangaDexStub implements AutoCloseable {
+
+    // rps 0 is no limit
+    record Options(Duration latency, Duration jitter, double errorRate, double throttleRate, int rps) {
+
+        static Options of(Map<String, String> args) {
+            return new Options(
+                DurationStyle.detectAndParse(args.getOrDefault("latency", "50ms")),
+                DurationStyle.detectAndParse(args.getOrDefault("jitter", "50ms")),
+                Double.parseDouble(args.getOrDefault("error-rate", "0")),
+                Double.parseDouble(args.getOrDefault("throttle-rate", "0")),
+                Integer.parseInt(args.getOrDefault("stub-rps", "0")));
+        }
+    }
+
+    private static final byte[] NOT_FOUND = error(404, "not_found_http_exception", "no such endpoint on the stub");
+    private static final byte[] UNAVAILABLE = error(503, "service_unavailable_http_exception", "injected by the stub");
+    private static final byte[] THROTTLED = error(429, "too_many_requests_http_exception", "injected by the stub");
+
+    private final Options options;
+    private final HttpServer server;
+    // platform threads, the stub stands for a remote server and shouldn't share a scheduler with shiori
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+        Thread.ofPlatform().daemon().name("stub-", 0).factory());
+    private final byte[] search = recorded("search.json");
+    private final byte[] feed = recorded("feed.json");
+    private final byte[] aggregate = recorded("aggregate.json");
+
+    // fixed one second windows for the rps limit
+    private final AtomicLong window = new AtomicLong();
+    private final AtomicInteger inWindow = new AtomicInteger();
+
+    final LongAdder ok = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    final LongAdder throttled = new LongAdder();
+
+    MangaDexStub(int port, Options options) throws IOException {
+        this.options = options;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 4096);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    Options options() {
+        return options;
+    }
+
+    // upstream calls answered since the last reset, by outcome
+    Map<String, Long> countsThenReset() {
+        return Map.of("ok", ok.sumThenReset(), "failed", failed.sumThenReset(), "throttled", throttled.sumThenReset());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] payload = payload(exchange.getRequestURI().getPath());
+            if (payload == null) {
+                send(exchange, 404, NOT_FOUND);
+                return;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (overLimit() || random.nextDouble() < options.throttleRate()) {
+                long retryAt = System.currentTimeMillis() / 1000 + 1;
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.getResponseHeaders().set("X-RateLimit-Retry-After", Long.toString(retryAt));
+                throttled.increment();
+                send(exchange, 429, THROTTLED);
+                return;
+            }
+            delay(random);
+            if (random.nextDouble() < options.errorRate()) {
+                failed.increment();
+                send(exchange, 503, UNAVAILABLE);
+                return;
+            }
+            ok.increment();
+            send(exchange, 200, payload);
+        }
+    }
+
+    // a /chapter answer is the same collection shape as a feed page
+    private byte[] payload(String path) {
+        if (path.equals("/manga")) return search;
+        if (path.equals("/chapter")) return feed;
+        if (path.startsWith("/manga/") && path.endsWith("/feed")) return feed;
+        if (path.startsWith("/manga/") && path.endsWith("/aggregate")) return aggregate;
+        return null;
+    }
+
+    private boolean overLimit() {
+        if (options.rps() <= 0) return false;
+        long second = System.nanoTime() / 1_000_000_000L;
+        long current = window.get();
+        if (current != second && window.compareAndSet(current, second)) inWindow.set(0);
+        return inWindow.incrementAndGet() > options.rps();
+    }
+
+    private void delay(ThreadLocalRandom random) {
+        long nanos = options.latency().toNanos();
+        long jitter = options.jitter().toNanos();
+        if (jitter > 0) nanos += random.nextLong(jitter + 1);
+        if (nanos <= 0) return;
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static byte[] error(int status, String title, String detail) {
+        return ("{\"result\":\"error\",\"errors\":[{\"status\":" + status + ",\"title\":\"" + title
+            + "\",\"detail\":\"" + detail + "\"}]}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] recorded(String name) {
+        try (InputStream in = MangaDexStub.class.getResourceAsStream("/mangadex/" + name)) {
+            if (in == null) throw new IllegalStateException("missing fixture " + name);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
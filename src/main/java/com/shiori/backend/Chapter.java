@@ -0,0 +1,134 @@
+package com.shiori.backend;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+// a mangadex chapter stored locally by the chapter sync job
+@Entity
+@Table(indexes = {
+    @Index(name = "idx_chapter_manga_lang_readable", columnList = "manga_id, lang, readableAt"),
+    @Index(name = "idx_chapter_manga_lang_number", columnList = "manga_id, lang, chapterNumber")
+})
+public class Chapter {
+
+    // pooled sequence so upserts can be sent as jdbc batches
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chapter_seq")
+    @SequenceGenerator(name = "chapter_seq", sequenceName = "chapter_seq", allocationSize = 50)
+    private Long id;
+    @Column(nullable = false, unique = true, length = 36)
+    private String mangadexId;
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "manga_id")
+    private Manga manga;
+    @Column(nullable = false, length = 10)
+    private String lang;
+    private String chapter;
+    // numeric value of chapter, null for labels like "Extra"
+    @Column(precision = 12, scale = 4)
+    private BigDecimal chapterNumber;
+    private String title;
+    private String volume;
+    private Instant readableAt;
+    private String groupName;
+    private Instant createdAt, updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = Instant.now();
+        updatedAt = Instant.now();
+    }
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = Instant.now();
+    }
+
+
+    public Chapter() {}
+
+    public Chapter(String mangadexId, Manga manga, String lang) {
+        this.mangadexId = mangadexId;
+        this.manga = manga;
+        this.lang = lang;
+    }
+    public Long getId() {
+        return id;
+    }
+    public void setId(Long id) {
+        this.id = id;
+    }
+    public String getMangadexId() {
+        return mangadexId;
+    }
+    public void setMangadexId(String mangadexId) {
+        this.mangadexId = mangadexId;
+    }
+    public Manga getManga() {
+        return manga;
+    }
+    public void setManga(Manga manga) {
+        this.manga = manga;
+    }
+    public String getLang() {
+        return lang;
+    }
+    public void setLang(String lang) {
+        this.lang = lang;
+    }
+    public String getChapter() {
+        return chapter;
+    }
+    public void setChapter(String chapter) {
+        this.chapter = chapter;
+    }
+    public BigDecimal getChapterNumber() {
+        return chapterNumber;
+    }
+    public void setChapterNumber(BigDecimal chapterNumber) {
+        this.chapterNumber = chapterNumber;
+    }
+    public String getTitle() {
+        return title;
+    }
+    public void setTitle(String title) {
+        this.title = title;
+    }
+    public String getVolume() {
+        return volume;
+    }
+    public void setVolume(String volume) {
+        this.volume = volume;
+    }
+    public Instant getReadableAt() {
+        return readableAt;
+    }
+    public void setReadableAt(Instant readableAt) {
+        this.readableAt = readableAt;
+    }
+    public String getGroupName() {
+        return groupName;
+    }
+    public void setGroupName(String groupName) {
+        this.groupName = groupName;
+    }
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,155 @@
+package com.shiori.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// the distinct chapters of one manga as sorted ChapterNumber keys, lookups are binary searches.
+// a label is only kept when it isn't the canonical text of its number ("012", "5.50", "Extra"),
+// so an index of plain numbered chapters is little more than its long[]
+public final class ChapterIndex {
+
+    public static final ChapterIndex EMPTY = new ChapterIndex(new long[0], new String[0], 0);
+
+    private final long[] keys;
+    // null where ChapterNumber.format(key) gives the label back
+    private final String[] labels;
+    // index of the first number, everything before it is a label
+    private final int firstNumber;
+
+    private ChapterIndex(long[] keys, String[] labels, int firstNumber) {
+        this.keys = keys;
+        this.labels = labels;
+        this.firstNumber = firstNumber;
+    }
+
+    public static ChapterIndex of(Collection<String> labels) {
+        Builder b = new Builder(labels.size());
+        for (String label : labels) b.add(label);
+        return b.build();
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public int numbered() {
+        return keys.length - firstNumber;
+    }
+
+    public long key(int i) {
+        return keys[i];
+    }
+
+    public String label(int i) {
+        return labels[i] != null ? labels[i] : ChapterNumber.format(keys[i]);
+    }
+
+    // the highest numbered chapter's label, null when nothing is numbered
+    public String maxNumbered() {
+        return numbered() == 0 ? null : label(keys.length - 1);
+    }
+
+    public boolean contains(String label) {
+        return find(label) >= 0;
+    }
+
+    // position of label, or -(insertion point) - 1 like Arrays.binarySearch
+    public int find(String label) {
+        long key = ChapterNumber.encode(label);
+        int i = Arrays.binarySearch(keys, key);
+        if (i < 0 || !ChapterNumber.isLabel(key)) return i;
+        // labels sharing a key sit next to each other in text order
+        while (i > 0 && keys[i - 1] == key) i--;
+        for (; i < keys.length && keys[i] == key; i++) {
+            int cmp = labels[i].compareTo(label);
+            if (cmp == 0) return i;
+            if (cmp > 0) break;
+        }
+        return -i - 1;
+    }
+
+    // numbered chapters after the one last read, all of them when nothing was read or the last
+    // read chapter has no number
+    public int behind(String lastRead) {
+        long key = ChapterNumber.encode(lastRead);
+        if (!ChapterNumber.isNumber(key)) return numbered();
+        return keys.length - upperBound(key);
+    }
+
+    // first index with a key greater than key
+    private int upperBound(long key) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // rough heap size in bytes for cache weighing
+    int weight() {
+        int total = 48 + 8 * keys.length + 4 * labels.length;
+        for (String label : labels) total += MangaDexCaches.weigh(label);
+        return total;
+    }
+
+    // collects labels in any order, duplicates and blanks are dropped on build.
+    // numbers go into a long[] sorted as primitives, only labels and numbers written in a
+    // non canonical way ("012") are kept as strings
+    public static final class Builder {
+        private long[] numbers;
+        private int size;
+        private final Map<Long, String> written = new HashMap<>();
+        private final List<String> labels = new ArrayList<>();
+
+        public Builder() {
+            this(16);
+        }
+
+        public Builder(int capacity) {
+            numbers = new long[Math.max(capacity, 4)];
+        }
+
+        public Builder add(String label) {
+            long key = ChapterNumber.encode(label);
+            if (key == ChapterNumber.ABSENT) return this;
+            if (ChapterNumber.isLabel(key)) {
+                labels.add(label);
+                return this;
+            }
+            if (size == numbers.length) numbers = Arrays.copyOf(numbers, size * 2);
+            numbers[size++] = key;
+            // when one number is written several ways any one of them is kept
+            if (!ChapterNumber.isCanonical(label)) written.putIfAbsent(key, label);
+            return this;
+        }
+
+        public ChapterIndex build() {
+            if (size == 0 && labels.isEmpty()) return EMPTY;
+            labels.sort(ChapterNumber.ORDER);
+            Arrays.sort(numbers, 0, size);
+
+            long[] keys = new long[labels.size() + size];
+            String[] text = new String[keys.length];
+            int n = 0;
+            for (String label : labels) {
+                if (n > 0 && text[n - 1].equals(label)) continue;
+                keys[n] = ChapterNumber.encode(label);
+                text[n++] = label;
+            }
+            int firstNumber = n;
+            for (int i = 0; i < size; i++) {
+                long key = numbers[i];
+                if (n > firstNumber && keys[n - 1] == key) continue;
+                keys[n] = key;
+                text[n++] = written.isEmpty() ? null : written.get(key);
+            }
+            return new ChapterIndex(Arrays.copyOf(keys, n), Arrays.copyOf(text, n), firstNumber);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.shiori.backend;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+
+// chapter labels as sortable longs, no BigDecimal and no exceptions on the hot path.
+// numbers ("12", "12.5", "100.1") are value * 10^4, so they are >= 0 and compare numerically.
+// labels ("Extra", "Special") are negative: below every number, ordered by their first 7 chars
+// case folded, and ties are broken by the full label in compare(). null or blank is ABSENT, below all.
+public final class ChapterNumber {
+
+    public static final long ABSENT = Long.MIN_VALUE;
+
+    // numeric(12, 4) like the chapterNumber columns: 4 fraction digits and 12 - 4 = 8 integer digits.
+    // anything longer is a label, it would overflow the column and roll back the whole page it came in
+    static final int SCALE = 4;
+    private static final long ONE = 10_000;
+    private static final int MAX_INTEGER_DIGITS = 8;
+    private static final int LABEL_CHARS = 7;
+
+    // labels first, then numbers, both ascending, equal keys of labels fall back to the text
+    public static final Comparator<String> ORDER = ChapterNumber::compare;
+
+    private ChapterNumber() {}
+
+    public static long encode(String label) {
+        if (label == null) return ABSENT;
+        int len = label.length();
+        if (len == 0) return ABSENT;
+
+        long integer = 0;
+        long fraction = 0;
+        int integerDigits = 0;
+        int fractionDigits = 0;
+        boolean dot = false;
+        boolean digits = false;
+        for (int i = 0; i < len; i++) {
+            char c = label.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+                if (dot) {
+                    if (++fractionDigits > SCALE) return encodeLabel(label);
+                    fraction = fraction * 10 + (c - '0');
+                } else {
+                    // leading zeros don't count towards the limit
+                    if ((integer != 0 || c != '0') && ++integerDigits > MAX_INTEGER_DIGITS) return encodeLabel(label);
+                    integer = integer * 10 + (c - '0');
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return encodeLabel(label);
+            }
+        }
+        // "." alone has no digits at all
+        if (!digits) return encodeLabel(label);
+        for (int i = fractionDigits; i < SCALE; i++) fraction *= 10;
+        return integer * ONE + fraction;
+    }
+
+    // negative and above ABSENT, the first chars packed a byte each, most significant first
+    private static long encodeLabel(String label) {
+        if (label.isBlank()) return ABSENT;
+        long packed = 0;
+        for (int i = 0; i < LABEL_CHARS; i++) {
+            int c = i < label.length() ? Math.min(Character.toLowerCase(label.charAt(i)), 0xFF) : 0;
+            packed = (packed << 8) | c;
+        }
+        return Long.MIN_VALUE + 1 + packed;
+    }
+
+    public static boolean isNumber(long key) {
+        return key >= 0;
+    }
+
+    public static boolean isLabel(long key) {
+        return key < 0 && key != ABSENT;
+    }
+
+    public static int compare(String a, String b) {
+        long ka = encode(a);
+        long kb = encode(b);
+        if (ka != kb) return Long.compare(ka, kb);
+        // equal numbers ("5" and "5.0") are equal, labels sharing a prefix are told apart by the text
+        if (isLabel(ka)) return a.compareTo(b);
+        return 0;
+    }
+
+    // whether format() gives this number label back as written, without formatting it:
+    // no leading zeros, no trailing fraction zeros, no bare dot
+    static boolean isCanonical(String number) {
+        int len = number.length();
+        if (number.charAt(0) == '.') return false;
+        if (len > 1 && number.charAt(0) == '0' && number.charAt(1) != '.') return false;
+        if (number.indexOf('.') < 0) return true;
+        char last = number.charAt(len - 1);
+        return last != '0' && last != '.';
+    }
+
+    // the value of a number key, null for labels and ABSENT
+    public static BigDecimal toBigDecimal(long key) {
+        return isNumber(key) ? BigDecimal.valueOf(key, SCALE).stripTrailingZeros() : null;
+    }
+
+    // shortest text for a number key: 12, 12.5, 100.01
+    public static String format(long key) {
+        if (!isNumber(key)) throw new IllegalArgumentException("Not a chapter number: " + key);
+        long integer = key / ONE;
+        long fraction = key % ONE;
+        if (fraction == 0) return Long.toString(integer);
+        int digits = SCALE;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        StringBuilder b = new StringBuilder(24).append(integer).append('.');
+        String f = Long.toString(fraction);
+        for (int i = f.length(); i < digits; i++) b.append('0');
+        return b.append(f).toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.shiori.backend;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface ChapterRepository extends JpaRepository<Chapter, Long> {
+
+    List<Chapter> findByMangadexIdIn(Collection<String> mangadexIds);
+
+    // newest first, like the upstream feed
+    @Query("select c from Chapter c where c.manga.id = :mangaId and c.lang = :lang order by c.readableAt desc")
+    List<Chapter> findFeed(Long mangaId, String lang, Pageable page);
+
+    // highest numbered chapter, newest upload of it first, like aggregate + chapterByNumber
+    @Query("""
+        select c from Chapter c
+        where c.manga.id = :mangaId and c.lang = :lang and c.chapterNumber is not null
+        order by c.chapterNumber desc, c.readableAt desc""")
+    List<Chapter> findHighestNumbered(Long mangaId, String lang, Pageable page);
+
+    // which of these numbers are already stored, duplicates from other groups don't make a chapter new
+    @Query("select distinct c.chapterNumber from Chapter c where c.manga.id = :mangaId and c.lang = :lang and c.chapterNumber in :numbers")
+    List<BigDecimal> findNumbersIn(Long mangaId, String lang, Collection<BigDecimal> numbers);
+
+    @Query("select count(distinct c.chapterNumber) from Chapter c where c.manga.id = :mangaId and c.lang = :lang and c.chapterNumber > :after")
+    long countNumbersAfter(Long mangaId, String lang, BigDecimal after);
+
+    @Query("""
+        select c from Chapter c
+        where c.manga.id = :mangaId and c.lang = :lang and c.chapterNumber > :after
+        order by c.readableAt desc nulls last""")
+    List<Chapter> findNewestAfter(Long mangaId, String lang, BigDecimal after, Pageable page);
+
+    @Modifying
+    @Query("delete from Chapter c where c.manga.id = :mangaId")
+    int deleteByMangaId(Long mangaId);
+}
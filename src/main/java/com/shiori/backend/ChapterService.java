@@ -0,0 +1,144 @@
+package com.shiori.backend;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.shiori.backend.dto.ChapterResult;
+
+// locally stored chapters, written by ChapterSyncJob and read instead of mangadex when fresh
+@Service
+public class ChapterService {
+    // same shape mangadex uses, e.g. 2024-05-01T10:00:00+00:00
+    private static final DateTimeFormatter READABLE_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssxxx");
+
+    private final ChapterRepository chapterRepo;
+    private final MangaRepository mangaRepo;
+    private final MangaSyncStateRepository stateRepo;
+    private final ChapterSyncProperties props;
+    private final ReadingProgressService progress;
+
+    public ChapterService(ChapterRepository chapterRepo, MangaRepository mangaRepo,
+                          MangaSyncStateRepository stateRepo, ChapterSyncProperties props,
+                          ReadingProgressService progress) {
+        this.chapterRepo = chapterRepo;
+        this.mangaRepo = mangaRepo;
+        this.stateRepo = stateRepo;
+        this.props = props;
+        this.progress = progress;
+    }
+
+    // empty unless the title was synced for lang recently enough to trust the table
+    public Optional<List<ChapterResult>> localFeed(String mangadexId, int limit, String lang) {
+        return freshState(mangadexId, lang)
+            .map(state -> chapterRepo.findFeed(state.getMangaId(), lang, PageRequest.of(0, limit)).stream()
+                .map(ChapterService::toResult)
+                .toList());
+    }
+
+    // same preference as MangaDexService: highest numbered, else newest with a chapter, else newest
+    public Optional<ChapterResult> localLatest(String mangadexId, String lang) {
+        Optional<MangaSyncState> state = freshState(mangadexId, lang);
+        if (state.isEmpty()) return Optional.empty();
+        Long mangaId = state.get().getMangaId();
+
+        List<Chapter> numbered = chapterRepo.findHighestNumbered(mangaId, lang, PageRequest.of(0, 1));
+        if (!numbered.isEmpty()) return Optional.of(toResult(numbered.get(0)));
+
+        List<Chapter> newest = chapterRepo.findFeed(mangaId, lang, PageRequest.of(0, 50));
+        for (Chapter chapter : newest) {
+            if (chapter.getChapter() != null && !chapter.getChapter().isBlank()) {
+                return Optional.of(toResult(chapter));
+            }
+        }
+        return newest.isEmpty() ? Optional.empty() : Optional.of(toResult(newest.get(0)));
+    }
+
+    private Optional<MangaSyncState> freshState(String mangadexId, String lang) {
+        if (!props.isServeLocal()) return Optional.empty();
+        Instant oldest = Instant.now().minus(props.getMaxAge());
+        return stateRepo.findByMangadexIdAndLang(mangadexId, lang)
+            .filter(s -> s.getLastSyncedAt() != null && s.getLastSyncedAt().isAfter(oldest));
+    }
+
+    // inserts new chapters and updates known ones, returns the highest readableAt in the page
+    @Transactional
+    public Instant upsert(Long mangaId, String lang, List<ChapterResult> page) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (ChapterResult r : page) ids.add(r.chapterId());
+
+        Map<String, Chapter> existing = new HashMap<>();
+        for (Chapter c : chapterRepo.findByMangadexIdIn(ids)) existing.put(c.getMangadexId(), c);
+
+        Manga manga = mangaRepo.getReferenceById(mangaId);
+        Instant high = null;
+        List<Chapter> toSave = new ArrayList<>();
+        for (ChapterResult r : page) {
+            Chapter chapter = existing.get(r.chapterId());
+            if (chapter == null) {
+                chapter = new Chapter(r.chapterId(), manga, lang);
+                existing.put(r.chapterId(), chapter);
+                toSave.add(chapter);
+            }
+            chapter.setChapter(r.chapter());
+            chapter.setChapterNumber(number(r.chapter()));
+            chapter.setTitle(r.title());
+            chapter.setVolume(r.volume());
+            chapter.setReadableAt(instant(r.readableAt()));
+            chapter.setGroupName(r.groupName());
+            if (chapter.getReadableAt() != null && (high == null || chapter.getReadableAt().isAfter(high))) {
+                high = chapter.getReadableAt();
+            }
+        }
+        // readers' unread counts move with the chapters in the same transaction
+        progress.onNewChapters(mangaId, lang, toSave);
+        // known rows are flushed by dirty checking, new ones go out as jdbc batches
+        chapterRepo.saveAll(toSave);
+        return high;
+    }
+
+    @Transactional
+    public void markSynced(Long mangaId, String lang, Instant cursor, Instant syncedAt) {
+        MangaSyncState state = stateRepo.findByMangaIdAndLang(mangaId, lang)
+            .orElseGet(() -> new MangaSyncState(mangaId, lang));
+        if (cursor != null && (state.getCursor() == null || cursor.isAfter(state.getCursor()))) {
+            state.setCursor(cursor);
+            state.setLastChapterAt(cursor);
+        }
+        state.setLastSyncedAt(syncedAt);
+        stateRepo.save(state);
+    }
+
+    static ChapterResult toResult(Chapter c) {
+        String readableAt = c.getReadableAt() != null ? READABLE_AT.format(c.getReadableAt().atOffset(ZoneOffset.UTC)) : null;
+        return new ChapterResult(c.getMangadexId(), c.getChapter(), c.getTitle(), c.getVolume(), readableAt, c.getGroupName());
+    }
+
+    // "Extra", "Special", etc.. are kept but not numbered
+    static BigDecimal number(String chapter) {
+        return ChapterNumber.toBigDecimal(ChapterNumber.encode(chapter));
+    }
+
+    static Instant instant(String readableAt) {
+        if (readableAt == null || readableAt.isBlank()) return null;
+        try {
+            return OffsetDateTime.parse(readableAt).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
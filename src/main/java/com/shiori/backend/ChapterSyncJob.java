@@ -0,0 +1,187 @@
+package com.shiori.backend;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+
+import com.shiori.backend.dto.ChapterResult;
+
+// walks tracked manga and stores their chapters locally
+// the manga id space is cut into slots, one tick leases and syncs one slot, so a full
+// round over all slots takes one interval no matter how many instances run
+@Component
+@ConditionalOnProperty(prefix = "shiori.sync", name = "enabled", havingValue = "true")
+public class ChapterSyncJob implements SchedulingConfigurer {
+    private static final Logger log = LoggerFactory.getLogger(ChapterSyncJob.class);
+    // format mangadex accepts for *Since params, always utc
+    private static final DateTimeFormatter SINCE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final MangaRepository mangaRepo;
+    private final MangaSyncStateRepository stateRepo;
+    private final SyncLeaseRepository leaseRepo;
+    private final ChapterService chapterService;
+    private final MangaDexService mdService;
+    private final ChapterSyncProperties props;
+
+    private final String owner;
+    // instances start at different slots so they don't race for the same lease
+    private final AtomicInteger nextSlot;
+
+    public ChapterSyncJob(MangaRepository mangaRepo, MangaSyncStateRepository stateRepo, SyncLeaseRepository leaseRepo,
+                          ChapterService chapterService, MangaDexService mdService, ChapterSyncProperties props) {
+        this.mangaRepo = mangaRepo;
+        this.stateRepo = stateRepo;
+        this.leaseRepo = leaseRepo;
+        this.chapterService = chapterService;
+        this.mdService = mdService;
+        this.props = props;
+        this.owner = hostname() + "/" + UUID.randomUUID().toString().substring(0, 8);
+        this.nextSlot = new AtomicInteger(ThreadLocalRandom.current().nextInt(props.getSlots()));
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        Duration tick = props.getInterval().dividedBy(props.getSlots());
+        registrar.addFixedDelayTask(this::tick, tick);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void ensureSlots() {
+        for (int slot = 0; slot < props.getSlots(); slot++) {
+            if (leaseRepo.existsById(slot)) continue;
+            try {
+                leaseRepo.saveAndFlush(new SyncLease(slot));
+            } catch (DataIntegrityViolationException ignore) {
+                // another instance created it first
+            }
+        }
+    }
+
+    void tick() {
+        for (int i = 0; i < props.getSlots(); i++) {
+            int slot = Math.floorMod(nextSlot.getAndIncrement(), props.getSlots());
+            Instant now = Instant.now();
+            if (leaseRepo.tryAcquire(slot, owner, now, now.plus(props.getLease())) == 1) {
+                try {
+                    syncSlot(slot);
+                } catch (RuntimeException e) {
+                    log.warn("Chapter sync of slot {} failed", slot, e);
+                } finally {
+                    leaseRepo.release(slot, owner);
+                }
+                return;
+            }
+        }
+    }
+
+    void syncSlot(int slot) {
+        Instant started = Instant.now();
+        // renew well before the lease runs out so a slow slot isn't picked up twice
+        Instant renewAt = started.plus(props.getLease().dividedBy(2));
+        List<MangaRepository.SyncTarget> targets = mangaRepo.findSyncTargets(props.getSlots(), slot);
+        int synced = 0;
+
+        for (String lang : props.getLanguages()) {
+            for (Due due : dueTargets(targets, lang, started)) {
+                Instant now = Instant.now();
+                if (now.isAfter(renewAt)) {
+                    if (leaseRepo.tryAcquire(slot, owner, now, now.plus(props.getLease())) != 1) {
+                        log.info("Lost lease on sync slot {}, stopping", slot);
+                        return;
+                    }
+                    renewAt = now.plus(props.getLease().dividedBy(2));
+                }
+                try {
+                    syncOne(due.target(), lang, due.state());
+                    synced++;
+                } catch (MangaDexRetryLaterException e) {
+                    // throttled, breaker open or bulkhead full: every other title would fail the same way
+                    // right now, leave the rest for the next round
+                    log.info("Chapter sync of slot {} stopped after {} titles: {}", slot, synced, e.getReason());
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("Chapter sync of manga {} ({}) failed", due.target().getMangadexId(), lang, e);
+                }
+            }
+        }
+        log.debug("Chapter sync of slot {} done, {} titles in {}", slot, synced, Duration.between(started, Instant.now()));
+    }
+
+    private record Due(MangaRepository.SyncTarget target, MangaSyncState state) {}
+
+    // never synced titles first, then the ones with the most recent chapters, titles without any last
+    private List<Due> dueTargets(List<MangaRepository.SyncTarget> targets, String lang, Instant now) {
+        Map<Long, MangaSyncState> states = new HashMap<>();
+        List<Long> ids = targets.stream().map(MangaRepository.SyncTarget::getId).toList();
+        for (MangaSyncState state : stateRepo.findByMangaIdInAndLang(ids, lang)) {
+            states.put(state.getMangaId(), state);
+        }
+
+        List<Due> due = new ArrayList<>();
+        for (MangaRepository.SyncTarget target : targets) {
+            MangaSyncState state = states.get(target.getId());
+            if (isDue(state, now)) due.add(new Due(target, state));
+        }
+        due.sort(Comparator.comparing(ChapterSyncJob::priority).reversed());
+        return due;
+    }
+
+    private static Instant priority(Due due) {
+        if (due.state() == null) return Instant.MAX;
+        return due.state().getLastChapterAt() != null ? due.state().getLastChapterAt() : Instant.MIN;
+    }
+
+    private boolean isDue(MangaSyncState state, Instant now) {
+        if (state == null || state.getLastSyncedAt() == null) return true;
+        boolean active = state.getLastChapterAt() != null
+            && state.getLastChapterAt().isAfter(now.minus(props.getActiveWindow()));
+        Duration period = active ? props.getInterval() : props.getInterval().multipliedBy(props.getIdleFactor());
+        // a little slack so tick jitter doesn't push a title a whole round back
+        return !state.getLastSyncedAt().plus(period.multipliedBy(9).dividedBy(10)).isAfter(now);
+    }
+
+    // fetches only chapters published after the cursor, oldest first so paging stays stable
+    private void syncOne(MangaRepository.SyncTarget target, String lang, MangaSyncState state) {
+        Instant started = Instant.now();
+        Instant cursor = state != null ? state.getCursor() : null;
+        String since = cursor != null ? SINCE.format(cursor.atOffset(ZoneOffset.UTC)) : null;
+        int pageSize = props.getPageSize();
+        Instant high = cursor;
+
+        for (int offset = 0; offset + pageSize <= MangaDexService.MAX_WINDOW; offset += pageSize) {
+            List<ChapterResult> page = mdService.getFeedPage(target.getMangadexId(), lang, since, offset, pageSize);
+            Instant pageHigh = chapterService.upsert(target.getId(), lang, page);
+            if (pageHigh != null && (high == null || pageHigh.isAfter(high))) high = pageHigh;
+            if (page.size() < pageSize) break;
+        }
+        chapterService.markSynced(target.getId(), lang, high, started);
+    }
+
+    private static String hostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "shiori";
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// background chapter sync
+// interval: how often every tracked title is looked at, slots are spread evenly over it
+// slots: slices of the manga id space, each slice is leased by one instance at a time
+// activeWindow: titles with a chapter newer than this are synced every interval, others every idleFactor intervals
+// serveLocal/maxAge: answer feed and latest from the chapter table while a title was synced within maxAge
+@ConfigurationProperties("shiori.sync")
+public class ChapterSyncProperties {
+
+    private boolean enabled = false;
+    private Duration interval = Duration.ofMinutes(15);
+    private int slots = 16;
+    private List<String> languages = List.of("en");
+    private int pageSize = 100;
+    private Duration lease = Duration.ofMinutes(5);
+    private Duration activeWindow = Duration.ofDays(14);
+    private int idleFactor = 4;
+    private boolean serveLocal = true;
+    private Duration maxAge = Duration.ofMinutes(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    public Duration getInterval() {
+        return interval;
+    }
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+    public int getSlots() {
+        return slots;
+    }
+    public void setSlots(int slots) {
+        this.slots = slots;
+    }
+    public List<String> getLanguages() {
+        return languages;
+    }
+    public void setLanguages(List<String> languages) {
+        this.languages = languages;
+    }
+    public int getPageSize() {
+        return pageSize;
+    }
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+    public Duration getLease() {
+        return lease;
+    }
+    public void setLease(Duration lease) {
+        this.lease = lease;
+    }
+    public Duration getActiveWindow() {
+        return activeWindow;
+    }
+    public void setActiveWindow(Duration activeWindow) {
+        this.activeWindow = activeWindow;
+    }
+    public int getIdleFactor() {
+        return idleFactor;
+    }
+    public void setIdleFactor(int idleFactor) {
+        this.idleFactor = idleFactor;
+    }
+    public boolean isServeLocal() {
+        return serveLocal;
+    }
+    public void setServeLocal(boolean serveLocal) {
+        this.serveLocal = serveLocal;
+    }
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+    public void setMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+}
@@ -0,0 +1,107 @@
+package com.shiori.backend;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.shiori.backend.dto.ChapterEvent;
+
+// new chapter push for a set of mangadex ids, as an event stream or as a long poll.
+// both are async requests, a waiting client holds a connection but no servlet thread
+@RestController
+@RequestMapping("/api/md/subscribe")
+public class ChapterWatchController {
+
+    private final ChapterWatchService watchService;
+    private final ChapterWatchProperties props;
+
+    ChapterWatchController(ChapterWatchService watchService, ChapterWatchProperties props) {
+        this.watchService = watchService;
+        this.props = props;
+    }
+
+    // "chapter" events carry a ChapterEvent, reconnecting with Last-Event-ID replays what was missed
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+        @RequestParam List<String> ids,
+        @RequestParam(defaultValue = "en") String lang,
+        @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId
+    ) {
+        Set<String> watched = ids(ids);
+        SseEmitter emitter = new SseEmitter(props.getSseTimeout().toMillis());
+        EventStream stream = new EventStream(emitter);
+        ChapterWatchService.Subscription subscription = watchService.subscribe(watched, lang, stream);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(e -> subscription.close());
+        if (lastEventId != null) {
+            for (ChapterEvent e : watchService.since(watched, lang, lastEventId)) stream.onChapter(e);
+        }
+        return emitter;
+    }
+
+    // answers with the events after `after` right away, otherwise with the first new one,
+    // or an empty list after shiori.watch.poll-timeout. pass the highest id seen as after next time
+    @GetMapping("/poll")
+    public DeferredResult<List<ChapterEvent>> poll(
+        @RequestParam List<String> ids,
+        @RequestParam(defaultValue = "en") String lang,
+        @RequestParam(required = false) Long after
+    ) {
+        Set<String> watched = ids(ids);
+        DeferredResult<List<ChapterEvent>> result = new DeferredResult<>(props.getPollTimeout().toMillis(), List.of());
+        ChapterWatchService.Subscription subscription = watchService.subscribe(watched, lang,
+            event -> result.setResult(List.of(event)));
+        result.onCompletion(subscription::close);
+        // checked after subscribing so nothing published in between is lost
+        if (after != null) {
+            List<ChapterEvent> missed = watchService.since(watched, lang, after);
+            if (!missed.isEmpty()) result.setResult(missed);
+        }
+        return result;
+    }
+
+    private Set<String> ids(List<String> ids) {
+        Set<String> out = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (id != null && !id.isBlank()) out.add(id.trim());
+        }
+        if (out.isEmpty() || out.size() > props.getMaxIds()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ids must name 1 to " + props.getMaxIds() + " titles");
+        }
+        return out;
+    }
+
+    // a failed write means the client is gone, completing runs onCompletion which unsubscribes
+    private record EventStream(SseEmitter emitter) implements ChapterWatchService.Subscriber {
+        @Override
+        public void onChapter(ChapterEvent event) {
+            send(SseEmitter.event().id(Long.toString(event.id())).name("chapter").data(event, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void onHeartbeat() {
+            send(SseEmitter.event().comment("ping"));
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
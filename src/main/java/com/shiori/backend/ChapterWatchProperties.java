@@ -0,0 +1,68 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// new chapter push to subscribers
+// interval: how often every watched title is checked, one latest lookup per title no matter how many subscribers
+// concurrency: checks running at once
+// idleFor: how long a title nobody subscribes to stays watched, so reconnecting clients don't miss chapters
+// maxIds: titles one subscription may watch
+// sseTimeout: an event stream is closed after this, clients reconnect with Last-Event-ID
+// heartbeat: comment sent on idle event streams so proxies keep them open and dead clients are noticed
+// pollTimeout: how long a long poll waits for a chapter before answering with an empty list
+@ConfigurationProperties("shiori.watch")
+public class ChapterWatchProperties {
+
+    private Duration interval = Duration.ofMinutes(2);
+    private int concurrency = 8;
+    private Duration idleFor = Duration.ofMinutes(10);
+    private int maxIds = 500;
+    private Duration sseTimeout = Duration.ofMinutes(30);
+    private Duration heartbeat = Duration.ofSeconds(30);
+    private Duration pollTimeout = Duration.ofSeconds(30);
+
+    public Duration getInterval() {
+        return interval;
+    }
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+    public int getConcurrency() {
+        return concurrency;
+    }
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+    public Duration getIdleFor() {
+        return idleFor;
+    }
+    public void setIdleFor(Duration idleFor) {
+        this.idleFor = idleFor;
+    }
+    public int getMaxIds() {
+        return maxIds;
+    }
+    public void setMaxIds(int maxIds) {
+        this.maxIds = maxIds;
+    }
+    public Duration getSseTimeout() {
+        return sseTimeout;
+    }
+    public void setSseTimeout(Duration sseTimeout) {
+        this.sseTimeout = sseTimeout;
+    }
+    public Duration getHeartbeat() {
+        return heartbeat;
+    }
+    public void setHeartbeat(Duration heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+    public Duration getPollTimeout() {
+        return pollTimeout;
+    }
+    public void setPollTimeout(Duration pollTimeout) {
+        this.pollTimeout = pollTimeout;
+    }
+}
@@ -0,0 +1,235 @@
+package com.shiori.backend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.shiori.backend.dto.ChapterEvent;
+import com.shiori.backend.dto.ChapterResult;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// pushes new latest chapters to subscribers instead of every client polling /latest.
+// each watched (title, lang) is checked once per interval through MangaDexService.latest, so its
+// caches, delta refresh and the local chapter table all apply, and one check fans out to every
+// subscriber of the title. subscribers are plain callbacks, an idle one holds no thread.
+// checks and heartbeats have their own timer: the shared scheduler thread runs whole sync slots,
+// and a heartbeat held up behind one lets proxies drop idle streams
+@Service
+public class ChapterWatchService {
+    private static final Logger log = LoggerFactory.getLogger(ChapterWatchService.class);
+
+    public interface Subscriber {
+        void onChapter(ChapterEvent event);
+
+        default void onHeartbeat() {}
+    }
+
+    // closing more than once is fine
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    record WatchKey(String mangaId, String lang) {}
+
+    private static final class Watch {
+        final WatchKey key;
+        // guarded by the watches map entry, changed only inside compute
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean checking = new AtomicBoolean();
+        volatile long idleSince;
+        // null until the first check, which only records what is already out
+        volatile ChapterResult latest;
+        volatile boolean primed;
+        volatile ChapterEvent lastEvent;
+
+        Watch(WatchKey key) {
+            this.key = key;
+        }
+    }
+
+    private final BiFunction<String, String, MangaDexService.Served<ChapterResult>> lookup;
+    private final ChapterWatchProperties props;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<WatchKey, Watch> watches = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Semaphore checks;
+    // checks and sends run here, a slow client or slow upstream never holds up the others
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("chapter-watch-", 0).factory());
+    // only hands work to workers, one thread keeps up
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("chapter-watch-timer").daemon().factory());
+    // starts at the clock so ids keep growing across restarts, Last-Event-ID from before one still works
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis());
+    private final Counter events;
+
+    @Autowired
+    public ChapterWatchService(MangaDexService mdService, ChapterWatchProperties props, MeterRegistry registry) {
+        this(mdService::latest, props, registry, System::nanoTime);
+    }
+
+    ChapterWatchService(BiFunction<String, String, MangaDexService.Served<ChapterResult>> lookup,
+                        ChapterWatchProperties props, MeterRegistry registry, LongSupplier clock) {
+        this.lookup = lookup;
+        this.props = props;
+        this.clock = clock;
+        this.checks = new Semaphore(props.getConcurrency());
+        this.events = Counter.builder("shiori.watch.events")
+            .description("New chapter events fanned out to subscribers")
+            .register(registry);
+        Gauge.builder("shiori.watch.subscribers", subscribers, Set::size)
+            .description("Open subscriptions, event streams and long polls")
+            .register(registry);
+        Gauge.builder("shiori.watch.titles", watches, ConcurrentHashMap::size)
+            .description("Titles checked for new chapters")
+            .register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        long interval = props.getInterval().toMillis();
+        long heartbeat = props.getHeartbeat().toMillis();
+        timer.scheduleWithFixedDelay(() -> run("check", this::checkAll), 0, interval, TimeUnit.MILLISECONDS);
+        timer.scheduleAtFixedRate(() -> run("heartbeat", this::heartbeat), 0, heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    // a task that throws is never run again by the timer, so nothing may get out
+    private static void run(String task, Runnable body) {
+        try {
+            body.run();
+        } catch (RuntimeException e) {
+            log.warn("Chapter watch {} failed", task, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    public Subscription subscribe(Collection<String> mangaIds, String lang, Subscriber subscriber) {
+        List<WatchKey> keys = new ArrayList<>();
+        for (String id : mangaIds) {
+            WatchKey key = new WatchKey(id, lang);
+            watches.compute(key, (k, watch) -> {
+                Watch w = watch != null ? watch : new Watch(k);
+                w.subscribers.add(subscriber);
+                return w;
+            });
+            keys.add(key);
+        }
+        subscribers.add(subscriber);
+        AtomicBoolean closed = new AtomicBoolean();
+        return () -> {
+            if (!closed.compareAndSet(false, true)) return;
+            subscribers.remove(subscriber);
+            for (WatchKey key : keys) {
+                watches.computeIfPresent(key, (k, w) -> {
+                    if (w.subscribers.remove(subscriber) && w.subscribers.isEmpty()) w.idleSince = clock.getAsLong();
+                    return w;
+                });
+            }
+        };
+    }
+
+    // the last event of each title newer than after, for clients coming back after a disconnect
+    public List<ChapterEvent> since(Collection<String> mangaIds, String lang, long after) {
+        List<ChapterEvent> missed = new ArrayList<>();
+        for (String id : mangaIds) {
+            Watch w = watches.get(new WatchKey(id, lang));
+            ChapterEvent e = w != null ? w.lastEvent : null;
+            if (e != null && e.id() > after) missed.add(e);
+        }
+        missed.sort((a, b) -> Long.compare(a.id(), b.id()));
+        return missed;
+    }
+
+    void checkAll() {
+        long idleLimit = clock.getAsLong() - props.getIdleFor().toNanos();
+        for (Watch w : watches.values()) {
+            if (w.subscribers.isEmpty()) {
+                // dropped only while still unsubscribed, compute keeps this atomic with subscribe
+                watches.computeIfPresent(w.key, (k, x) -> x.subscribers.isEmpty() && x.idleSince - idleLimit < 0 ? null : x);
+                continue;
+            }
+            // a title still being checked from the last round is skipped
+            if (!w.checking.compareAndSet(false, true)) continue;
+            workers.execute(() -> {
+                try {
+                    checks.acquire();
+                    try {
+                        check(w);
+                    } finally {
+                        checks.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    log.debug("Checking {} ({}) for new chapters failed", w.key.mangaId(), w.key.lang(), e);
+                } finally {
+                    w.checking.set(false);
+                }
+            });
+        }
+    }
+
+    private void check(Watch w) {
+        MangaDexService.Served<ChapterResult> served = lookup.apply(w.key.mangaId(), w.key.lang());
+        // a fallback answer is old by definition, it can't announce anything
+        if (served.stale()) return;
+        ChapterResult latest = served.value();
+        ChapterResult previous = w.latest;
+        w.latest = latest != null ? latest : previous;
+        if (!w.primed) {
+            w.primed = true;
+            return;
+        }
+        if (latest == null || (previous != null && latest.chapterId().equals(previous.chapterId()))) return;
+        // only a later chapter is news, not an edit of an older one becoming the answer
+        if (previous != null && !MangaDexService.isLater(latest, previous)) return;
+        publish(w, latest);
+    }
+
+    private void publish(Watch w, ChapterResult chapter) {
+        ChapterEvent event = new ChapterEvent(sequence.incrementAndGet(), w.key.mangaId(), w.key.lang(), chapter);
+        w.lastEvent = event;
+        events.increment();
+        for (Subscriber s : w.subscribers) {
+            workers.execute(() -> s.onChapter(event));
+        }
+    }
+
+    void heartbeat() {
+        for (Subscriber s : subscribers) {
+            workers.execute(s::onHeartbeat);
+        }
+    }
+
+    int watching() {
+        return watches.size();
+    }
+}
@@ -0,0 +1,115 @@
+package com.shiori.backend;
+
+import java.util.function.LongSupplier;
+
+// count based circuit breaker for one upstream endpoint
+// closed: calls pass and the outcomes of the last `window` calls are kept, once minimumCalls are in
+//         and the failure rate reaches the threshold it opens
+// open: calls are rejected until openFor has passed, then it goes half open
+// half open: halfOpenCalls trial calls pass, all of them succeeding closes it, any failing opens it again
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final double failureRate;
+    private final int minimumCalls;
+    private final long openForNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    // guarded by this, ring of outcomes, true is a failure
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsPassed;
+
+    public CircuitBreaker(double failureRate, int window, int minimumCalls, long openForNanos, int halfOpenCalls,
+                          LongSupplier clock) {
+        this.failureRate = failureRate;
+        this.outcomes = new boolean[window];
+        this.minimumCalls = Math.min(minimumCalls, window);
+        this.openForNanos = openForNanos;
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+    }
+
+    // false when the call must not go upstream
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openForNanos) return false;
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsPassed = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) return false;
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        switch (state) {
+            case CLOSED -> record(false);
+            case HALF_OPEN -> {
+                if (++trialsPassed >= halfOpenCalls) close();
+            }
+            case OPEN -> { }
+        }
+    }
+
+    public synchronized void onFailure() {
+        switch (state) {
+            case CLOSED -> {
+                record(true);
+                if (recorded >= minimumCalls && failures >= failureRate * recorded) open();
+            }
+            case HALF_OPEN -> open();
+            case OPEN -> { }
+        }
+    }
+
+    // the acquired call never reached upstream, hands a trial slot back without counting anything
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && trialsStarted > 0) trialsStarted--;
+    }
+
+    public synchronized State state() {
+        // report half open as soon as calls would be let through again
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openForNanos) return State.HALF_OPEN;
+        return state;
+    }
+
+    // how long calls will still be rejected, 0 unless open
+    public synchronized long remainingOpenNanos() {
+        if (state != State.OPEN) return 0;
+        return Math.max(0, openForNanos - (clock.getAsLong() - openedAt));
+    }
+
+    private void record(boolean failed) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) failures--;
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed) failures++;
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
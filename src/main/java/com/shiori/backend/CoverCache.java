@@ -0,0 +1,228 @@
+package com.shiori.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import feign.FeignException;
+import feign.Response;
+
+// content addressed cover store on disk
+//   objects/ab/<sha256>   cover bytes, named by their hash so the hash doubles as a strong etag
+//   refs/<sha256 of key>  the object hash a "mangaId/fileName" resolved to
+// files are evicted least recently served first once maxSize is exceeded, the order is kept in
+// each object's mtime so it survives restarts. a ref to an evicted object is just a miss.
+// lazy, the store is scanned on the first cover request instead of during startup
+@Component
+@Lazy
+public class CoverCache {
+    private static final Logger log = LoggerFactory.getLogger(CoverCache.class);
+
+    static final String COVER_BASE = "https://uploads.mangadex.org/covers/";
+    // mtime is only bumped when older than this, a hot cover doesn't write metadata on every hit
+    private static final Duration TOUCH_INTERVAL = Duration.ofHours(1);
+
+    public record Cover(Path file, String hash, long size) {}
+
+    private final MangaDexCoverClient client;
+    private final SingleFlight singleFlight;
+    private final long maxBytes;
+    private final Path objects;
+    private final Path refs;
+    private final Path tmp;
+
+    // object hash -> size, access ordered, guarded by this
+    private final LinkedHashMap<String, Long> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    public CoverCache(MangaDexCoverClient client, SingleFlight singleFlight, CoverCacheProperties props) throws IOException {
+        this.client = client;
+        this.singleFlight = singleFlight;
+        this.maxBytes = props.getMaxSize().toBytes();
+        this.objects = Files.createDirectories(props.getDir().resolve("objects"));
+        this.refs = Files.createDirectories(props.getDir().resolve("refs"));
+        this.tmp = Files.createDirectories(props.getDir().resolve("tmp"));
+        load();
+    }
+
+    // cached file for the cover, fetched from mangadex on a miss; concurrent misses for one key share a fetch
+    public Cover get(String mangaId, String fileName) throws Exception {
+        String key = mangaId + "/" + fileName;
+        Cover cover = lookup(key);
+        if (cover != null) return cover;
+        return singleFlight.execute("cover", key, () -> {
+            Cover again = lookup(key);
+            return again != null ? again : fetch(key, mangaId, fileName);
+        });
+    }
+
+    public synchronized long size() {
+        return totalBytes;
+    }
+
+    // /api/covers/... for mangadex cover urls, anything else unchanged
+    public static String localUrl(String url) {
+        if (url == null || !url.startsWith(COVER_BASE)) return url;
+        return "/api/covers/" + url.substring(COVER_BASE.length());
+    }
+
+    private Cover lookup(String key) throws IOException {
+        Path ref = refs.resolve(sha256(key));
+        String hash;
+        try {
+            hash = Files.readString(ref, StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        Path file = objectPath(hash);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // object was evicted, the ref is stale
+            Files.deleteIfExists(ref);
+            return null;
+        }
+        synchronized (this) {
+            if (lru.get(hash) == null) {
+                lru.put(hash, attrs.size());
+                totalBytes += attrs.size();
+            }
+        }
+        Instant now = Instant.now();
+        if (attrs.lastModifiedTime().toInstant().isBefore(now.minus(TOUCH_INTERVAL))) {
+            Files.setLastModifiedTime(file, FileTime.from(now));
+        }
+        return new Cover(file, hash, attrs.size());
+    }
+
+    private Cover fetch(String key, String mangaId, String fileName) throws IOException {
+        Path part = Files.createTempFile(tmp, "cover-", ".part");
+        try {
+            String hash;
+            try (Response response = client.cover(mangaId, fileName)) {
+                if (response.status() == 404) {
+                    throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cover " + key + " not found");
+                }
+                if (response.status() < 200 || response.status() >= 300 || response.body() == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "MangaDex cover responded with HTTP " + response.status());
+                }
+                // hash while writing so the body is read exactly once
+                MessageDigest digest = sha256Digest();
+                try (InputStream in = new DigestInputStream(response.body().asInputStream(), digest);
+                     OutputStream out = Files.newOutputStream(part)) {
+                    in.transferTo(out);
+                }
+                hash = HexFormat.of().formatHex(digest.digest());
+            } catch (FeignException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "MangaDex cover request failed", e);
+            }
+
+            Path file = objectPath(hash);
+            Files.createDirectories(file.getParent());
+            long size = Files.size(part);
+            if (Files.exists(file)) {
+                // same bytes under another name, keep the one copy
+                Files.delete(part);
+            } else {
+                Files.move(part, file, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            Path refPart = Files.writeString(Files.createTempFile(tmp, "ref-", ".part"), hash, StandardCharsets.US_ASCII);
+            Files.move(refPart, refs.resolve(sha256(key)), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            synchronized (this) {
+                if (lru.put(hash, size) == null) totalBytes += size;
+                evict();
+            }
+            return new Cover(file, hash, size);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    // guarded by this, the newest file always stays even when it alone is over the limit
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = lru.entrySet().iterator();
+        while (totalBytes > maxBytes && lru.size() > 1) {
+            Map.Entry<String, Long> e = eldest.next();
+            eldest.remove();
+            totalBytes -= e.getValue();
+            try {
+                Files.deleteIfExists(objectPath(e.getKey()));
+            } catch (IOException ex) {
+                log.warn("Could not delete cover {}", e.getKey(), ex);
+            }
+        }
+    }
+
+    private record Stored(String hash, long size, FileTime lastServed) {}
+
+    // rebuilds the lru from what a previous run left on disk, oldest mtime first
+    private synchronized void load() throws IOException {
+        try (Stream<Path> leftovers = Files.list(tmp)) {
+            for (Path p : (Iterable<Path>) leftovers::iterator) Files.deleteIfExists(p);
+        }
+        List<Stored> stored = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(objects, 2)) {
+            files.filter(Files::isRegularFile).forEach(p -> {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                    stored.add(new Stored(p.getFileName().toString(), attrs.size(), attrs.lastModifiedTime()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        stored.sort((a, b) -> a.lastServed().compareTo(b.lastServed()));
+        for (Stored s : stored) {
+            lru.put(s.hash(), s.size());
+            totalBytes += s.size();
+        }
+        evict();
+        if (!stored.isEmpty()) log.info("Cover cache holds {} files, {} bytes", lru.size(), totalBytes);
+    }
+
+    private Path objectPath(String hash) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String sha256(String s) {
+        return HexFormat.of().formatHex(sha256Digest().digest(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.shiori.backend;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+// on disk cache behind /api/covers
+// dir: where covers are kept, reused across restarts
+// maxSize: total bytes of cover files, least recently served files are deleted past it
+// rewriteUrls: hand out /api/covers/... instead of uploads.mangadex.org urls in search results
+@ConfigurationProperties("shiori.covers")
+public class CoverCacheProperties {
+
+    private Path dir = Path.of("data", "covers");
+    private DataSize maxSize = DataSize.ofGigabytes(2);
+    private boolean rewriteUrls = true;
+
+    public Path getDir() {
+        return dir;
+    }
+    public void setDir(Path dir) {
+        this.dir = dir;
+    }
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+    public boolean isRewriteUrls() {
+        return rewriteUrls;
+    }
+    public void setRewriteUrls(boolean rewriteUrls) {
+        this.rewriteUrls = rewriteUrls;
+    }
+}
@@ -0,0 +1,80 @@
+package com.shiori.backend;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// mangadex cover art served from CoverCache, same path layout as uploads.mangadex.org/covers
+@RestController
+@RequestMapping("/api/covers")
+public class CoverController {
+
+    private static final Pattern MANGA_ID = Pattern.compile("[0-9a-fA-F-]{36}");
+    // a cover file, optionally mangadex's .256.jpg / .512.jpg thumbnail of it
+    private static final Pattern FILE_NAME = Pattern.compile("[\\w-]+\\.(jpe?g|png|gif|webp)(\\.(256|512)\\.jpg)?");
+
+    // content addressed, a url never changes what it returns
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // tomcat sends these files with sendfile after the servlet returns
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final CoverCache covers;
+
+    // a proxy, CoverCache is only created when the first cover is asked for
+    public CoverController(@Lazy CoverCache covers) {
+        this.covers = covers;
+    }
+
+    @GetMapping("/{mangaId}/{fileName:.+}")
+    public void cover(@PathVariable String mangaId, @PathVariable String fileName,
+                      HttpServletRequest request, HttpServletResponse response) throws Exception {
+        if (!MANGA_ID.matcher(mangaId).matches() || !FILE_NAME.matcher(fileName).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a MangaDex cover path");
+        }
+        CoverCache.Cover cover = covers.get(mangaId, fileName);
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + cover.hash() + "\"")) return;
+
+        response.setContentType(MediaTypeFactory.getMediaType(fileName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(cover.size());
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, cover.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, cover.size());
+            return;
+        }
+        // no sendfile (other container, tls), still skip copying through a heap buffer where the jdk can
+        try (FileChannel file = FileChannel.open(cover.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < cover.size()) {
+                long sent = file.transferTo(position, cover.size() - position, out);
+                if (sent <= 0) break;
+                position += sent;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.shiori.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import feign.Request;
+import feign.Response;
+import feign.RetryableException;
+
+// MangaDexClient on java.net.http, picked over the feign client with shiori.mangadex.http.client=jdk
+// one HttpClient for the whole app keeps connections alive and multiplexes them over HTTP/2.
+// callers run on virtual threads, a call waiting on mangadex parks its virtual thread instead of
+// holding a platform thread, so thousands of calls in flight cost a handful of carrier threads.
+@Component
+@Lazy
+@Primary
+@ConditionalOnProperty(prefix = "shiori.mangadex.http", name = "client", havingValue = "jdk")
+public class JdkMangaDexClient implements MangaDexClient {
+
+    private final HttpClient http;
+    private final String baseUrl;
+    private final MangaDexHttpProperties props;
+
+    public JdkMangaDexClient(MangaDexHttpProperties props) {
+        this.props = props;
+        this.baseUrl = props.getBaseUrl();
+        this.http = HttpClient.newBuilder()
+            .version(props.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .connectTimeout(props.getConnectTimeout())
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            // the client's own async work runs on virtual threads too
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    }
+
+    @Override
+    public Response search(String title, int limit, String includes, String contentRating) {
+        return get("/manga", "title", title, "limit", limit, "includes[]", includes, "contentRating[]", contentRating);
+    }
+
+    @Override
+    public Response byIds(List<String> ids, int limit, String includes, List<String> contentRating) {
+        return get("/manga", "ids[]", ids, "limit", limit, "includes[]", includes, "contentRating[]", contentRating);
+    }
+
+    @Override
+    public Response feed(String id, String translatedLanguage, int limit, String orderReadableAt,
+                         String includes, String contentRating) {
+        return get("/manga/" + encode(id) + "/feed", "translatedLanguage[]", translatedLanguage, "limit", limit,
+            "order[readableAt]", orderReadableAt, "includes[]", includes, "contentRating[]", contentRating);
+    }
+
+    @Override
+    public Response feedSince(String id, String translatedLanguage, int limit, int offset, String orderReadableAt,
+                              String publishAtSince, int includeFuturePublishAt, String includes, String contentRating) {
+        return get("/manga/" + encode(id) + "/feed", "translatedLanguage[]", translatedLanguage, "limit", limit, "offset", offset,
+            "order[readableAt]", orderReadableAt, "publishAtSince", publishAtSince,
+            "includeFuturePublishAt", includeFuturePublishAt, "includes[]", includes, "contentRating[]", contentRating);
+    }
+
+    @Override
+    public Response feedPage(String id, List<String> translatedLanguages, int limit, int offset, String orderReadableAt,
+                             String includes, String contentRating) {
+        return get("/manga/" + encode(id) + "/feed", "translatedLanguage[]", translatedLanguages, "limit", limit, "offset", offset,
+            "order[readableAt]", orderReadableAt, "includes[]", includes, "contentRating[]", contentRating);
+    }
+
+    @Override
+    public Response feedUpdatedSince(String id, String translatedLanguage, int limit, String orderReadableAt,
+                                     String updatedAtSince, String includes, String contentRating) {
+        return get("/manga/" + encode(id) + "/feed", "translatedLanguage[]", translatedLanguage, "limit", limit,
+            "order[readableAt]", orderReadableAt, "updatedAtSince", updatedAtSince,
+            "includes[]", includes, "contentRating[]", contentRating);
+    }
+
+    @Override
+    public Response aggregate(String id, String translatedLanguage) {
+        return get("/manga/" + encode(id) + "/aggregate", "translatedLanguage[]", translatedLanguage);
+    }
+
+    @Override
+    public Response chapterByNumber(String mangaId, String chapter, String translatedLanguage, String order,
+                                    int limit, String contentRating, String includes) {
+        return get("/chapter", "manga", mangaId, "chapter", chapter, "translatedLanguage[]", translatedLanguage,
+            "order[readableAt]", order, "limit", limit, "contentRating[]", contentRating, "includes[]", includes);
+    }
+
+    // name, value pairs, null values are left out and collections repeat the name like feign does
+    private Response get(String path, Object... params) {
+        URI uri = URI.create(baseUrl + path + query(params));
+        Request request = Request.create(Request.HttpMethod.GET, uri.toString(), Map.of(), null, StandardCharsets.UTF_8, null);
+        HttpRequest httpRequest = HttpRequest.newBuilder(uri)
+            .timeout(props.getReadTimeout())
+            .header("Accept", "application/json")
+            .GET()
+            .build();
+        try {
+            HttpResponse<InputStream> response = http.send(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+            Map<String, Collection<String>> headers = new HashMap<>();
+            response.headers().map().forEach((name, values) -> headers.put(name, List.copyOf(values)));
+            Integer length = response.headers().firstValueAsLong("content-length").stream()
+                .mapToObj(Math::toIntExact).findFirst().orElse(null);
+            return Response.builder()
+                .status(response.statusCode())
+                .reason("")
+                .request(request)
+                .headers(headers)
+                .body(response.body(), length)
+                .build();
+        } catch (IOException e) {
+            throw new RetryableException(-1, e.getMessage(), Request.HttpMethod.GET, e, (Long) null, request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RetryableException(-1, "Interrupted", Request.HttpMethod.GET, e, (Long) null, request);
+        }
+    }
+
+    static String query(Object... params) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i + 1 < params.length; i += 2) {
+            if (params[i + 1] instanceof Collection<?> values) {
+                for (Object value : values) append(b, params[i], value);
+            } else {
+                append(b, params[i], params[i + 1]);
+            }
+        }
+        return b.toString();
+    }
+
+    private static void append(StringBuilder b, Object name, Object value) {
+        if (value == null) return;
+        b.append(b.isEmpty() ? '?' : '&')
+            .append(encode(name.toString()))
+            .append('=')
+            .append(encode(value.toString()));
+    }
+
+    // also used for path segments like feign's @PathVariable, a / or ? in an id stays inside the segment
+    private static String encode(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
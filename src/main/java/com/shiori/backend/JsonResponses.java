@@ -0,0 +1,165 @@
+package com.shiori.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// json bodies serialized once, with a weak etag over the bytes and a gzipped copy made on first use.
+// spring answers If-None-Match itself with a 304 when a ResponseEntity carries a matching ETag.
+// hot() keys on the identity of a cached upstream result: while MangaDexService's caches hand out the
+// same object its bytes are reused, so repeat hits skip jackson and gzip. the keys are weak, a rendering
+// goes away with the value it was made from once the upstream cache drops or replaces it
+@Component
+public class JsonResponses {
+
+    // smaller bodies go out as they are, gzip would barely shrink them
+    static final int GZIP_MIN_BYTES = 1024;
+    private static final long MAX_WEIGHT = 32L * 1024 * 1024;
+
+    public static final class Rendered {
+        private final byte[] json;
+        private final String etag;
+        private volatile byte[] gzip;
+
+        Rendered(byte[] json, String etag) {
+            this.json = json;
+            this.etag = etag;
+        }
+
+        public byte[] json() {
+            return json;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        // racing threads may both compress, either result is fine
+        public byte[] gzip() {
+            byte[] g = gzip;
+            if (g == null) gzip = g = JsonResponses.gzip(json);
+            return g;
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final Cache<Object, Rendered> hot;
+
+    public JsonResponses(ObjectMapper mapper, MeterRegistry registry) {
+        this.mapper = mapper;
+        this.hot = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumWeight(MAX_WEIGHT)
+            // the gzipped copy isn't there yet on insert, a third of the json is a fair guess for it
+            .weigher((Object k, Rendered v) -> v.json.length + v.json.length / 3)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, hot, "responses.hot");
+    }
+
+    public Rendered render(Object body) {
+        byte[] json = serialize(body);
+        return new Rendered(json, etag(json));
+    }
+
+    // with an etag the caller derived from what the body was built from
+    public Rendered render(Object body, String etag) {
+        return new Rendered(serialize(body), etag);
+    }
+
+    private byte[] serialize(Object body) {
+        try {
+            return mapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the rendering of a value that is handed out again on later requests. one-off values go through
+    // render(), cached here they would only push out the renderings worth keeping
+    public Rendered hot(Object body) {
+        return hot.get(body, this::render);
+    }
+
+    // 200 with the body gzipped when the client takes it, or 304 when the client has it already
+    public ResponseEntity<byte[]> ok(ResponseEntity.BodyBuilder response, Rendered body, String acceptEncoding) {
+        response.eTag(body.etag())
+            .cacheControl(CacheControl.noCache())
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (body.json.length >= GZIP_MIN_BYTES && acceptsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return response.body(body.json);
+    }
+
+    // weak, one tag covers the plain and the gzipped bytes since they are the same json
+    public static String etag(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            return "W/\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String etag(String material) {
+        return etag(material.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // gzip listed without q=0, or * without q=0 and no explicit gzip
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        Boolean any = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim();
+            boolean refused = false;
+            for (int i = 1; i < params.length; i++) {
+                String p = params[i].trim().replace(" ", "");
+                if (p.startsWith("q=") && isZero(p.substring(2))) refused = true;
+            }
+            if (coding.equalsIgnoreCase("gzip")) return !refused;
+            if (coding.equals("*")) any = !refused;
+        }
+        return any != null && any;
+    }
+
+    private static boolean isZero(String q) {
+        try {
+            return Double.parseDouble(q) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out, 8192)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,18 +1,31 @@
 package com.shiori.backend;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
+import jakarta.persistence.CollectionTable;
 import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
 
 @Entity
+// keyset listing walks (updatedAt, id) backwards, optionally narrowed by status or year
+@Table(indexes = {
+    @Index(name = "idx_manga_updated_id", columnList = "updatedAt, id"),
+    @Index(name = "idx_manga_status_updated_id", columnList = "status, updatedAt, id"),
+    @Index(name = "idx_manga_year_updated_id", columnList = "year, updatedAt, id")
+})
 public class Manga {
 
     @Id
@@ -24,9 +37,17 @@ public class Manga {
     private String mangadexId;
     private Integer year;
     private String coverImageUrl;
-    private Instant createdAt, updatedAt;
+    private Instant createdAt;
+    // the keyset listing pages on it, see V4__manga_updated_at_not_null
+    @Column(nullable = false)
+    private Instant updatedAt;
     @Enumerated(EnumType.STRING)
     private MangaStatus status;
+    // other names the title is known by, searched by the title index
+    @ElementCollection
+    @CollectionTable(name = "manga_alt_title", joinColumns = @JoinColumn(name = "manga_id"))
+    @Column(name = "title")
+    private List<String> altTitles = new ArrayList<>();
     
     public enum MangaStatus {
         ONGOING,
@@ -103,6 +124,12 @@ public class Manga {
     public void setStatus(MangaStatus status) {
         this.status = status;
     }
+    public List<String> getAltTitles() {
+        return altTitles;
+    }
+    public void setAltTitles(List<String> altTitles) {
+        this.altTitles = altTitles != null ? new ArrayList<>(altTitles) : new ArrayList<>();
+    }
 
     
     
@@ -1,8 +1,18 @@
 package com.shiori.backend;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,38 +20,118 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shiori.backend.dto.MangaImportResponse;
+import com.shiori.backend.dto.MangaIngestStatus;
+import com.shiori.backend.dto.MangaPage;
+import com.shiori.backend.dto.MangaRefreshStatus;
+import com.shiori.backend.dto.MangaSummary;
 
 
 @RestController
 @RequestMapping("/api/manga")
 public class MangaController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final MangaService mService;
+    private final MangaImportService importService;
+    private final MangaRefreshService refreshService;
+    private final MangaIngestService ingestService;
+    private final JsonResponses responses;
+    private final ObjectMapper mapper;
 
-    MangaController(MangaService mService) {
+    MangaController(MangaService mService, MangaImportService importService, MangaRefreshService refreshService,
+                    MangaIngestService ingestService, JsonResponses responses, ObjectMapper mapper) {
         this.mService = mService;
+        this.importService = importService;
+        this.refreshService = refreshService;
+        this.ingestService = ingestService;
+        this.responses = responses;
+        this.mapper = mapper;
     }
 
+    // pass nextCursor from the previous page as cursor to continue. body is a MangaPage,
+    // its etag comes from the ids and updatedAt of the rows, an unchanged page is a 304 without serializing it
     @GetMapping
-    public ResponseEntity<List<Manga>> getAll() {
-        return ResponseEntity.ok(mService.getAll());
+    public ResponseEntity<byte[]> getAll(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "50") int limit,
+        @RequestParam(required = false) Manga.MangaStatus status,
+        @RequestParam(required = false) Integer year,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+        WebRequest request
+    ) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        MangaPage page = mService.getPage(cursor, size, status, year);
+        String etag = etag(page);
+        if (request.checkNotModified(etag)) return null;
+        return responses.ok(ResponseEntity.ok(), responses.render(page, etag), acceptEncoding);
+    }
+
+    // whole (filtered) library as one json line per manga, written while rows are read
+    @GetMapping(produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAll(
+        @RequestParam(required = false) Manga.MangaStatus status,
+        @RequestParam(required = false) Integer year
+    ) {
+        StreamingResponseBody body = out -> mService.forEachSummary(status, year, manga -> {
+            try {
+                out.write(mapper.writeValueAsBytes(manga));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
     }
 
+    // updatedAt is looked up first, an unchanged manga is a 304 without loading the entity
     @GetMapping("/{id}")
-    public ResponseEntity<Manga> getById(@PathVariable Long id) {
-        return ResponseEntity.ok(mService.getById(id));
+    public ResponseEntity<Manga> getById(@PathVariable Long id, WebRequest request) {
+        if (notModified(mService.stamp(id), request)) return null;
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(mService.getById(id));
     }
 
     @GetMapping(params = "mangadexId")
-    public ResponseEntity<Manga> getByMangadexId(@RequestParam String mangadexId) {
+    public ResponseEntity<Manga> getByMangadexId(@RequestParam String mangadexId, WebRequest request) {
+        if (notModified(mService.stampByMangadexId(mangadexId), request)) return null;
         return mService.findByMangadexId(mangadexId)
-            .map(ResponseEntity::ok)
+            .map(manga -> ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(manga))
             .orElse(ResponseEntity.notFound().build());
     }
 
+    // also sets ETag and Last-Modified on the response when the client's copy is out of date
+    private static boolean notModified(Optional<MangaRepository.Stamp> stamp, WebRequest request) {
+        if (stamp.isEmpty() || stamp.get().getUpdatedAt() == null) return false;
+        Instant updatedAt = stamp.get().getUpdatedAt();
+        return request.checkNotModified(etag(stamp.get().getId(), updatedAt), updatedAt.toEpochMilli());
+    }
+
+    private static String etag(Long id, Instant updatedAt) {
+        return "W/\"" + id + "-" + micros(updatedAt) + "\"";
+    }
+
+    private static String etag(MangaPage page) {
+        StringBuilder b = new StringBuilder(page.items().size() * 24 + 32);
+        for (MangaSummary m : page.items()) {
+            b.append(m.id()).append('-').append(m.updatedAt() != null ? micros(m.updatedAt()) : 0).append(',');
+        }
+        return JsonResponses.etag(b.append(page.nextCursor()).toString());
+    }
+
+    private static long micros(Instant t) {
+        return t.getEpochSecond() * 1_000_000 + t.getNano() / 1_000;
+    }
+
     @PostMapping
     public ResponseEntity<Manga> create(@RequestBody Manga request) {
         Manga saved = mService.create(
@@ -49,12 +139,56 @@ public class MangaController {
                 request.getMangadexId(),
                 request.getYear(), 
                 request.getCoverImageUrl(),
-                request.getStatus()
+                request.getStatus(),
+                request.getAltTitles()
                 );
         URI location = URI.create("/api/manga/" + saved.getId());
         return ResponseEntity.created(location).body(saved);
     }
 
+    // bulk create or update keyed on mangadexId, every row gets its own outcome
+    @PostMapping("/import")
+    public ResponseEntity<MangaImportResponse> importAll(@RequestBody List<Manga> request) {
+        return ResponseEntity.ok(importService.importAll(request));
+    }
+
+    // re-reads title, year, cover and status of every tracked manga from mangadex in the background
+    @PostMapping("/refresh")
+    public ResponseEntity<MangaRefreshStatus> refresh() {
+        if (!refreshService.start()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A metadata refresh is already running");
+        }
+        return ResponseEntity.accepted().body(refreshService.status());
+    }
+
+    // progress of the running refresh, or the outcome of the last one
+    @GetMapping("/refresh")
+    public ResponseEntity<MangaRefreshStatus> refreshStatus() {
+        return ResponseEntity.ok(refreshService.status());
+    }
+
+    // loads a mangadex dump from the ingest directory into the library in the background
+    @PostMapping("/ingest")
+    public ResponseEntity<MangaIngestStatus> ingest(@RequestParam String file) {
+        Path dump = ingestService.resolve(file);
+        if (dump == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "file must name a dump inside the ingest directory");
+        }
+        if (!Files.isRegularFile(dump)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No dump named " + file);
+        }
+        if (!ingestService.start(dump)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "An ingest is already running");
+        }
+        return ResponseEntity.accepted().body(ingestService.status());
+    }
+
+    // progress of the running ingest, or the outcome of the last one
+    @GetMapping("/ingest")
+    public ResponseEntity<MangaIngestStatus> ingestStatus() {
+        return ResponseEntity.ok(ingestService.status());
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteById(@PathVariable Long id) {
         mService.deleteById(id);
@@ -0,0 +1,36 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// limits for batch lookups against mangadex
+// concurrency: upstream lookups running at once across all batches
+// slotTimeout: how long an item may queue for one of those lookups
+// itemTimeout: how long one item may take once it has its slot
+@ConfigurationProperties("shiori.mangadex.batch")
+public class MangaDexBatchProperties {
+
+    private int concurrency = 8;
+    private Duration slotTimeout = Duration.ofSeconds(60);
+    private Duration itemTimeout = Duration.ofSeconds(15);
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+    public Duration getSlotTimeout() {
+        return slotTimeout;
+    }
+    public void setSlotTimeout(Duration slotTimeout) {
+        this.slotTimeout = slotTimeout;
+    }
+    public Duration getItemTimeout() {
+        return itemTimeout;
+    }
+    public void setItemTimeout(Duration itemTimeout) {
+        this.itemTimeout = itemTimeout;
+    }
+}
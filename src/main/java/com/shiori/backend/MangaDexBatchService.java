@@ -0,0 +1,158 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Service;
+
+import com.shiori.backend.dto.ChapterResult;
+import com.shiori.backend.dto.LatestBatchRequest;
+import com.shiori.backend.dto.LatestResult;
+
+import jakarta.annotation.PreDestroy;
+
+// fans latest chapter lookups out over virtual threads, one item failing or
+// timing out never fails the batch
+@Service
+public class MangaDexBatchService {
+    private final MangaDexService mdService;
+    private final MangaService mService;
+    private final Duration slotTimeout;
+    private final Duration itemTimeout;
+
+    // caps upstream lookups across every batch in flight, not per request
+    private final Semaphore permits;
+    // lookups outlive their item when they time out, they still warm the cache
+    private final ExecutorService lookups = Executors.newVirtualThreadPerTaskExecutor();
+
+    public MangaDexBatchService(MangaDexService mdService, MangaService mService, MangaDexBatchProperties props) {
+        this.mdService = mdService;
+        this.mService = mService;
+        this.slotTimeout = props.getSlotTimeout();
+        this.itemTimeout = props.getItemTimeout();
+        this.permits = new Semaphore(props.getConcurrency(), true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lookups.shutdownNow();
+    }
+
+    // explicit ids first, then tracked ones, each id once
+    public List<String> resolveIds(LatestBatchRequest request) {
+        Set<String> ids = new LinkedHashSet<>();
+        if (request.ids() != null) {
+            for (String id : request.ids()) {
+                if (id != null && !id.isBlank()) ids.add(id.trim());
+            }
+        }
+        if (request.all()) {
+            ids.addAll(mService.getTrackedMangadexIds());
+        }
+        return new ArrayList<>(ids);
+    }
+
+    // results in the same order as ids
+    public List<LatestResult> latest(List<String> ids, String lang) {
+        LatestResult[] results = new LatestResult[ids.size()];
+        try (ExecutorService items = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < ids.size(); i++) {
+                int index = i;
+                items.submit(() -> results[index] = lookup(ids.get(index), lang));
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    // hands each result to the sink as soon as it completes, sink calls are serialized.
+    // the first sink failure (the client went away) cancels the items not written yet and is rethrown
+    public void latest(List<String> ids, String lang, Consumer<LatestResult> sink) {
+        // a lock rather than synchronized, a virtual thread blocked writing to a slow client mustn't pin its carrier
+        ReentrantLock lock = new ReentrantLock();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        try (ExecutorService items = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String id : ids) {
+                // the client went away while the batch was still being submitted, shutdownNow refuses the rest
+                if (failure.get() != null) break;
+                try {
+                    items.submit(() -> {
+                        LatestResult result = lookup(id, lang);
+                        lock.lock();
+                        try {
+                            if (failure.get() != null) return;
+                            sink.accept(result);
+                        } catch (RuntimeException e) {
+                            failure.set(e);
+                            // interrupts the items still queued for a slot or waiting on their lookup
+                            items.shutdownNow();
+                        } finally {
+                            lock.unlock();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+        }
+        if (failure.get() != null) throw failure.get();
+    }
+
+    private LatestResult lookup(String id, String lang) {
+        Future<ChapterResult> call = null;
+        try {
+            if (!permits.tryAcquire(slotTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return LatestResult.failed(id, "Timed out waiting for an upstream slot");
+            }
+            // the item's own time starts with its slot, a long queue ahead of it doesn't use it up
+            long deadline = System.nanoTime() + itemTimeout.toNanos();
+            try {
+                call = lookups.submit(() -> {
+                    try {
+                        return mdService.getLatestNumberedChapter(id, lang);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+            return LatestResult.ok(id, call.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            return LatestResult.failed(id, "Timed out after " + itemTimeout.toMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (call != null) call.cancel(true);
+            return LatestResult.failed(id, "Interrupted");
+        } catch (ExecutionException e) {
+            return LatestResult.failed(id, describe(e.getCause()));
+        } catch (RuntimeException e) {
+            return LatestResult.failed(id, describe(e));
+        }
+    }
+
+    // "Failed to fetch latest chapter" alone tells the caller nothing, report the root cause
+    private static String describe(Throwable t) {
+        Throwable root = t;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        String message = root.getMessage();
+        return message != null ? message : root.getClass().getSimpleName();
+    }
+}
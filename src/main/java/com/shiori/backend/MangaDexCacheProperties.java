@@ -0,0 +1,76 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+// per endpoint freshness for the mangadex response caches
+// ttl: how long an entry is fresh, after that it is served stale while one refresh runs
+// maxStale: how long past ttl a stale entry may still be served before it is dropped
+// maxWeight: estimated heap size the endpoint cache may hold
+@ConfigurationProperties("shiori.mangadex.cache")
+public class MangaDexCacheProperties {
+
+    private Tier search = new Tier(Duration.ofMinutes(10), Duration.ofHours(1), DataSize.ofMegabytes(8));
+    private Tier feed = new Tier(Duration.ofMinutes(2), Duration.ofMinutes(30), DataSize.ofMegabytes(16));
+    private Tier aggregate = new Tier(Duration.ofMinutes(5), Duration.ofHours(1), DataSize.ofMegabytes(4));
+    private Tier latest = new Tier(Duration.ofMinutes(1), Duration.ofMinutes(30), DataSize.ofMegabytes(4));
+
+    public static class Tier {
+        private Duration ttl;
+        private Duration maxStale;
+        private DataSize maxWeight;
+
+        public Tier() {}
+
+        public Tier(Duration ttl, Duration maxStale, DataSize maxWeight) {
+            this.ttl = ttl;
+            this.maxStale = maxStale;
+            this.maxWeight = maxWeight;
+        }
+        public Duration getTtl() {
+            return ttl;
+        }
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+        public Duration getMaxStale() {
+            return maxStale;
+        }
+        public void setMaxStale(Duration maxStale) {
+            this.maxStale = maxStale;
+        }
+        public DataSize getMaxWeight() {
+            return maxWeight;
+        }
+        public void setMaxWeight(DataSize maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+    }
+
+    public Tier getSearch() {
+        return search;
+    }
+    public void setSearch(Tier search) {
+        this.search = search;
+    }
+    public Tier getFeed() {
+        return feed;
+    }
+    public void setFeed(Tier feed) {
+        this.feed = feed;
+    }
+    public Tier getAggregate() {
+        return aggregate;
+    }
+    public void setAggregate(Tier aggregate) {
+        this.aggregate = aggregate;
+    }
+    public Tier getLatest() {
+        return latest;
+    }
+    public void setLatest(Tier latest) {
+        this.latest = latest;
+    }
+}
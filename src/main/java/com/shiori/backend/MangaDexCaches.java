@@ -0,0 +1,85 @@
+package com.shiori.backend;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.shiori.backend.dto.ChapterResult;
+import com.shiori.backend.dto.MangaSearchResult;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// builds the bounded in memory caches in front of MangaDexClient
+final class MangaDexCaches {
+
+    // loads and refreshes block on upstream I/O, the rate limiter and single flight. they run here, on their
+    // own virtual threads, and keep the trace context of the caller that missed
+    private static final ExecutorService LOAD_EXECUTOR = ContextExecutorService.wrap(
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("md-cache-load-", 0).factory()),
+        ContextSnapshotFactory.builder().build()::captureAll);
+
+    private MangaDexCaches() {}
+
+    // refreshAfterWrite gives stale-while-revalidate: a read past ttl returns the old value
+    // and kicks off exactly one reload for that key, failed reloads keep the old value.
+    // async so a miss only puts a future in the map: a synchronous loader runs inside the map's compute,
+    // a synchronized block, where a virtual thread waiting on mangadex pins its carrier
+    static <K, V> AsyncLoadingCache<K, V> build(String name, MangaDexCacheProperties.Tier tier,
+                                                Weigher<K, V> weigher, CacheLoader<K, V> loader,
+                                                MeterRegistry registry) {
+        AsyncLoadingCache<K, V> cache = Caffeine.newBuilder()
+            .refreshAfterWrite(tier.getTtl())
+            .expireAfterWrite(tier.getTtl().plus(tier.getMaxStale()))
+            .maximumWeight(tier.getMaxWeight().toBytes())
+            .weigher(weigher)
+            .executor(LOAD_EXECUTOR)
+            .recordStats()
+            .buildAsync(loader);
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        return cache;
+    }
+
+    // rough heap estimates in bytes, only need to be proportional for eviction
+
+    static int weigh(String s) {
+        return s == null ? 0 : 40 + 2 * s.length();
+    }
+
+    static int weigh(MangaSearchResult r) {
+        int total = 40 + weigh(r.id()) + weigh(r.title()) + weigh(r.coverUrl()) + (r.year() != null ? 16 : 0);
+        if (r.altTitles() != null) {
+            for (String alt : r.altTitles()) total += 8 + weigh(alt);
+        }
+        return total;
+    }
+
+    static int weigh(ChapterResult r) {
+        if (r == null) return 0;
+        return 40 + weigh(r.chapterId()) + weigh(r.chapter()) + weigh(r.title())
+            + weigh(r.volume()) + weigh(r.readableAt()) + weigh(r.groupName());
+    }
+
+    static int weighSearch(List<MangaSearchResult> results) {
+        int total = 24 + 8 * results.size();
+        for (MangaSearchResult r : results) total += weigh(r);
+        return total;
+    }
+
+    static int weighChapters(List<ChapterResult> chapters) {
+        int total = 24 + 8 * chapters.size();
+        for (ChapterResult c : chapters) total += weigh(c);
+        return total;
+    }
+
+    static int weighChapter(Optional<ChapterResult> chapter) {
+        return 16 + weigh(chapter.orElse(null));
+    }
+}
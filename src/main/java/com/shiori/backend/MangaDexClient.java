@@ -1,36 +1,83 @@
 package com.shiori.backend;
 
+import java.util.List;
+
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 
-// Feignclient class
-@FeignClient(name = "mangadex", url = "https://api.mangadex.org")
+import feign.Response;
+
+// Feignclient class, returns the raw response so bodies can be parsed as a stream
+// not primary so JdkMangaDexClient can take its place when configured
+@FeignClient(name = "mangadex", url = "${shiori.mangadex.http.base-url:https://api.mangadex.org}", primary = false)
 public interface MangaDexClient {
 
     @GetMapping("/manga")
-    String search(@RequestParam("title") String title,
+    Response search(@RequestParam("title") String title,
                   @RequestParam("limit") int limit,
                   @RequestParam(value = "includes[]", defaultValue = "cover_art") String includes,
                   @RequestParam(value = "contentRating[]", defaultValue = "safe") String contentRating);
 
+    // up to 100 manga by id in one call, every content rating so no tracked title is filtered out
+    @GetMapping("/manga")
+    Response byIds(@RequestParam("ids[]") List<String> ids,
+                   @RequestParam("limit") int limit,
+                   @RequestParam("includes[]") String includes,
+                   @RequestParam("contentRating[]") List<String> contentRating);
+
+    @GetMapping("/manga/{id}/feed")
+    Response feed(
+        @PathVariable("id") String id,
+        @RequestParam("translatedLanguage[]") String translatedLanguage,
+        @RequestParam("limit") int limit,
+        @RequestParam("order[readableAt]") String orderReadableAt,
+        @RequestParam("includes[]") String includes,
+        @RequestParam("contentRating[]") String contentRating);
+
+    // page through the feed oldest first, publishAtSince is omitted when null
+    @GetMapping("/manga/{id}/feed")
+    Response feedSince(
+        @PathVariable("id") String id,
+        @RequestParam("translatedLanguage[]") String translatedLanguage,
+        @RequestParam("limit") int limit,
+        @RequestParam("offset") int offset,
+        @RequestParam("order[readableAt]") String orderReadableAt,
+        @RequestParam(value = "publishAtSince", required = false) String publishAtSince,
+        @RequestParam("includeFuturePublishAt") int includeFuturePublishAt,
+        @RequestParam("includes[]") String includes,
+        @RequestParam("contentRating[]") String contentRating);
+
+    // one page of the feed in several languages at once, newest first, for walking the whole feed
+    @GetMapping("/manga/{id}/feed")
+    Response feedPage(
+        @PathVariable("id") String id,
+        @RequestParam("translatedLanguage[]") List<String> translatedLanguages,
+        @RequestParam("limit") int limit,
+        @RequestParam("offset") int offset,
+        @RequestParam("order[readableAt]") String orderReadableAt,
+        @RequestParam("includes[]") String includes,
+        @RequestParam("contentRating[]") String contentRating);
+
+    // chapters created or edited since updatedAtSince, newest first, for delta refreshes
     @GetMapping("/manga/{id}/feed")
-    String feed(
+    Response feedUpdatedSince(
         @PathVariable("id") String id,
         @RequestParam("translatedLanguage[]") String translatedLanguage,
         @RequestParam("limit") int limit,
         @RequestParam("order[readableAt]") String orderReadableAt,
+        @RequestParam("updatedAtSince") String updatedAtSince,
         @RequestParam("includes[]") String includes,
         @RequestParam("contentRating[]") String contentRating);
 
     @GetMapping("/manga/{id}/aggregate")
-    String aggregate(
+    Response aggregate(
         @PathVariable("id") String id,
         @RequestParam("translatedLanguage[]") String translatedLanguage);
 
     @GetMapping("/chapter")
-    String chapterByNumber(
+    Response chapterByNumber(
         @RequestParam("manga") String mangaId,
         @RequestParam("chapter") String chapter,
         @RequestParam("translatedLanguage[]") String translatedLanguage,
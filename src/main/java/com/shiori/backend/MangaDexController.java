@@ -1,40 +1,168 @@
 package com.shiori.backend;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.shiori.backend.dto.ChapterResult;
-import com.shiori.backend.dto.MangaSearchResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shiori.backend.dto.LatestBatchRequest;
+import com.shiori.backend.dto.LatestResult;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
 
 @RestController
 @RequestMapping("/api/md")
 public class MangaDexController {
     private final MangaDexService mdService;
+    private final MangaDexBatchService batchService;
+    private final TitleSearchService titleSearch;
+    private final JsonResponses responses;
+    private final ObjectMapper mapper;
+
+    // upstream lookups wait on virtual threads, the servlet thread goes back to tomcat right away.
+    // the request's observation is carried over so upstream and query spans stay under it
+    private final ExecutorService lookups = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+        ContextSnapshotFactory.builder().build()::captureAll);
 
-    public MangaDexController(MangaDexService mdService) {
+    public MangaDexController(MangaDexService mdService, MangaDexBatchService batchService,
+                              TitleSearchService titleSearch, JsonResponses responses, ObjectMapper mapper) {
         this.mdService = mdService;
+        this.batchService = batchService;
+        this.titleSearch = titleSearch;
+        this.responses = responses;
+        this.mapper = mapper;
     }
 
+    // answered from the local title index when it has matches, remote=true always asks mangadex.
+    // body is a List<MangaSearchResult>
     @GetMapping("/search")
-    public List<MangaSearchResult> search(@RequestParam String title, @RequestParam(defaultValue = "5") int limit) {
-        return mdService.searchResults(title, limit);
+    public CompletableFuture<ResponseEntity<byte[]>> search(
+        @RequestParam String title,
+        @RequestParam(defaultValue = "5") int limit,
+        @RequestParam(defaultValue = "false") boolean remote,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        return CompletableFuture.supplyAsync(() -> respond(titleSearch.search(title, limit, remote), acceptEncoding), lookups);
     }
 
+    // body is a List<ChapterResult>
     @GetMapping("/manga/{id}/feed")
-    public List<ChapterResult> feed(@PathVariable String id, @RequestParam(defaultValue = "10") int limit, @RequestParam(defaultValue = "en") String lang) {
-        return mdService.getFeed(id, limit, lang);
+    public CompletableFuture<ResponseEntity<byte[]>> feed(
+        @PathVariable String id,
+        @RequestParam(defaultValue = "10") int limit,
+        @RequestParam(defaultValue = "en") String lang,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        return CompletableFuture.supplyAsync(() -> respond(mdService.feed(id, limit, lang), acceptEncoding), lookups);
+    }
+
+    // the whole feed in every requested language (lang=en&lang=ja), newest first, one json line per chapter
+    // flushed page by page as they come in. up to MangaDexService.MAX_WINDOW chapters, the most mangadex pages
+    // through, in constant memory
+    @GetMapping(value = "/manga/{id}/feed", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> feedStream(
+        @PathVariable String id,
+        @RequestParam(defaultValue = "en") List<String> lang
+    ) {
+        StreamingResponseBody body = out -> {
+            try {
+                mdService.forEachChapter(id, lang, chapter -> {
+                    try {
+                        out.write(mapper.writeValueAsBytes(chapter));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, () -> {
+                    try {
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // the client went away, the prefetched page was cancelled
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
     }
 
+    // body is a ChapterResult, empty when the title has no chapters in lang
     @GetMapping("/manga/{id}/latest")
-    public ChapterResult latest(
+    public CompletableFuture<ResponseEntity<byte[]>> latest(
         @PathVariable String id,
-        @RequestParam(defaultValue = "en") String lang
+        @RequestParam(defaultValue = "en") String lang,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
     ) {
-        return mdService.getLatestNumberedChapter(id, lang);
+        return CompletableFuture.supplyAsync(() -> respond(mdService.latest(id, lang), acceptEncoding), lookups);
+    }
+
+    // the body is rendered once per cached upstream result and per request for local answers,
+    // its etag lets clients revalidate with a 304.
+    // a fallback answer carries Warning: 110 and an Age of how long ago it was fetched
+    private ResponseEntity<byte[]> respond(MangaDexService.Served<?> served, String acceptEncoding) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (served.stale()) {
+            long age = Math.max(0, Duration.between(served.staleSince(), Instant.now()).toSeconds());
+            response.header(HttpHeaders.WARNING, "110 - \"Response is Stale\"")
+                .header(HttpHeaders.AGE, Long.toString(age));
+        }
+        if (served.value() == null) return response.build();
+        JsonResponses.Rendered body = served.shared() ? responses.hot(served.value()) : responses.render(served.value());
+        return responses.ok(response, body, acceptEncoding);
+    }
+
+    // latest chapter for many titles at once, items that fail carry an error instead
+    @PostMapping("/latest")
+    public List<LatestResult> latestBatch(@RequestBody LatestBatchRequest request) {
+        return batchService.latest(batchService.resolveIds(request), lang(request));
+    }
+
+    // same lookup, but each item is written as one json line as soon as it completes
+    @PostMapping(value = "/latest", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> latestBatchStream(@RequestBody LatestBatchRequest request) {
+        List<String> ids = batchService.resolveIds(request);
+        String lang = lang(request);
+        StreamingResponseBody body = out -> {
+            try {
+                batchService.latest(ids, lang, result -> {
+                    try {
+                        out.write(mapper.writeValueAsBytes(result));
+                        out.write('\n');
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // the client went away, the items not written yet were cancelled
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    private static String lang(LatestBatchRequest request) {
+        return request.lang() != null && !request.lang().isBlank() ? request.lang() : "en";
     }
 }
@@ -0,0 +1,15 @@
+package com.shiori.backend;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import feign.Response;
+
+// cover art cdn, fileName may carry mangadex's own thumbnail suffix (.256.jpg / .512.jpg)
+@FeignClient(name = "mangadex-covers", url = "https://uploads.mangadex.org")
+public interface MangaDexCoverClient {
+
+    @GetMapping("/covers/{mangaId}/{fileName}")
+    Response cover(@PathVariable("mangaId") String mangaId, @PathVariable("fileName") String fileName);
+}
@@ -0,0 +1,44 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// delta refresh of latest chapter lookups
+// enabled: refresh from a remembered high-water mark instead of the full /aggregate map
+// limit: chapters asked for per delta, a full page means too much changed and a full lookup runs
+// fullRefresh: a mark older than this is dropped, the next lookup starts over from /aggregate
+// maxMarks: high-water marks kept in memory
+@ConfigurationProperties("shiori.mangadex.delta")
+public class MangaDexDeltaProperties {
+
+    private boolean enabled = true;
+    private int limit = 20;
+    private Duration fullRefresh = Duration.ofHours(24);
+    private long maxMarks = 100_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    public int getLimit() {
+        return limit;
+    }
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+    public Duration getFullRefresh() {
+        return fullRefresh;
+    }
+    public void setFullRefresh(Duration fullRefresh) {
+        this.fullRefresh = fullRefresh;
+    }
+    public long getMaxMarks() {
+        return maxMarks;
+    }
+    public void setMaxMarks(long maxMarks) {
+        this.maxMarks = maxMarks;
+    }
+}
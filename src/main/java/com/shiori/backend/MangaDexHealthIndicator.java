@@ -0,0 +1,34 @@
+package com.shiori.backend;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// breaker and bulkhead state per mangadex endpoint under /actuator/health/mangaDex
+// always UP, an open breaker means mangadex is struggling, not that this instance should leave the load balancer
+@Component
+public class MangaDexHealthIndicator implements HealthIndicator {
+
+    private final MangaDexResilience resilience;
+
+    public MangaDexHealthIndicator(MangaDexResilience resilience) {
+        this.resilience = resilience;
+    }
+
+    @Override
+    public Health health() {
+        Map<String, Object> endpoints = new TreeMap<>();
+        resilience.guards().forEach((name, guard) -> {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("breaker", guard.breaker().state());
+            detail.put("bulkheadAvailable", guard.bulkhead().availablePermits());
+            detail.put("bulkheadCapacity", guard.capacity());
+            endpoints.put(name, detail);
+        });
+        return Health.up().withDetail("endpoints", endpoints).build();
+    }
+}
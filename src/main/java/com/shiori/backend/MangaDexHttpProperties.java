@@ -0,0 +1,51 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// transport for api.mangadex.org
+// client: feign (default) or jdk, jdk uses one shared java.net.http.HttpClient
+// baseUrl: api root for both clients, a stand-in like the load test stub can take its place
+// connectTimeout / readTimeout: jdk client only, feign reads spring.cloud.openfeign.client.config.mangadex.*
+// http2: offer HTTP/2, many calls then share one connection, falls back to HTTP/1.1 keep-alive
+@ConfigurationProperties("shiori.mangadex.http")
+public class MangaDexHttpProperties {
+
+    private String client = "feign";
+    private String baseUrl = "https://api.mangadex.org";
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration readTimeout = Duration.ofSeconds(20);
+    private boolean http2 = true;
+
+    public String getClient() {
+        return client;
+    }
+    public void setClient(String client) {
+        this.client = client;
+    }
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+    public boolean isHttp2() {
+        return http2;
+    }
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+}
@@ -0,0 +1,399 @@
+package com.shiori.backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.shiori.backend.dto.ChapterResult;
+import com.shiori.backend.dto.MangaSearchResult;
+
+// pull parser for mangadex payloads, reads straight off the response stream
+// so we never hold the body as a String or a full JsonNode tree
+public class MangaDexParser {
+    private static final String COVER_BASE = "https://uploads.mangadex.org/covers/";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public List<MangaSearchResult> readSearchResults(InputStream in) throws IOException {
+        try (JsonParser p = mapper.createParser(in)) {
+            List<MangaSearchResult> output = new ArrayList<>();
+            if (!moveToData(p)) return output;
+            JsonToken t;
+            while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+                if (t == JsonToken.START_OBJECT) {
+                    output.add(readMangaMetadata(p).manga());
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return output;
+        }
+    }
+
+    // manga looked up by id with their publication status, for the metadata refresh
+    public List<MangaMetadata> readMangaMetadata(InputStream in) throws IOException {
+        try (JsonParser p = mapper.createParser(in)) {
+            List<MangaMetadata> output = new ArrayList<>();
+            if (!moveToData(p)) return output;
+            JsonToken t;
+            while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+                if (t == JsonToken.START_OBJECT) {
+                    output.add(readMangaMetadata(p));
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return output;
+        }
+    }
+
+    // a dump of manga objects, either one json array of them or one object after another (ndjson).
+    // each object goes to sink as soon as it is read, so memory doesn't grow with the dump
+    public void readMangaDump(InputStream in, Consumer<MangaMetadata> sink) throws IOException {
+        try (JsonParser p = mapper.createParser(in)) {
+            JsonToken t = p.nextToken();
+            boolean array = t == JsonToken.START_ARRAY;
+            if (array) t = p.nextToken();
+            while (t != null && !(array && t == JsonToken.END_ARRAY)) {
+                if (t == JsonToken.START_OBJECT) {
+                    sink.accept(readMangaMetadata(p));
+                } else {
+                    p.skipChildren();
+                }
+                t = p.nextToken();
+            }
+        }
+    }
+
+    public List<ChapterResult> readChapters(InputStream in) throws IOException {
+        try (JsonParser p = mapper.createParser(in)) {
+            List<ChapterResult> output = new ArrayList<>();
+            if (!moveToData(p)) return output;
+            JsonToken t;
+            while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+                if (t == JsonToken.START_OBJECT) {
+                    output.add(toChapterResult(p));
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return output;
+        }
+    }
+
+    // highest numeric chapter key of /aggregate, labels like "Extra" never win
+    public String readMaxChapter(InputStream in) throws IOException {
+        long[] max = {ChapterNumber.ABSENT};
+        String[] label = {null};
+        readAggregateKeys(in, key -> {
+            long n = ChapterNumber.encode(key);
+            if (ChapterNumber.isNumber(n) && n > max[0]) {
+                max[0] = n;
+                label[0] = key;
+            }
+        });
+        return label[0];
+    }
+
+    // every chapter key of /aggregate, numbered or not
+    public ChapterIndex readChapterIndex(InputStream in) throws IOException {
+        ChapterIndex.Builder index = new ChapterIndex.Builder();
+        readAggregateKeys(in, index::add);
+        return index.build();
+    }
+
+    // walks volumes -> chapters keys of /aggregate, chapter bodies are skipped without being materialized
+    private void readAggregateKeys(InputStream in, Consumer<String> keys) throws IOException {
+        try (JsonParser p = mapper.createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return;
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if (!"volumes".equals(field) || value != JsonToken.START_OBJECT) {
+                    p.skipChildren();
+                    continue;
+                }
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    if (p.nextToken() != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        continue;
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String volumeField = p.currentName();
+                        JsonToken chapters = p.nextToken();
+                        if (!"chapters".equals(volumeField) || chapters != JsonToken.START_OBJECT) {
+                            p.skipChildren();
+                            continue;
+                        }
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String key = p.currentName();
+                            p.nextToken();
+                            p.skipChildren();
+                            keys.accept(key);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    String pickTitle(JsonNode title, JsonNode alts) {
+        // main title is always prefered
+        String en = title.path("en").asText(null);
+        if (en != null && !en.isBlank()) return en;
+
+        String ja = title.path("ja").asText(null);
+        if (ja != null && !ja.isBlank()) return ja;
+
+        // romanized japanese
+        String jaRo = title.path("ja-ro").asText(null);
+        if (jaRo != null && !jaRo.isBlank()) return jaRo;
+
+        // if no main title, use alt
+        if (alts.isArray()) {
+            for (JsonNode alt : alts) {
+                String v = alt.path("en").asText(null);
+                if (v != null && !v.isBlank()) return v;
+            }
+            for (JsonNode alt : alts) {
+                String v = alt.path("ja").asText(null);
+                if (v != null && !v.isBlank()) return v;
+            }
+            for (JsonNode alt : alts) {
+                for (var f : alt.properties()) {
+                    if (f.getValue().isTextual() && !f.getValue().asText().isBlank()) {
+                        return f.getValue().asText();
+                    }
+                }
+            }
+        }
+        // nothing
+        return null;
+    }
+
+    // every other name from the title map and altTitles, in order and without repeats
+    List<String> otherTitles(String picked, JsonNode title, JsonNode alts) {
+        Set<String> names = new LinkedHashSet<>();
+        addTexts(names, title);
+        if (alts.isArray()) {
+            for (JsonNode alt : alts) addTexts(names, alt);
+        }
+        names.remove(picked);
+        return List.copyOf(names);
+    }
+
+    private static void addTexts(Set<String> names, JsonNode node) {
+        for (var f : node.properties()) {
+            if (f.getValue().isTextual() && !f.getValue().asText().isBlank()) {
+                names.add(f.getValue().asText());
+            }
+        }
+    }
+
+    // status is null when mangadex sends one we don't know
+    public record MangaMetadata(MangaSearchResult manga, Manga.MangaStatus status) {}
+
+    // parser sits on the START_OBJECT of one manga in data[]
+    MangaMetadata readMangaMetadata(JsonParser p) throws IOException {
+        String id = "";
+        Manga.MangaStatus status = null;
+        JsonNode title = MissingNode.getInstance();
+        JsonNode alts = MissingNode.getInstance();
+        Integer year = null;
+        String coverFile = null;
+        boolean coverSeen = false;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "id" -> id = text(p, "null");
+                case "attributes" -> {
+                    if (value != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String attr = p.currentName();
+                        JsonToken attrValue = p.nextToken();
+                        switch (attr) {
+                            // only the small title maps are kept as trees, description etc. are skipped
+                            case "title" -> title = tree(p);
+                            case "altTitles" -> alts = tree(p);
+                            case "year" -> {
+                                if (attrValue != JsonToken.VALUE_NULL) {
+                                    year = attrValue.isScalarValue() ? p.getValueAsInt(0) : 0;
+                                    p.skipChildren();
+                                }
+                            }
+                            case "status" -> status = status(text(p, null));
+                            default -> p.skipChildren();
+                        }
+                    }
+                }
+                case "relationships" -> {
+                    if (value != JsonToken.START_ARRAY) {
+                        p.skipChildren();
+                        break;
+                    }
+                    JsonToken t;
+                    while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+                        if (t != JsonToken.START_OBJECT || coverSeen) {
+                            p.skipChildren();
+                            continue;
+                        }
+                        Relationship rel = readRelationship(p, "fileName");
+                        if ("cover_art".equals(rel.type())) {
+                            coverSeen = true;
+                            coverFile = rel.value();
+                        }
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        String coverUrl = (coverFile != null) ? COVER_BASE + id + "/" + coverFile : null;
+        String picked = pickTitle(title, alts);
+        return new MangaMetadata(new MangaSearchResult(id, picked, year, coverUrl, otherTitles(picked, title, alts)), status);
+    }
+
+    private static Manga.MangaStatus status(String value) {
+        if (value == null) return null;
+        return switch (value) {
+            case "ongoing" -> Manga.MangaStatus.ONGOING;
+            case "completed" -> Manga.MangaStatus.COMPLETED;
+            case "hiatus" -> Manga.MangaStatus.HIATUS;
+            case "cancelled" -> Manga.MangaStatus.CANCELLED;
+            default -> null;
+        };
+    }
+
+    // translates Json mess and turns it into obj with the specified fields,
+    // parser sits on the START_OBJECT of one chapter in data[]
+    ChapterResult toChapterResult(JsonParser p) throws IOException {
+        String chapterId = "";
+        String chapterStr = null;
+        String title = null;
+        String volume = null;
+        String readableAt = null;
+        String createdAt = null;
+        String groupName = null;
+        boolean groupSeen = false;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "id" -> chapterId = text(p, "null");
+                case "attributes" -> {
+                    if (value != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        break;
+                    }
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String attr = p.currentName();
+                        p.nextToken();
+                        switch (attr) {
+                            case "chapter" -> chapterStr = text(p, null);
+                            case "title" -> title = text(p, null);
+                            case "volume" -> volume = text(p, null);
+                            case "readableAt" -> readableAt = text(p, null);
+                            case "createdAt" -> createdAt = text(p, null);
+                            default -> p.skipChildren();
+                        }
+                    }
+                }
+                case "relationships" -> {
+                    if (value != JsonToken.START_ARRAY) {
+                        p.skipChildren();
+                        break;
+                    }
+                    JsonToken t;
+                    while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+                        if (t != JsonToken.START_OBJECT || groupSeen) {
+                            p.skipChildren();
+                            continue;
+                        }
+                        Relationship rel = readRelationship(p, "name");
+                        if ("scanlation_group".equals(rel.type())) {
+                            groupSeen = true;
+                            groupName = rel.value();
+                        }
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        // use readableAt if available else createdAt
+        if (readableAt == null || readableAt.isBlank()) {
+            readableAt = createdAt;
+        }
+        return new ChapterResult(chapterId, chapterStr, title, volume, readableAt, groupName);
+    }
+
+    private record Relationship(String type, String value) {}
+
+    // reads the type of a relationship and one non-null attribute from it
+    private Relationship readRelationship(JsonParser p, String attribute) throws IOException {
+        String type = "";
+        String value = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken token = p.nextToken();
+            if ("type".equals(field)) {
+                type = text(p, "");
+            } else if ("attributes".equals(field) && token == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String attr = p.currentName();
+                    p.nextToken();
+                    if (attribute.equals(attr)) {
+                        value = text(p, null);
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return new Relationship(type, value);
+    }
+
+    // positions the parser on the START_ARRAY of the root "data" field
+    private boolean moveToData(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) return false;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("data".equals(field) && value == JsonToken.START_ARRAY) return true;
+            p.skipChildren();
+        }
+        return false;
+    }
+
+    private static JsonNode tree(JsonParser p) throws IOException {
+        JsonNode node = p.readValueAsTree();
+        return node != null ? node : MissingNode.getInstance();
+    }
+
+    // same semantics as JsonNode.asText(default): null stays default, containers become ""
+    private static String text(JsonParser p, String nullValue) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL) return nullValue;
+        if (t.isScalarValue()) return p.getText();
+        p.skipChildren();
+        return "";
+    }
+}
@@ -0,0 +1,36 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// client side limit for calls to api.mangadex.org
+// permitsPerSecond: sustained rate, mangadex allows about 5 req/s per ip
+// burst: permits that may be saved up while idle
+// maxWait: how long a call may queue for a permit before it is shed with a 503
+@ConfigurationProperties("shiori.mangadex.rate-limit")
+public class MangaDexRateLimitProperties {
+
+    private double permitsPerSecond = 5;
+    private int burst = 5;
+    private Duration maxWait = Duration.ofSeconds(5);
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+    public void setPermitsPerSecond(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+    public int getBurst() {
+        return burst;
+    }
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+}
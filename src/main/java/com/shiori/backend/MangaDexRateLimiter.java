@@ -0,0 +1,169 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// token bucket in front of MangaDexClient
+// callers reserve the next free slot in arrival order and sleep until it, so the queue is fifo
+// and a caller whose slot is further out than maxWait is shed right away instead of piling up.
+// 429s and exhausted X-RateLimit headers pause the bucket and halve the rate, successful calls
+// creep it back up to the configured rate (aimd).
+@Component
+public class MangaDexRateLimiter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double maxRate;
+    private final double minRate;
+    private final int burst;
+    private final long maxWaitNanos;
+    private final LongSupplier clock;
+
+    // guarded by this
+    private double rate;
+    private double storedPermits;
+    private long nextFreeNanos;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter shed;
+    private final Counter throttled;
+
+    @Autowired
+    public MangaDexRateLimiter(MangaDexRateLimitProperties props, MeterRegistry registry) {
+        this(props, registry, System::nanoTime);
+    }
+
+    MangaDexRateLimiter(MangaDexRateLimitProperties props, MeterRegistry registry, LongSupplier clock) {
+        this.maxRate = props.getPermitsPerSecond();
+        this.minRate = maxRate / 8;
+        this.burst = props.getBurst();
+        this.maxWaitNanos = props.getMaxWait().toNanos();
+        this.clock = clock;
+        this.rate = maxRate;
+        this.storedPermits = burst;
+        this.nextFreeNanos = clock.getAsLong();
+
+        Gauge.builder("mangadex.ratelimit.queue", waiting, AtomicInteger::get)
+            .description("Calls waiting for a MangaDex rate limit permit")
+            .register(registry);
+        Gauge.builder("mangadex.ratelimit.rate", this, MangaDexRateLimiter::currentRate)
+            .description("Current permits per second after backoff")
+            .register(registry);
+        this.waitTimer = Timer.builder("mangadex.ratelimit.wait")
+            .description("Time spent waiting for a MangaDex rate limit permit")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+        this.shed = Counter.builder("mangadex.ratelimit.shed")
+            .description("Calls rejected because no permit was available within max-wait")
+            .register(registry);
+        this.throttled = Counter.builder("mangadex.ratelimit.throttled")
+            .description("429 responses received from MangaDex")
+            .register(registry);
+    }
+
+    // blocks until a permit is available or throws MangaDexThrottledException if that is beyond max-wait
+    public void acquire() throws InterruptedException {
+        long wait = reserve(clock.getAsLong());
+        if (wait < 0) {
+            shed.increment();
+            throw new MangaDexThrottledException("MangaDex rate limit reached, retry later",
+                Duration.ofNanos(-wait));
+        }
+        waitTimer.record(wait, TimeUnit.NANOSECONDS);
+        if (wait > 0) {
+            waiting.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+    }
+
+    // returns how long the caller must wait for its slot, or minus the wait when it exceeds max-wait
+    synchronized long reserve(long now) {
+        long interval = (long) (NANOS_PER_SECOND / rate);
+        if (now > nextFreeNanos) {
+            storedPermits = Math.min(burst, storedPermits + (double) (now - nextFreeNanos) / interval);
+            nextFreeNanos = now;
+        }
+        long wait = nextFreeNanos - now;
+        if (wait > maxWaitNanos) return -wait;
+        if (storedPermits >= 1) {
+            storedPermits -= 1;
+        } else {
+            nextFreeNanos += interval;
+        }
+        return wait;
+    }
+
+    // feed every upstream response back so the bucket follows what mangadex tells us
+    public void onResponse(int status, Map<String, Collection<String>> headers) {
+        long now = clock.getAsLong();
+        if (status == 429) {
+            throttled.increment();
+            Duration retryAfter = retryAfter(headers, Duration.ofSeconds(1));
+            synchronized (this) {
+                rate = Math.max(minRate, rate / 2);
+                pauseUntil(now + retryAfter.toNanos());
+            }
+            return;
+        }
+        String remaining = header(headers, "X-RateLimit-Remaining");
+        synchronized (this) {
+            if ("0".equals(remaining)) {
+                pauseUntil(now + retryAfter(headers, Duration.ofSeconds(1)).toNanos());
+            }
+            if (status < 500) {
+                rate = Math.min(maxRate, rate + maxRate / 50);
+            }
+        }
+    }
+
+    public synchronized double currentRate() {
+        return rate;
+    }
+
+    // how long MangaDex asked us to back off, Retry-After is seconds, X-RateLimit-Retry-After is epoch seconds
+    public Duration retryAfter(Map<String, Collection<String>> headers, Duration fallback) {
+        try {
+            String seconds = header(headers, "Retry-After");
+            if (seconds != null) return Duration.ofSeconds(Math.max(0, Long.parseLong(seconds.trim())));
+            String epoch = header(headers, "X-RateLimit-Retry-After");
+            if (epoch != null) {
+                long millis = Long.parseLong(epoch.trim()) * 1000 - System.currentTimeMillis();
+                return Duration.ofMillis(Math.max(0, millis));
+            }
+        } catch (NumberFormatException ignore) {
+            // http-date or garbage, use the fallback
+        }
+        return fallback;
+    }
+
+    private void pauseUntil(long nanos) {
+        storedPermits = 0;
+        if (nanos > nextFreeNanos) nextFreeNanos = nanos;
+    }
+
+    private static String header(Map<String, Collection<String>> headers, String name) {
+        if (headers == null) return null;
+        for (var entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                return entry.getValue().iterator().next();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,151 @@
+package com.shiori.backend;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import feign.FeignException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// circuit breaker and bulkhead per mangadex endpoint, plus the retry backoff
+// a slow or failing endpoint fills only its own bulkhead and trips only its own breaker,
+// the other endpoints and the rest of the app keep working
+@Component
+public class MangaDexResilience {
+
+    public record Guard(String name, CircuitBreaker breaker, Semaphore bulkhead, int capacity) {}
+
+    private final MangaDexResilienceProperties props;
+    private final MeterRegistry registry;
+    private final LongSupplier clock;
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MangaDexResilience(MangaDexResilienceProperties props, MeterRegistry registry) {
+        this(props, registry, System::nanoTime);
+    }
+
+    MangaDexResilience(MangaDexResilienceProperties props, MeterRegistry registry, LongSupplier clock) {
+        this.props = props;
+        this.registry = registry;
+        this.clock = clock;
+    }
+
+    // waits until a call may go upstream (the rate limiter), throws when it may not
+    @FunctionalInterface
+    public interface Admission {
+        void await() throws Exception;
+    }
+
+    // runs one upstream attempt under the endpoint's breaker and bulkhead. admission runs once the breaker
+    // let the call through and before it takes a bulkhead slot, so calls queued on the rate limiter
+    // don't hold slots and turn a throttled mangadex into "too many calls in flight"
+    public <T> T call(String endpoint, Admission admission, Callable<T> attempt) throws Exception {
+        Guard guard = guard(endpoint);
+        if (!guard.breaker().tryAcquire()) {
+            rejected(guard.name(), "breaker").increment();
+            throw new MangaDexUnavailableException("MangaDex " + guard.name() + " is failing, retry later",
+                Duration.ofNanos(guard.breaker().remainingOpenNanos()));
+        }
+        try {
+            admission.await();
+        } catch (Exception e) {
+            // shed by our own limiter, says nothing about mangadex health
+            guard.breaker().onIgnored();
+            throw e;
+        }
+        if (!guard.bulkhead().tryAcquire(props.getBulkheadWait().toNanos(), TimeUnit.NANOSECONDS)) {
+            guard.breaker().onIgnored();
+            rejected(guard.name(), "bulkhead").increment();
+            throw new MangaDexUnavailableException("Too many MangaDex " + guard.name() + " calls in flight, retry later",
+                props.getBulkheadWait());
+        }
+        try {
+            T result = attempt.call();
+            guard.breaker().onSuccess();
+            return result;
+        } catch (Exception e) {
+            if (isFailure(e)) {
+                guard.breaker().onFailure();
+            } else if (e instanceof MangaDexRetryLaterException) {
+                // shed by our own limiter or guards or a 429, says nothing about mangadex health
+                guard.breaker().onIgnored();
+            } else {
+                guard.breaker().onSuccess();
+            }
+            throw e;
+        } finally {
+            guard.bulkhead().release();
+        }
+    }
+
+    // mangadex is unreachable or broken, as opposed to answering with a client error or 429,
+    // or the call being turned away before it was made
+    public static boolean isFailure(Throwable e) {
+        if (e instanceof MangaDexRetryLaterException) return false;
+        if (e instanceof ResponseStatusException rse) return rse.getStatusCode().is5xxServerError();
+        return e instanceof IOException || e instanceof FeignException;
+    }
+
+    public boolean isRetryable(Throwable e) {
+        return isFailure(e);
+    }
+
+    public int maxAttempts() {
+        return props.getMaxAttempts();
+    }
+
+    // full jitter: uniform between 0 and base * 2^(attempt - 1), capped at maxBackoff
+    public Duration backoff(int attempt) {
+        long cap = Math.min(props.getMaxBackoff().toNanos(),
+            props.getBaseBackoff().toNanos() << Math.min(attempt - 1, 20));
+        return Duration.ofNanos(cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    public Map<String, Guard> guards() {
+        return Map.copyOf(guards);
+    }
+
+    // feed, feed-page and feed-delta share the feed pool, every other endpoint has its own
+    static String group(String endpoint) {
+        return endpoint.startsWith("feed") ? "feed" : endpoint;
+    }
+
+    private Guard guard(String endpoint) {
+        return guards.computeIfAbsent(group(endpoint), name -> {
+            int capacity = props.getBulkhead().getOrDefault(name, props.getDefaultBulkhead());
+            CircuitBreaker breaker = new CircuitBreaker(props.getFailureRate(), props.getWindow(), props.getMinimumCalls(),
+                props.getOpenFor().toNanos(), props.getHalfOpenCalls(), clock);
+            Guard guard = new Guard(name, breaker, new Semaphore(capacity, true), capacity);
+            Gauge.builder("mangadex.breaker.state", breaker, b -> b.state().ordinal())
+                .description("Circuit breaker state, 0 closed, 1 open, 2 half open")
+                .tag("endpoint", name)
+                .register(registry);
+            Gauge.builder("mangadex.bulkhead.available", guard.bulkhead(), Semaphore::availablePermits)
+                .description("Free concurrent call slots")
+                .tag("endpoint", name)
+                .register(registry);
+            return guard;
+        });
+    }
+
+    private Counter rejected(String endpoint, String reason) {
+        return Counter.builder("mangadex.resilience.rejected")
+            .description("MangaDex calls not attempted because the breaker was open or the bulkhead was full")
+            .tag("endpoint", endpoint)
+            .tag("reason", reason)
+            .register(registry);
+    }
+}
@@ -0,0 +1,110 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// failure handling for mangadex calls, one breaker and one bulkhead per endpoint (search, feed, aggregate, chapter)
+// breaker: opens when failureRate of the last window calls failed (after minimumCalls), rejects for openFor,
+//          then lets halfOpenCalls trial calls through to decide whether to close again
+// bulkhead: calls running at once per endpoint, a call that can't get a slot within bulkheadWait is rejected
+// retry: attempts per call for transport errors and 5xx, full jitter backoff between baseBackoff and maxBackoff
+// lastGood: how long the last successful answer is kept to serve (marked stale) when mangadex fails
+@ConfigurationProperties("shiori.mangadex.resilience")
+public class MangaDexResilienceProperties {
+
+    private double failureRate = 0.5;
+    private int window = 20;
+    private int minimumCalls = 10;
+    private Duration openFor = Duration.ofSeconds(30);
+    private int halfOpenCalls = 3;
+    private Map<String, Integer> bulkhead = new HashMap<>(Map.of("search", 8, "feed", 16, "aggregate", 8, "chapter", 8));
+    private int defaultBulkhead = 8;
+    private Duration bulkheadWait = Duration.ofSeconds(1);
+    private int maxAttempts = 3;
+    private Duration baseBackoff = Duration.ofMillis(200);
+    private Duration maxBackoff = Duration.ofSeconds(2);
+    private Duration lastGood = Duration.ofHours(24);
+    private long lastGoodEntries = 20_000;
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+    public int getWindow() {
+        return window;
+    }
+    public void setWindow(int window) {
+        this.window = window;
+    }
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+    public Duration getOpenFor() {
+        return openFor;
+    }
+    public void setOpenFor(Duration openFor) {
+        this.openFor = openFor;
+    }
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+    public Map<String, Integer> getBulkhead() {
+        return bulkhead;
+    }
+    public void setBulkhead(Map<String, Integer> bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+    public int getDefaultBulkhead() {
+        return defaultBulkhead;
+    }
+    public void setDefaultBulkhead(int defaultBulkhead) {
+        this.defaultBulkhead = defaultBulkhead;
+    }
+    public Duration getBulkheadWait() {
+        return bulkheadWait;
+    }
+    public void setBulkheadWait(Duration bulkheadWait) {
+        this.bulkheadWait = bulkheadWait;
+    }
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+    public Duration getBaseBackoff() {
+        return baseBackoff;
+    }
+    public void setBaseBackoff(Duration baseBackoff) {
+        this.baseBackoff = baseBackoff;
+    }
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+    public Duration getLastGood() {
+        return lastGood;
+    }
+    public void setLastGood(Duration lastGood) {
+        this.lastGood = lastGood;
+    }
+    public long getLastGoodEntries() {
+        return lastGoodEntries;
+    }
+    public void setLastGoodEntries(long lastGoodEntries) {
+        this.lastGoodEntries = lastGoodEntries;
+    }
+}
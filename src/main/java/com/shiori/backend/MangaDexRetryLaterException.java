@@ -0,0 +1,30 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+// a mangadex call we turned away or mangadex throttled, not a sign mangadex is broken. surfaces as 503 + Retry-After
+public abstract class MangaDexRetryLaterException extends ResponseStatusException {
+
+    private final Duration retryAfter;
+
+    protected MangaDexRetryLaterException(String reason, Duration retryAfter) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    // whole seconds, rounded up so a client never comes back early
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+        return headers;
+    }
+}
@@ -1,249 +1,627 @@
 package com.shiori.backend;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.shiori.backend.dto.ChapterResult;
 import com.shiori.backend.dto.MangaSearchResult;
 
+import feign.Response;
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
 @Service
 public class MangaDexService {
+    private static final Logger log = LoggerFactory.getLogger(MangaDexService.class);
     private final MangaDexClient client;
-    private final ObjectMapper mapper = new ObjectMapper();
-
-    private String pickTitle(JsonNode attributes) {
-        // main title is always prefered
-        JsonNode title = attributes.path("title");
-        String en = title.path("en").asText(null);
-        if (en != null && !en.isBlank()) return en;
-
-        String ja = title.path("ja").asText(null);
-        if (ja != null && !ja.isBlank()) return ja;
-
-        // romanized japanese
-        String jaRo = title.path("ja-ro").asText(null);
-        if (jaRo != null && !jaRo.isBlank()) return jaRo;
-
-        // if no main title, use alt
-        JsonNode alts = attributes.path("altTitles");
-        if (alts.isArray()) {
-            for (JsonNode alt : alts) {
-                String v = alt.path("en").asText(null);
-                if (v != null && !v.isBlank()) return v;
+    private final MangaDexParser parser = new MangaDexParser();
+    private final SingleFlight singleFlight;
+    private final MangaDexRateLimiter rateLimiter;
+    private final ChapterService chapterService;
+    private final TitleIndex titleIndex;
+    private final MangaDexDeltaProperties deltaProps;
+    private final MangaDexResilience resilience;
+    private final MeterRegistry registry;
+
+    // one observation (timer + span) per upstream exchange and per body parse, both tagged by endpoint.
+    // mangadex.client covers the whole exchange, mangadex.parse the part spent reading and parsing the
+    // streamed body, so time spent waiting on mangadex is roughly the difference
+    private final ObservationRegistry observations;
+    private final Map<String, DistributionSummary> payloads = new ConcurrentHashMap<>();
+    // fetches the next feed page while the caller works through the current one, keeps the trace context
+    private final ExecutorService prefetch = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+        ContextSnapshotFactory.builder().build()::captureAll);
+
+    // hot lookups are answered from memory, see MangaDexCacheProperties for freshness.
+    // misses load on the caches' executor, callers park on the future (see MangaDexCaches)
+    private final AsyncLoadingCache<SearchKey, List<MangaSearchResult>> searchCache;
+    private final AsyncLoadingCache<FeedKey, List<ChapterResult>> feedCache;
+    // every chapter of a manga in one language, from /aggregate
+    private final AsyncLoadingCache<LangKey, ChapterIndex> aggregateCache;
+    private final AsyncLoadingCache<LangKey, Optional<ChapterResult>> latestCache;
+
+    // high-water mark per (manga, lang): the latest chapter found and when mangadex was asked,
+    // later refreshes only ask for chapters updated since then instead of the whole /aggregate map
+    record Mark(ChapterResult latest, Instant checkedAt) {}
+    private final Cache<LangKey, Mark> marks;
+    private final Counter deltaRefreshes;
+    private final Counter fullRefreshes;
+
+    // last successful answer per search/feed/latest key, served marked stale when mangadex fails
+    private record Stamped(Object value, Instant fetchedAt) {}
+    private final Cache<Object, Stamped> lastGood;
+    private final Counter staleServed;
+
+    // a value and, only when it is a fallback because mangadex failed, when it was fetched.
+    // shared when the value is the object a cache here holds and hands out again, local answers are one-offs
+    public record Served<T>(T value, Instant staleSince, boolean shared) {
+        public Served(T value, Instant staleSince) {
+            this(value, staleSince, false);
+        }
+        public static <T> Served<T> fresh(T value) {
+            return new Served<>(value, null);
+        }
+        static <T> Served<T> fromCache(T value) {
+            return new Served<>(value, null, true);
+        }
+        public boolean stale() {
+            return staleSince != null;
+        }
+    }
+
+    // format mangadex accepts for *Since params, always utc
+    private static final DateTimeFormatter SINCE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    // mangadex caps ids[] and limit at 100
+    static final int MAX_IDS = 100;
+    // mangadex rejects offset + limit above this
+    static final int MAX_WINDOW = 10_000;
+    // chapters per page when walking a whole feed, the most mangadex returns at once
+    static final int FEED_PAGE = 500;
+    // without contentRating[] mangadex leaves pornographic titles out, a tracked one would look deleted
+    private static final List<String> ALL_RATINGS = List.of("safe", "suggestive", "erotica", "pornographic");
+    // the delta window starts a little before the last check, covers clock skew and in flight uploads
+    private static final Duration DELTA_OVERLAP = Duration.ofMinutes(1);
+
+    record SearchKey(String title, int limit) {}
+    record FeedKey(String mangaId, int limit, String lang) {}
+    record LangKey(String mangaId, String lang) {}
+    record ChapterKey(String mangaId, String chapter, String lang) {}
+    record FeedPageKey(String mangaId, String lang, String since, int offset, int limit) {}
+    record FeedWalkKey(String mangaId, List<String> langs, int offset, int limit) {}
+    record DeltaKey(String mangaId, String lang, String since) {}
+
+    @FunctionalInterface
+    interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
+
+    // a 429 from mangadex, the limiter is already paused so the call just queues again
+    private static final class TooManyRequests extends MangaDexThrottledException {
+        TooManyRequests(Duration retryAfter) {
+            super("MangaDex is rate limiting requests, retry later", retryAfter);
+        }
+    }
+
+    // one upstream call per (endpoint, params) at a time, concurrent callers share its parsed result
+    private <T> T fetch(String endpoint, Object params, Supplier<Response> call, BodyReader<T> reader) throws Exception {
+        return singleFlight.execute(endpoint, params, () -> read(endpoint, call, reader));
+    }
+
+    // retries 429s right away and transport errors / 5xx after a jittered backoff,
+    // every attempt goes through the endpoint's breaker, then the rate limiter, then the bulkhead
+    private <T> T read(String endpoint, Supplier<Response> call, BodyReader<T> reader) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return resilience.call(endpoint, rateLimiter::acquire, () -> readOnce(endpoint, call, reader));
+            } catch (TooManyRequests e) {
+                if (attempt >= resilience.maxAttempts()) throw e;
+            } catch (Exception e) {
+                if (attempt >= resilience.maxAttempts() || !resilience.isRetryable(e)) throw e;
+                Thread.sleep(resilience.backoff(attempt));
+            }
+        }
+    }
+
+    // runs one upstream call and hands the body stream to the reader, the response is always closed
+    private <T> T readOnce(String endpoint, Supplier<Response> call, BodyReader<T> reader) throws IOException {
+        // status is replaced once mangadex answers, "none" means the call never got a response
+        Observation exchange = Observation.createNotStarted("mangadex.client", observations)
+            .contextualName("mangadex " + endpoint)
+            .lowCardinalityKeyValue("endpoint", endpoint)
+            .lowCardinalityKeyValue("status", "none")
+            .start();
+        try (Observation.Scope scope = exchange.openScope()) {
+            return readResponse(endpoint, exchange, call, reader);
+        } catch (IOException | RuntimeException e) {
+            exchange.error(e);
+            throw e;
+        } finally {
+            exchange.stop();
+        }
+    }
+
+    private <T> T readResponse(String endpoint, Observation exchange, Supplier<Response> call, BodyReader<T> reader) throws IOException {
+        try (Response response = call.get()) {
+            rateLimiter.onResponse(response.status(), response.headers());
+            int status = response.status();
+            exchange.lowCardinalityKeyValue("status", Integer.toString(status));
+            if (status == 429) {
+                throw new TooManyRequests(rateLimiter.retryAfter(response.headers(), Duration.ofSeconds(1)));
             }
-            for (JsonNode alt : alts) {
-                String v = alt.path("ja").asText(null);
-                if (v != null && !v.isBlank()) return v;
+            if (status >= 500) {
+                throw new IOException("MangaDex responded with HTTP " + status);
             }
-            for (JsonNode alt : alts) {
-                for (var f : alt.properties()) {
-                    if (f.getValue().isTextual() && !f.getValue().asText().isBlank()) {
-                        return f.getValue().asText();
-                    }
-                }
+            if (status < 200 || status >= 300) {
+                // our request was wrong or names something mangadex doesn't have, retrying won't help
+                throw new ResponseStatusException(HttpStatusCode.valueOf(status), "MangaDex responded with HTTP " + status);
+            }
+            if (response.body() == null) {
+                return reader.read(InputStream.nullInputStream());
+            }
+            try (CountingInputStream body = new CountingInputStream(response.body().asInputStream())) {
+                T result = Observation.createNotStarted("mangadex.parse", observations)
+                    .contextualName("parse " + endpoint)
+                    .lowCardinalityKeyValue("endpoint", endpoint)
+                    .observeChecked(() -> reader.read(body));
+                payload(endpoint).record(body.count);
+                return result;
             }
-            
         }
-        // nothing
-        return null;
     }
 
-    // translates Json mess and turns it into obj with the specified fields
-    private ChapterResult toChapterResult(JsonNode chapter) {
-        String chapterId = chapter.path("id").asText();
-        JsonNode attribute = chapter.path("attributes");
-        String chapterStr = attribute.path("chapter").asText(null);
-        String title = attribute.path("title").asText(null);
-        String volume = attribute.path("volume").asText(null);
+    private DistributionSummary payload(String endpoint) {
+        return payloads.computeIfAbsent(endpoint, e -> DistributionSummary.builder("mangadex.payload")
+            .description("Size of MangaDex response bodies")
+            .baseUnit("bytes")
+            .tag("endpoint", e)
+            .register(registry));
+    }
+
+    // counts the body bytes as the parser pulls them, chunked responses have no Content-Length
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
 
-        String readableAt = attribute.path("readableAt").asText(null);
-        if (readableAt == null || readableAt.isBlank()) {
-            readableAt = attribute.path("createdAt").asText(null);
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
         }
 
-        String groupName = null;
-        for (JsonNode relationship : chapter.path("relationships")) {
-            if ("scanlation_group".equals(relationship.path("type").asText())) {
-                JsonNode gAttributes = relationship.path("attributes");
-                if (gAttributes.hasNonNull("name")) {
-                    groupName = gAttributes.get("name").asText();
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    // runs a cached lookup, falls back to the last good answer when mangadex is failing
+    @SuppressWarnings("unchecked")
+    private <T> Served<T> serve(Object key, Callable<Served<T>> lookup, String failure) {
+        try {
+            return lookup.call();
+        } catch (Exception e) {
+            Throwable cause = unwrap(e);
+            if (MangaDexResilience.isFailure(cause) || cause instanceof MangaDexRetryLaterException) {
+                Stamped last = lastGood.getIfPresent(key);
+                if (last != null) {
+                    staleServed.increment();
+                    return new Served<>((T) last.value(), last.fetchedAt(), true);
                 }
-                break;
             }
+            throw upstreamError(cause, failure);
+        }
+    }
+
+    // a failed load comes out as a CompletionException, serve and upstreamError unwrap it
+    private static <K, V> V get(AsyncLoadingCache<K, V> cache, K key) {
+        return cache.get(key).join();
+    }
+
+    private void remember(Object key, Object value) {
+        lastGood.put(key, new Stamped(value, Instant.now()));
+    }
+
+    // caffeine and single flight wrap what the loader threw
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
         }
-        return new ChapterResult(chapterId, chapterStr, title, volume, readableAt, groupName);
+        return e;
     }
 
-    public MangaDexService(MangaDexClient client) {
+    // client errors and 503s keep their status, an unreachable or broken mangadex is a 502
+    private static RuntimeException upstreamError(Throwable cause, String message) {
+        if (cause instanceof ResponseStatusException e) return e;
+        if (MangaDexResilience.isFailure(cause)) return new ResponseStatusException(HttpStatus.BAD_GATEWAY, message, cause);
+        return new RuntimeException(message, cause);
+    }
+
+    // the client is a proxy, the feign client (and its child context) or the jdk HttpClient is built on the first call
+    public MangaDexService(@Lazy MangaDexClient client, SingleFlight singleFlight, MangaDexRateLimiter rateLimiter,
+                           ChapterService chapterService, TitleIndex titleIndex, MangaDexCacheProperties cacheProps,
+                           MangaDexDeltaProperties deltaProps, MangaDexResilience resilience,
+                           MangaDexResilienceProperties resilienceProps, MeterRegistry registry,
+                           ObservationRegistry observations) {
         this.client = client;
+        this.singleFlight = singleFlight;
+        this.rateLimiter = rateLimiter;
+        this.chapterService = chapterService;
+        this.titleIndex = titleIndex;
+        this.deltaProps = deltaProps;
+        this.resilience = resilience;
+        this.registry = registry;
+        this.observations = observations;
+        this.searchCache = MangaDexCaches.build("mangadex.search", cacheProps.getSearch(),
+            (k, v) -> MangaDexCaches.weigh(k.title()) + MangaDexCaches.weighSearch(v), this::loadSearch, registry);
+        this.feedCache = MangaDexCaches.build("mangadex.feed", cacheProps.getFeed(),
+            (k, v) -> 64 + MangaDexCaches.weighChapters(v), this::loadFeed, registry);
+        this.aggregateCache = MangaDexCaches.build("mangadex.aggregate", cacheProps.getAggregate(),
+            (k, v) -> 64 + v.weight(), this::loadChapters, registry);
+        this.latestCache = MangaDexCaches.build("mangadex.latest", cacheProps.getLatest(),
+            (k, v) -> 64 + MangaDexCaches.weighChapter(v), this::loadLatest, registry);
+        this.marks = Caffeine.newBuilder()
+            .maximumSize(deltaProps.getMaxMarks())
+            .expireAfterWrite(deltaProps.getFullRefresh())
+            .build();
+        this.deltaRefreshes = refreshCounter("delta", registry);
+        this.fullRefreshes = refreshCounter("full", registry);
+        this.lastGood = Caffeine.newBuilder()
+            .maximumSize(resilienceProps.getLastGoodEntries())
+            .expireAfterWrite(resilienceProps.getLastGood())
+            .build();
+        this.staleServed = Counter.builder("mangadex.fallback.stale")
+            .description("Lookups answered with the last good result because MangaDex failed")
+            .register(registry);
+    }
+
+    private static Counter refreshCounter(String mode, MeterRegistry registry) {
+        return Counter.builder("mangadex.latest.refresh")
+            .description("Latest chapter lookups that went to mangadex, by delta from a high-water mark or full /aggregate")
+            .tag("mode", mode)
+            .register(registry);
     }
 
     // translates raw mangadex json into clean java object
     public List<MangaSearchResult> searchResults(String title, int limit) {
-        try {
-            String json = client.search(title, limit, "cover_art", "safe");
-            JsonNode root = mapper.readTree(json);
-            JsonNode data = root.path("data");
-            List<MangaSearchResult> output = new ArrayList<>();
-            if (data.isArray()) {
-                for (JsonNode item : data) {
-                    String id = item.path("id").asText();
-                    JsonNode attributes = item.path("attributes");
-                    String titlePicked = pickTitle(attributes);
-                    Integer year = attributes.hasNonNull("year") ? attributes.get("year").asInt() : null;
-
-
-                    String coverFile = null;
-                    for (JsonNode rel : item.path("relationships")) {
-                        if ("cover_art".equals(rel.path("type").asText())) {
-                            JsonNode coverAtt = rel.path("attributes");
-                            if (coverAtt.hasNonNull("fileName")) {
-                                coverFile = coverAtt.get("fileName").asText();
-                            }
-                            break;
-                        }
-                    }
+        return search(title, limit).value();
+    }
+
+    public Served<List<MangaSearchResult>> search(String title, int limit) {
+        SearchKey key = new SearchKey(title, limit);
+        return serve(key, () -> Served.fromCache(get(searchCache, key)), "Failed to parse");
+    }
 
-                    String coverUrl = (coverFile != null) ? "https://uploads.mangadex.org/covers/" + id + "/" + coverFile : null;
+    public List<ChapterResult> getFeed(String mangaId, int limit, String lang) {
+        return feed(mangaId, limit, lang).value();
+    }
 
-                    output.add(new MangaSearchResult(id, titlePicked, year, coverUrl));
-                }
+    public Served<List<ChapterResult>> feed(String mangaId, int limit, String lang) {
+        FeedKey key = new FeedKey(mangaId, limit, lang);
+        return serve(key, () -> {
+            // synced titles are answered from the chapter table
+            Optional<List<ChapterResult>> local = chapterService.localFeed(mangaId, limit, lang);
+            if (local.isPresent()) return Served.fresh(local.get());
+            return Served.fromCache(get(feedCache, key));
+        }, "Failed to parse feed");
+    }
+
+    public ChapterResult getLatestNumberedChapter(String mangaId, String lang) {
+        return latest(mangaId, lang).value();
+    }
+
+    // source tells synced titles answered from the chapter table apart from mangadex lookups,
+    // how a cache miss was resolved is on mangadex.latest.load
+    public Served<ChapterResult> latest(String mangaId, String lang) {
+        LangKey key = new LangKey(mangaId, lang);
+        Observation observation = Observation.createNotStarted("mangadex.latest", observations)
+            .lowCardinalityKeyValue("source", "mangadex");
+        return observation.observe(() -> serve(key, () -> {
+            Optional<ChapterResult> local = chapterService.localLatest(mangaId, lang);
+            if (local.isPresent()) {
+                observation.lowCardinalityKeyValue("source", "local");
+                return Served.fresh(local.get());
             }
-            return output;
+            return Served.fromCache(get(latestCache, key).orElse(null));
+        }, "Failed to fetch latest chapter"));
+    }
+
+    // up to MAX_IDS manga in one call, for the metadata refresh, never cached.
+    // ids mangadex doesn't know are left out of the answer
+    public List<MangaDexParser.MangaMetadata> metadata(List<String> ids) {
+        if (ids.size() > MAX_IDS) throw new IllegalArgumentException("At most " + MAX_IDS + " ids per call");
+        if (ids.isEmpty()) return List.of();
+        List<String> key = List.copyOf(ids);
+        try {
+            return fetch("manga", key, () -> client.byIds(key, key.size(), "cover_art", ALL_RATINGS),
+                parser::readMangaMetadata);
         } catch (Exception e) {
-            throw new RuntimeException("Failed to parse", e);
+            throw upstreamError(unwrap(e), "Failed to fetch manga");
         }
     }
 
-    public List<ChapterResult> getFeed(String mangaId, int limit, String lang) {
+    // every chapter of a title in any of langs, newest first, handed to the sink page by page.
+    // the next page is fetched while the sink works through the current one, so at most two pages
+    // are held however long the series is. never cached, a chapter uploaded during the walk shifts
+    // the pages and its neighbour shows up twice, those repeats are dropped against the previous page.
+    public void forEachChapter(String mangaId, List<String> langs, Consumer<ChapterResult> sink) {
+        forEachChapter(mangaId, langs, sink, () -> {});
+    }
+
+    // pageDone runs after the chapters of each page went to the sink, a streaming caller flushes there.
+    // stops after MAX_WINDOW chapters, mangadex serves no further offsets
+    public void forEachChapter(String mangaId, List<String> langs, Consumer<ChapterResult> sink, Runnable pageDone) {
+        List<String> languages = List.copyOf(new LinkedHashSet<>(langs));
+        if (languages.isEmpty()) throw new IllegalArgumentException("At least one language is required");
+        Set<String> previous = Set.of();
+        Future<List<ChapterResult>> next = prefetch.submit(() -> feedWalkPage(mangaId, languages, 0));
         try {
-            String json = client.feed(
-                mangaId,
-                lang,               // translatedLanguage[]
-                limit,      
-                "desc",             // order[readableAt]
-                "scanlation_group", // includes[]
-                "safe"              // contentRating[]
-            );
-
-            JsonNode root = mapper.readTree(json);
-            JsonNode data = root.path("data");
-            List<ChapterResult> output = new ArrayList<>();
-
-            if (data.isArray()) {
-                for (JsonNode ch : data) {
-                    String chapterId = ch.path("id").asText();
-                    JsonNode attribute = ch.path("attributes");
-                    String chapter = ch.path("chapter").isMissingNode() ? null : attribute.path("chapter").asText(null);
-                    String title = ch.path("title").isMissingNode() ? null : attribute.path("title").asText(null);
-                    String volume = ch.path("volume").isMissingNode() ? null : attribute.path("volume").asText(null);
-
-                    // use readableAt if available else createdAt
-                    String readableAt = attribute.path("readableAt").asText(null);
-                    if (readableAt == null || readableAt.isBlank()) {
-                        readableAt = attribute.path("createdAt").asText(null);
-                    }
+            for (int offset = 0; ; offset += FEED_PAGE) {
+                List<ChapterResult> page = await(next);
+                int following = offset + FEED_PAGE;
+                next = page.size() < FEED_PAGE || following + FEED_PAGE > MAX_WINDOW ? null
+                    : prefetch.submit(() -> feedWalkPage(mangaId, languages, following));
 
-                    // pulling scanlation if its available
-                    String groupName = null;
-                    for (JsonNode relationship : ch.path("relationships")) {
-                        if ("scanlation_group".equals(relationship.path("type").asText())) {
-                            JsonNode gAttributes = relationship.path("attributes");
-                            if (gAttributes.hasNonNull("name")) {
-                                groupName = gAttributes.get("name").asText();
-                            }
-                            break;
-                        }
+                Set<String> ids = new HashSet<>(page.size() * 2);
+                for (ChapterResult c : page) {
+                    if (ids.add(c.chapterId()) && !previous.contains(c.chapterId())) sink.accept(c);
+                }
+                pageDone.run();
+                if (next == null) {
+                    if (page.size() == FEED_PAGE) {
+                        log.warn("Feed walk of {} stopped at the {} chapter offset window, later chapters were left out",
+                            mangaId, MAX_WINDOW);
                     }
-                    output.add(new ChapterResult(chapterId, chapter, title, volume, readableAt, groupName));
+                    return;
                 }
+                previous = ids;
             }
-            return output;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse feed", e);
+        } finally {
+            // the sink gave up (client went away), the prefetched page isn't needed
+            if (next != null) next.cancel(true);
         }
     }
 
-    public ChapterResult getLatestNumberedChapter(String mangaId, String lang) {
+    private List<ChapterResult> feedWalkPage(String mangaId, List<String> langs, int offset) throws Exception {
+        FeedWalkKey key = new FeedWalkKey(mangaId, langs, offset, FEED_PAGE);
+        return fetch("feed-walk", key, () -> client.feedPage(
+            mangaId,
+            langs,
+            FEED_PAGE,
+            offset,
+            "desc",
+            "scanlation_group",
+            "safe"
+        ), parser::readChapters);
+    }
+
+    private static <T> T await(Future<T> page) {
         try {
-            // get manga volumes highest chapter
-            String aggJson = client.aggregate(mangaId, lang);
-            JsonNode aggRoot = mapper.readTree(aggJson);
-            JsonNode volumes = aggRoot.path("volumes");
-
-            String latestChapterString = null;
-            BigDecimal latestChapterNum = null;
-
-            var volumeIterator = volumes.properties().iterator();
-            while (volumeIterator.hasNext()) {
-                var volumeEntry = volumeIterator.next();
-                JsonNode chapters = volumeEntry.getValue().path("chapters");
-                for (var chEntry : chapters.properties()) {
-                    String key = chEntry.getKey();
-                    try {
-                        BigDecimal num = new BigDecimal(key);
-                        if (latestChapterNum == null || num.compareTo(latestChapterNum) > 0) {
-                            latestChapterNum = num;
-                            latestChapterString = key;
-                        }
-                    } catch (NumberFormatException ignore) {
-                        // no need to parse values like "Extra", "Special", etc..
-                    }
-                }
-            }
-            
-            // If a numeric chapter key is found, then fetch it
-            if (latestChapterString != null) {
-                String chapterJson = client.chapterByNumber(
-                    mangaId,
-                    latestChapterString,
-                    lang,
-                    "desc",
-                    1,
-                    "safe",
-                    "scanlation_group"
-                    );
-                    JsonNode chapterRoot = mapper.readTree(chapterJson);
-                    JsonNode data = chapterRoot.path("data");
-                    if (data.isArray() && data.size() > 0) {
-                        return toChapterResult(data.get(0));
-                    }
-            }
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a feed page", e);
+        } catch (ExecutionException e) {
+            throw upstreamError(unwrap(e), "Failed to parse feed");
+        }
+    }
 
-            // last resort, use newest first feed and pick a non-blank chapter
-            String feedJson = client.feed(
+    // one page of the feed oldest first, for the chapter sync, never cached
+    public List<ChapterResult> getFeedPage(String mangaId, String lang, String publishAtSince, int offset, int limit) {
+        try {
+            FeedPageKey key = new FeedPageKey(mangaId, lang, publishAtSince, offset, limit);
+            return fetch("feed-page", key, () -> client.feedSince(
                 mangaId,
                 lang,
-                50,
+                limit,
+                offset,
+                "asc",
+                publishAtSince,
+                0,
+                "scanlation_group",
+                "safe"
+            ), parser::readChapters);
+        } catch (Exception e) {
+            throw upstreamError(unwrap(e), "Failed to parse feed");
+        }
+    }
+
+    private List<MangaSearchResult> loadSearch(SearchKey key) throws Exception {
+        List<MangaSearchResult> results = fetch("search", key,
+            () -> client.search(key.title(), key.limit(), "cover_art", "safe"), parser::readSearchResults);
+        // remembered so the next search for the same title can be answered locally
+        for (MangaSearchResult r : results) {
+            titleIndex.offer(new TitleDocument(r.id(), null, r.title(), r.altTitles(), r.year(), r.coverUrl()));
+        }
+        remember(key, results);
+        return results;
+    }
+
+    private List<ChapterResult> loadFeed(FeedKey key) throws Exception {
+        List<ChapterResult> chapters = fetch("feed", key, () -> client.feed(
+            key.mangaId(),
+            key.lang(),         // translatedLanguage[]
+            key.limit(),
+            "desc",             // order[readableAt]
+            "scanlation_group", // includes[]
+            "safe"              // contentRating[]
+        ), parser::readChapters);
+        remember(key, chapters);
+        return chapters;
+    }
+
+    private ChapterIndex loadChapters(LangKey key) throws Exception {
+        return fetch("aggregate", key, () -> client.aggregate(key.mangaId(), key.lang()), parser::readChapterIndex);
+    }
+
+    // branch is the way the answer was found: delta, aggregate, feed (numbered chapter from the feed),
+    // feed-newest (unnumbered) or none, "failed" when the load threw
+    private Optional<ChapterResult> loadLatest(LangKey key) throws Exception {
+        Observation load = Observation.createNotStarted("mangadex.latest.load", observations)
+            .lowCardinalityKeyValue("branch", "failed");
+        return load.observeChecked(() -> loadLatest(key, load));
+    }
+
+    private Optional<ChapterResult> loadLatest(LangKey key, Observation load) throws Exception {
+        Instant startedAt = Instant.now();
+        Mark mark = deltaProps.isEnabled() ? marks.getIfPresent(key) : null;
+        if (mark != null) {
+            Optional<ChapterResult> delta = loadLatestDelta(key, mark, startedAt);
+            if (delta != null) {
+                deltaRefreshes.increment();
+                load.lowCardinalityKeyValue("branch", "delta");
+                remember(key, delta.orElse(null));
+                return delta;
+            }
+        }
+        Optional<ChapterResult> full = loadLatestFull(key, load);
+        fullRefreshes.increment();
+        if (deltaProps.isEnabled()) marks.put(key, new Mark(full.orElse(null), startedAt));
+        remember(key, full.orElse(null));
+        return full;
+    }
+
+    // asks for the few chapters updated since the mark, null when the result can't be trusted
+    // and the full lookup has to run
+    private Optional<ChapterResult> loadLatestDelta(LangKey key, Mark mark, Instant startedAt) throws Exception {
+        String since = SINCE.format(mark.checkedAt().minus(DELTA_OVERLAP).atOffset(ZoneOffset.UTC));
+        List<ChapterResult> changed;
+        try {
+            changed = fetch("feed-delta", new DeltaKey(key.mangaId(), key.lang(), since), () -> client.feedUpdatedSince(
+                key.mangaId(),
+                key.lang(),
+                deltaProps.getLimit(),
                 "desc",
+                since,
                 "scanlation_group",
                 "safe"
-                );
-                JsonNode feedRoot = mapper.readTree(feedJson);
-                JsonNode feedData = feedRoot.path("data");
-                if (feedData.isArray()) {
-                    for (JsonNode chapter : feedData) {
-                        String chapterString = chapter.path("attributes").path("chapter").asText(null);
-                        if (chapterString != null && !chapterString.isBlank()) {
-                            return toChapterResult(chapter);
-                        }
-                    }
+            ), parser::readChapters);
+        } catch (ResponseStatusException e) {
+            if (!e.getStatusCode().is4xxClientError() || e instanceof MangaDexRetryLaterException) throw e;
+            // mangadex refused the cursor, start over from /aggregate
+            marks.invalidate(key);
+            return null;
+        }
+        // a full page may not be everything that changed
+        if (changed.size() >= deltaProps.getLimit()) return null;
 
-                    // If theres no chapter number then just return newest item
-                    if (feedData.size() > 0) {
-                        return toChapterResult(feedData.get(0));
-                    }
-                }
+        ChapterResult best = mark.latest();
+        for (ChapterResult c : changed) {
+            // an edit to the current latest replaces it before anything is compared
+            if (best != null && c.chapterId().equals(best.chapterId())) best = c;
+        }
+        for (ChapterResult c : changed) {
+            if (isLater(c, best)) best = c;
+        }
+        marks.put(key, new Mark(best, startedAt));
+        return Optional.ofNullable(best);
+    }
 
-                // absolutely nothing is found
-                return null;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to fetch latest chapter", e);
+    // same preference as the full lookup: the higher chapter number, numbered before unnumbered,
+    // otherwise the later readableAt
+    static boolean isLater(ChapterResult c, ChapterResult best) {
+        if (best == null) return true;
+        long n = ChapterNumber.encode(c.chapter());
+        long b = ChapterNumber.encode(best.chapter());
+        boolean numbered = ChapterNumber.isNumber(n);
+        if (numbered != ChapterNumber.isNumber(b)) return numbered;
+        if (numbered && n != b) return n > b;
+        Instant ct = ChapterService.instant(c.readableAt());
+        Instant bt = ChapterService.instant(best.readableAt());
+        return ct != null && (bt == null || ct.isAfter(bt));
+    }
+
+    private Optional<ChapterResult> loadLatestFull(LangKey key, Observation load) throws Exception {
+        String mangaId = key.mangaId();
+        String lang = key.lang();
+
+        // get manga volumes highest chapter
+        String latestChapterString = get(aggregateCache, key).maxNumbered();
+
+        // If a numeric chapter key is found, then fetch it
+        if (latestChapterString != null) {
+            ChapterKey chapterKey = new ChapterKey(mangaId, latestChapterString, lang);
+            List<ChapterResult> data = fetch("chapter", chapterKey, () -> client.chapterByNumber(
+                mangaId,
+                latestChapterString,
+                lang,
+                "desc",
+                1,
+                "safe",
+                "scanlation_group"
+                ), parser::readChapters);
+            if (!data.isEmpty()) {
+                load.lowCardinalityKeyValue("branch", "aggregate");
+                return Optional.of(data.get(0));
+            }
+        }
+
+        // last resort, use newest first feed and pick a non-blank chapter
+        List<ChapterResult> feedData = get(feedCache, new FeedKey(mangaId, 50, lang));
+        for (ChapterResult chapter : feedData) {
+            String chapterString = chapter.chapter();
+            if (chapterString != null && !chapterString.isBlank()) {
+                load.lowCardinalityKeyValue("branch", "feed");
+                return Optional.of(chapter);
+            }
         }
-    }    
+
+        // If theres no chapter number then just return newest item
+        if (!feedData.isEmpty()) {
+            load.lowCardinalityKeyValue("branch", "feed-newest");
+            return Optional.of(feedData.get(0));
+        }
+
+        // absolutely nothing is found
+        load.lowCardinalityKeyValue("branch", "none");
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,11 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+// thrown when a mangadex call can't get a rate limit permit in time
+public class MangaDexThrottledException extends MangaDexRetryLaterException {
+
+    public MangaDexThrottledException(String reason, Duration retryAfter) {
+        super(reason, retryAfter);
+    }
+}
@@ -0,0 +1,11 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+// thrown when a mangadex call is not attempted, its breaker is open or its bulkhead is full
+public class MangaDexUnavailableException extends MangaDexRetryLaterException {
+
+    public MangaDexUnavailableException(String reason, Duration retryAfter) {
+        super(reason, retryAfter);
+    }
+}
@@ -0,0 +1,149 @@
+package com.shiori.backend;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shiori.backend.dto.MangaImportResponse;
+import com.shiori.backend.dto.MangaImportResult;
+import com.shiori.backend.dto.MangaImportResult.Outcome;
+
+// bulk upsert of manga keyed on mangadexId, bypasses hibernate so rows go out as jdbc batches
+@Service
+public class MangaImportService {
+    // rows per jdbc batch and per transaction
+    static final int CHUNK_SIZE = 1000;
+
+    // the where clause skips rows that would not change, those report an update count of 0
+    static final String UPSERT = """
+        insert into manga (title, mangadex_id, year, cover_image_url, status, created_at, updated_at)
+        values (?, ?, ?, ?, ?, now(), now())
+        on conflict (mangadex_id) do update set
+            title = excluded.title,
+            year = excluded.year,
+            cover_image_url = excluded.cover_image_url,
+            status = excluded.status,
+            updated_at = excluded.updated_at
+        where (manga.title, manga.year, manga.cover_image_url, manga.status)
+            is distinct from (excluded.title, excluded.year, excluded.cover_image_url, excluded.status)""";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final TitleSearchService titleSearch;
+
+    public MangaImportService(NamedParameterJdbcTemplate jdbc, TransactionTemplate tx, TitleSearchService titleSearch) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.titleSearch = titleSearch;
+    }
+
+    private record Row(int index, Manga manga) {}
+
+    public MangaImportResponse importAll(List<Manga> request) {
+        MangaImportResult[] results = new MangaImportResult[request.size()];
+
+        // last occurrence of a mangadexId wins, earlier ones are reported as duplicates
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (int i = 0; i < request.size(); i++) {
+            Manga manga = request.get(i);
+            String error = validate(manga);
+            if (error != null) {
+                results[i] = new MangaImportResult(i, manga != null ? manga.getMangadexId() : null, Outcome.INVALID, error);
+                continue;
+            }
+            Row previous = rows.remove(manga.getMangadexId());
+            if (previous != null) {
+                results[previous.index()] = new MangaImportResult(previous.index(), manga.getMangadexId(), Outcome.DUPLICATE, null);
+            }
+            rows.put(manga.getMangadexId(), new Row(i, manga));
+        }
+
+        List<Row> pending = new ArrayList<>(rows.values());
+        for (int from = 0; from < pending.size(); from += CHUNK_SIZE) {
+            List<Row> chunk = pending.subList(from, Math.min(from + CHUNK_SIZE, pending.size()));
+            try {
+                tx.executeWithoutResult(status -> upsertChunk(chunk, results));
+                titleSearch.reindex(chunk.stream().map(r -> r.manga().getMangadexId()).toList());
+            } catch (DataAccessException e) {
+                // the whole chunk rolled back, the other chunks still count
+                String message = e.getMostSpecificCause().getMessage();
+                for (Row row : chunk) {
+                    results[row.index()] = new MangaImportResult(row.index(), row.manga().getMangadexId(), Outcome.FAILED, message);
+                }
+            }
+        }
+
+        int created = 0, updated = 0, unchanged = 0, rejected = 0;
+        for (MangaImportResult r : results) {
+            switch (r.outcome()) {
+                case CREATED -> created++;
+                case UPDATED -> updated++;
+                case UNCHANGED -> unchanged++;
+                case DUPLICATE -> { }
+                case INVALID, FAILED -> rejected++;
+            }
+        }
+        return new MangaImportResponse(created, updated, unchanged, rejected, Arrays.asList(results));
+    }
+
+    private void upsertChunk(List<Row> chunk, MangaImportResult[] results) {
+        // rows already present decide between CREATED and UPDATED for a non zero update count
+        Set<String> existing = existingIds(chunk);
+
+        int[] counts = jdbc.getJdbcTemplate().batchUpdate(UPSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Manga m = chunk.get(i).manga();
+                ps.setString(1, m.getTitle());
+                ps.setString(2, m.getMangadexId());
+                ps.setObject(3, m.getYear(), Types.INTEGER);
+                ps.setString(4, m.getCoverImageUrl());
+                ps.setString(5, m.getStatus() != null ? m.getStatus().name() : null);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chunk.size();
+            }
+        });
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Row row = chunk.get(i);
+            String id = row.manga().getMangadexId();
+            Outcome outcome = counts[i] == 0 ? Outcome.UNCHANGED
+                : existing.contains(id) ? Outcome.UPDATED : Outcome.CREATED;
+            results[row.index()] = new MangaImportResult(row.index(), id, outcome, null);
+        }
+    }
+
+    private Set<String> existingIds(List<Row> chunk) {
+        List<String> ids = chunk.stream().map(r -> r.manga().getMangadexId()).toList();
+        if (ids.isEmpty()) return Collections.emptySet();
+        return new HashSet<>(jdbc.queryForList(
+            "select mangadex_id from manga where mangadex_id in (:ids)",
+            new MapSqlParameterSource("ids", ids), String.class));
+    }
+
+    private static String validate(Manga manga) {
+        if (manga == null) return "Row is empty";
+        if (manga.getTitle() == null || manga.getTitle().isBlank()) return "title is required";
+        if (manga.getMangadexId() == null || manga.getMangadexId().isBlank()) return "mangadexId is required for import";
+        if (manga.getMangadexId().length() > 36) return "mangadexId is longer than 36 characters";
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// bulk ingest of a mangadex manga dump into the library (POST /api/manga/ingest)
+// dir: dumps are only read from this directory, the request names a file inside it
+// batchSize: rows per jdbc batch and per transaction
+// workers: batches written at once
+// queue: parsed batches waiting for a worker, with batchSize this bounds what an ingest holds in memory
+// progressEvery: how often a running ingest logs its progress
+@ConfigurationProperties("shiori.ingest")
+public class MangaIngestProperties {
+
+    private String dir = "data/ingest";
+    private int batchSize = 1000;
+    private int workers = 4;
+    private int queue = 8;
+    private Duration progressEvery = Duration.ofSeconds(30);
+
+    public String getDir() {
+        return dir;
+    }
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+    public int getBatchSize() {
+        return batchSize;
+    }
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    public int getWorkers() {
+        return workers;
+    }
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+    public int getQueue() {
+        return queue;
+    }
+    public void setQueue(int queue) {
+        this.queue = queue;
+    }
+    public Duration getProgressEvery() {
+        return progressEvery;
+    }
+    public void setProgressEvery(Duration progressEvery) {
+        this.progressEvery = progressEvery;
+    }
+}
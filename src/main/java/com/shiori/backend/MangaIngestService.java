@@ -0,0 +1,333 @@
+package com.shiori.backend;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shiori.backend.MangaDexParser.MangaMetadata;
+import com.shiori.backend.dto.MangaIngestStatus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// loads a dump of mangadex manga objects (a json array or ndjson) into the library without calling mangadex.
+// one thread streams the file through the pull parser, with the same title and cover rules as search, and hands
+// batches to a bounded queue. writers take them from there, so a slow database holds the reader back and memory
+// stays flat whatever the size of the dump. each batch is one transaction of the bulk import upsert, then the
+// alt titles of changed rows are replaced and those rows are reindexed for title search
+@Service
+public class MangaIngestService {
+    private static final Logger log = LoggerFactory.getLogger(MangaIngestService.class);
+
+    private static final int READ_BUFFER = 1 << 20;
+    // longer values don't fit manga.title and manga_alt_title.title
+    private static final int MAX_TITLE = 255;
+
+    private static final String DELETE_ALT_TITLES = """
+        delete from manga_alt_title where manga_id = (select id from manga where mangadex_id = ?)""";
+    private static final String INSERT_ALT_TITLE = """
+        insert into manga_alt_title (manga_id, title) select id, ? from manga where mangadex_id = ?""";
+
+    // tells a writer the dump is done, batches are never empty
+    private static final List<MangaMetadata> END = List.of();
+
+    private final MangaDexParser parser = new MangaDexParser();
+    // writes one batch and returns how many rows changed, throws when none of them were stored
+    private final ToIntFunction<List<MangaMetadata>> store;
+    private final MangaIngestProperties props;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Progress progress;
+    private final Counter changedRecords;
+    private final Counter unchangedRecords;
+    private final Counter invalidRecords;
+    private final Counter failedRecords;
+
+    @Autowired
+    public MangaIngestService(JdbcTemplate jdbc, TransactionTemplate tx, TitleSearchService titleSearch,
+                              MangaIngestProperties props, MeterRegistry registry) {
+        this(batch -> {
+            List<String> changed = tx.execute(status -> upsert(jdbc, batch));
+            titleSearch.reindex(changed);
+            return changed.size();
+        }, props, registry);
+    }
+
+    MangaIngestService(ToIntFunction<List<MangaMetadata>> store, MangaIngestProperties props, MeterRegistry registry) {
+        this.store = store;
+        this.props = props;
+        this.changedRecords = records("changed", registry);
+        this.unchangedRecords = records("unchanged", registry);
+        this.invalidRecords = records("invalid", registry);
+        this.failedRecords = records("failed", registry);
+    }
+
+    private static Counter records(String outcome, MeterRegistry registry) {
+        return Counter.builder("shiori.ingest.records")
+            .description("Manga records read from ingested dumps")
+            .tag("outcome", outcome)
+            .register(registry);
+    }
+
+    // the dump named by a request, null when the name points outside the ingest directory
+    public Path resolve(String name) {
+        Path dir = Path.of(props.getDir()).toAbsolutePath().normalize();
+        Path file = dir.resolve(name).normalize();
+        return file.startsWith(dir) && !file.equals(dir) ? file : null;
+    }
+
+    // ingests the dump in the background, false when an ingest is already running
+    public boolean start(Path file) {
+        if (!running.compareAndSet(false, true)) return false;
+        progress = new Progress(file.getFileName().toString());
+        Thread.ofVirtual().name("manga-ingest").start(() -> runAndRelease(file));
+        return true;
+    }
+
+    // ingests the dump on the calling thread, false when an ingest is already running
+    public boolean ingest(Path file) {
+        if (!running.compareAndSet(false, true)) return false;
+        progress = new Progress(file.getFileName().toString());
+        runAndRelease(file);
+        return true;
+    }
+
+    public MangaIngestStatus status() {
+        Progress p = progress;
+        if (p == null) return new MangaIngestStatus(false, null, null, null, 0, 0, 0, 0, 0, 0, 0, 0, null);
+        return p.snapshot();
+    }
+
+    private void runAndRelease(Path file) {
+        try {
+            run(file);
+        } catch (IOException | RuntimeException e) {
+            // rows written before the failure stay, ingesting the same dump again only rewrites what differs
+            log.warn("Ingest of {} failed after {} records", file, progress.read, e);
+            progress.error = e.getMessage();
+        } finally {
+            progress.finish();
+            running.set(false);
+        }
+    }
+
+    private void run(Path file) throws IOException {
+        Progress p = progress;
+        p.totalBytes = Files.size(file);
+        int workers = Math.max(1, props.getWorkers());
+        BlockingQueue<List<MangaMetadata>> queue = new ArrayBlockingQueue<>(Math.max(1, props.getQueue()));
+
+        // closing the executor waits until the writers took everything off the queue
+        try (ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < workers; i++) writers.submit(() -> work(queue));
+            try (InputStream in = new Counting(new BufferedInputStream(Files.newInputStream(file), READ_BUFFER), p)) {
+                read(in, queue);
+            } finally {
+                for (int i = 0; i < workers; i++) put(queue, END);
+            }
+        }
+
+        p.finish();
+        MangaIngestStatus done = p.snapshot();
+        log.info("Ingest of {} done: {} records, {} changed, {} unchanged, {} invalid, {} failed, {} records/s",
+            file, done.read(), done.changed(), done.unchanged(), done.invalid(), done.failed(),
+            Math.round(done.recordsPerSecond()));
+    }
+
+    private void read(InputStream in, BlockingQueue<List<MangaMetadata>> queue) throws IOException {
+        Progress p = progress;
+        int batchSize = Math.max(1, props.getBatchSize());
+        long everyNanos = props.getProgressEvery().toNanos();
+        // keyed and sorted on the mangadex id: a repeat within a batch replaces the earlier record,
+        // and writers take row locks in the same order. repeats in different batches may land in either order
+        TreeMap<String, MangaMetadata> batch = new TreeMap<>();
+        parser.readMangaDump(in, m -> {
+            p.read++;
+            if (!valid(m)) {
+                p.invalid++;
+                invalidRecords.increment();
+                return;
+            }
+            batch.put(m.manga().id(), m);
+            if (batch.size() < batchSize) return;
+            put(queue, new ArrayList<>(batch.values()));
+            batch.clear();
+            p.report(everyNanos);
+        });
+        if (!batch.isEmpty()) put(queue, new ArrayList<>(batch.values()));
+    }
+
+    static boolean valid(MangaMetadata m) {
+        String id = m.manga().id();
+        String title = m.manga().title();
+        return id != null && !id.isBlank() && !id.equals("null") && id.length() <= 36
+            && title != null && !title.isBlank() && title.length() <= MAX_TITLE;
+    }
+
+    private void work(BlockingQueue<List<MangaMetadata>> queue) {
+        try {
+            List<MangaMetadata> batch;
+            while ((batch = queue.take()) != END) write(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<MangaMetadata> batch) {
+        Progress p = progress;
+        try {
+            int changed = store.applyAsInt(batch);
+            p.changed.addAndGet(changed);
+            p.unchanged.addAndGet(batch.size() - changed);
+            changedRecords.increment(changed);
+            unchangedRecords.increment(batch.size() - changed);
+        } catch (RuntimeException e) {
+            // the batch rolled back, the rest of the dump still goes in. anything else getting out
+            // would end this writer, and with all of them gone the reader blocks on the full queue for good
+            log.warn("Storing {} ingested records failed", batch.size(), e);
+            p.failed.addAndGet(batch.size());
+            failedRecords.increment(batch.size());
+        }
+    }
+
+    private static void put(BlockingQueue<List<MangaMetadata>> queue, List<MangaMetadata> batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Ingest interrupted");
+        }
+    }
+
+    // mangadex ids of the rows that changed. alt titles are only rewritten for those, a title whose
+    // alt titles alone changed on mangadex keeps the stored ones
+    private static List<String> upsert(JdbcTemplate jdbc, List<MangaMetadata> batch) {
+        int[] counts = jdbc.batchUpdate(MangaImportService.UPSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                MangaMetadata m = batch.get(i);
+                ps.setString(1, m.manga().title());
+                ps.setString(2, m.manga().id());
+                ps.setObject(3, m.manga().year(), Types.INTEGER);
+                ps.setString(4, m.manga().coverUrl());
+                ps.setString(5, m.status() != null ? m.status().name() : null);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+
+        List<String> changed = new ArrayList<>();
+        List<Object[]> altTitles = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (counts[i] == 0) continue;
+            MangaMetadata m = batch.get(i);
+            changed.add(m.manga().id());
+            for (String alt : m.manga().altTitles()) {
+                if (alt.length() <= MAX_TITLE) altTitles.add(new Object[] { alt, m.manga().id() });
+            }
+        }
+        if (changed.isEmpty()) return changed;
+        jdbc.batchUpdate(DELETE_ALT_TITLES, changed, changed.size(), (ps, id) -> ps.setString(1, id));
+        if (!altTitles.isEmpty()) jdbc.batchUpdate(INSERT_ALT_TITLE, altTitles);
+        return changed;
+    }
+
+    // bytes the parser took so far, for the progress of a run
+    private static final class Counting extends FilterInputStream {
+        private final Progress progress;
+
+        Counting(InputStream in, Progress progress) {
+            super(in);
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) progress.bytesRead++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) progress.bytesRead += n;
+            return n;
+        }
+    }
+
+    // counters of one run. read, invalid and bytes are written by the reading thread, the rest by the writers
+    private static final class Progress {
+        final String file;
+        final Instant startedAt = Instant.now();
+        final long startedNanos = System.nanoTime();
+        volatile long totalBytes;
+        volatile long bytesRead;
+        volatile long read;
+        volatile long invalid;
+        final AtomicLong changed = new AtomicLong();
+        final AtomicLong unchanged = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        volatile String error;
+        volatile Instant finishedAt;
+        volatile long elapsedNanos;
+        long lastReport = startedNanos;
+
+        Progress(String file) {
+            this.file = file;
+        }
+
+        void finish() {
+            if (finishedAt != null) return;
+            elapsedNanos = System.nanoTime() - startedNanos;
+            finishedAt = Instant.now();
+        }
+
+        void report(long everyNanos) {
+            long now = System.nanoTime();
+            if (now - lastReport < everyNanos) return;
+            lastReport = now;
+            MangaIngestStatus s = snapshot();
+            log.info("Ingest of {} at {}/{} MB, {} records, {} changed, {} records/s",
+                s.file(), s.bytesRead() >> 20, s.totalBytes() >> 20, s.read(), s.changed(),
+                Math.round(s.recordsPerSecond()));
+        }
+
+        MangaIngestStatus snapshot() {
+            boolean done = finishedAt != null;
+            long elapsed = done ? elapsedNanos : System.nanoTime() - startedNanos;
+            double rate = elapsed > 0 ? read * 1e9 / elapsed : 0;
+            return new MangaIngestStatus(!done, file, startedAt, finishedAt, bytesRead, totalBytes, read,
+                changed.get(), unchanged.get(), invalid, failed.get(), rate, error);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.shiori.backend;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// metadata refresh of tracked manga (title, year, cover, status) from mangadex
+// enabled/interval: run on a schedule, the first run one interval after startup. POST /api/manga/refresh runs it any time
+// chunkSize: tracked titles read per query and looked up per mangadex call, at most 100
+// concurrency: chunks looked up at once, the rate limiter still paces the calls
+// batchSize: changed rows written per jdbc batch
+// progressEvery: how often a running refresh logs its progress
+@ConfigurationProperties("shiori.refresh")
+public class MangaRefreshProperties {
+
+    private boolean enabled = false;
+    private Duration interval = Duration.ofHours(24);
+    private int chunkSize = 100;
+    private int concurrency = 4;
+    private int batchSize = 500;
+    private Duration progressEvery = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    public Duration getInterval() {
+        return interval;
+    }
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+    public int getConcurrency() {
+        return concurrency;
+    }
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+    public int getBatchSize() {
+        return batchSize;
+    }
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    public Duration getProgressEvery() {
+        return progressEvery;
+    }
+    public void setProgressEvery(Duration progressEvery) {
+        this.progressEvery = progressEvery;
+    }
+}
@@ -0,0 +1,311 @@
+package com.shiori.backend;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.FixedDelayTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shiori.backend.MangaDexParser.MangaMetadata;
+import com.shiori.backend.MangaRepository.RefreshTarget;
+import com.shiori.backend.dto.MangaRefreshStatus;
+import com.shiori.backend.dto.MangaSearchResult;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// keeps title, year, cover and status of tracked manga in line with mangadex.
+// tracked ids are read in keyset chunks and each chunk is one /manga?ids[]= call, so a 20k title library
+// costs about 200 upstream calls. rows are diffed in memory and only changed ones are written, as jdbc batches
+@Service
+public class MangaRefreshService implements SchedulingConfigurer {
+    private static final Logger log = LoggerFactory.getLogger(MangaRefreshService.class);
+
+    private static final String UPDATE = """
+        update manga set title = ?, year = ?, cover_image_url = ?, status = ?, updated_at = now()
+        where id = ?""";
+
+    // a stored row with the values it should have now
+    record Change(long id, String mangadexId, String title, Integer year, String coverImageUrl, Manga.MangaStatus status) {}
+
+    private record Chunk(int size, List<Change> changes, int missing) {}
+
+    private record Pending(int size, Future<Chunk> chunk) {}
+
+    private final MangaRepository mangaRepo;
+    private final Function<List<String>, List<MangaMetadata>> lookup;
+    // writes one batch of changes, throws when none of them were stored
+    private final Consumer<List<Change>> store;
+    private final MangaRefreshProperties props;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Progress progress;
+    private final Counter changedTitles;
+    private final Counter unchangedTitles;
+    private final Counter missingTitles;
+    private final Counter failedTitles;
+
+    @Autowired
+    public MangaRefreshService(MangaRepository mangaRepo, MangaDexService mdService, JdbcTemplate jdbc,
+                               TransactionTemplate tx, TitleSearchService titleSearch, MangaRefreshProperties props,
+                               MeterRegistry registry) {
+        this(mangaRepo, mdService::metadata, changes -> {
+            tx.executeWithoutResult(status -> update(jdbc, changes));
+            titleSearch.reindex(changes.stream().map(Change::mangadexId).toList());
+        }, props, registry);
+    }
+
+    MangaRefreshService(MangaRepository mangaRepo, Function<List<String>, List<MangaMetadata>> lookup,
+                        Consumer<List<Change>> store, MangaRefreshProperties props, MeterRegistry registry) {
+        this.mangaRepo = mangaRepo;
+        this.lookup = lookup;
+        this.store = store;
+        this.props = props;
+        this.changedTitles = titles("changed", registry);
+        this.unchangedTitles = titles("unchanged", registry);
+        this.missingTitles = titles("missing", registry);
+        this.failedTitles = titles("failed", registry);
+    }
+
+    private static Counter titles(String outcome, MeterRegistry registry) {
+        return Counter.builder("shiori.refresh.titles")
+            .description("Tracked titles looked at by the metadata refresh")
+            .tag("outcome", outcome)
+            .register(registry);
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        if (!props.isEnabled()) return;
+        // on its own thread, a whole run would hold the scheduler thread every other task waits for
+        registrar.addFixedDelayTask(new FixedDelayTask(() -> {
+            if (!start()) log.info("Scheduled metadata refresh skipped, one is already running");
+        }, props.getInterval(), props.getInterval()));
+    }
+
+    // runs a refresh in the background, false when one is already running
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) return false;
+        progress = new Progress();
+        Thread.ofVirtual().name("manga-refresh").start(this::runAndRelease);
+        return true;
+    }
+
+    // runs a refresh on the calling thread, false when one is already running
+    public boolean refresh() {
+        if (!running.compareAndSet(false, true)) return false;
+        progress = new Progress();
+        runAndRelease();
+        return true;
+    }
+
+    public MangaRefreshStatus status() {
+        Progress p = progress;
+        if (p == null) return new MangaRefreshStatus(false, null, null, 0, 0, 0, 0, 0, 0, 0, 0);
+        return p.snapshot();
+    }
+
+    private void runAndRelease() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            log.warn("Metadata refresh failed", e);
+        } finally {
+            progress.finish();
+            running.set(false);
+        }
+    }
+
+    private void run() {
+        Progress p = progress;
+        p.total = mangaRepo.countByMangadexIdNotNull();
+        int chunkSize = Math.max(1, Math.min(props.getChunkSize(), MangaDexService.MAX_IDS));
+        Deque<Pending> inFlight = new ArrayDeque<>();
+        List<Change> changes = new ArrayList<>();
+        long after = 0;
+
+        // the next chunks are read and looked up while earlier ones are diffed and written
+        try (ExecutorService lookups = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<RefreshTarget> rows = mangaRepo.findRefreshTargets(after, Limit.of(chunkSize));
+                if (rows.isEmpty()) break;
+                after = rows.getLast().getId();
+                inFlight.add(new Pending(rows.size(), lookups.submit(() -> diff(rows))));
+                if (inFlight.size() >= props.getConcurrency()) collect(inFlight.poll(), changes);
+            }
+            while (!inFlight.isEmpty()) collect(inFlight.poll(), changes);
+        }
+        write(changes);
+
+        p.finish();
+        MangaRefreshStatus done = p.snapshot();
+        log.info("Metadata refresh done: {} titles in {} calls, {} changed, {} missing on MangaDex, {} failed, {} titles/s",
+            done.scanned(), done.calls(), done.changed(), done.missing(), done.failed(), Math.round(done.titlesPerSecond()));
+    }
+
+    // one upstream call for the whole chunk, then an in memory diff against the stored rows
+    private Chunk diff(List<RefreshTarget> rows) {
+        List<String> ids = rows.stream().map(RefreshTarget::getMangadexId).toList();
+        progress.calls.incrementAndGet();
+        Map<String, MangaMetadata> found = new HashMap<>();
+        for (MangaMetadata m : lookup.apply(ids)) found.put(m.manga().id(), m);
+
+        List<Change> changes = new ArrayList<>();
+        int missing = 0;
+        for (RefreshTarget row : rows) {
+            MangaMetadata fresh = found.get(row.getMangadexId());
+            if (fresh == null) {
+                // deleted or merged on mangadex, the row is left as it is
+                missing++;
+                continue;
+            }
+            Change change = diff(row, fresh);
+            if (change != null) changes.add(change);
+        }
+        return new Chunk(rows.size(), changes, missing);
+    }
+
+    // null when nothing changed. a field mangadex has no value for keeps the stored one
+    static Change diff(RefreshTarget stored, MangaMetadata fresh) {
+        MangaSearchResult m = fresh.manga();
+        String title = m.title() != null ? m.title() : stored.getTitle();
+        Integer year = m.year() != null ? m.year() : stored.getYear();
+        // a row holding the /api/covers form of the same cover is up to date
+        String cover = m.coverUrl() == null || Objects.equals(CoverCache.localUrl(m.coverUrl()), stored.getCoverImageUrl())
+            ? stored.getCoverImageUrl() : m.coverUrl();
+        Manga.MangaStatus status = fresh.status() != null ? fresh.status() : stored.getStatus();
+        if (Objects.equals(title, stored.getTitle()) && Objects.equals(year, stored.getYear())
+            && Objects.equals(cover, stored.getCoverImageUrl()) && status == stored.getStatus()) {
+            return null;
+        }
+        return new Change(stored.getId(), stored.getMangadexId(), title, year, cover, status);
+    }
+
+    private void collect(Pending pending, List<Change> changes) {
+        Progress p = progress;
+        try {
+            Chunk chunk = pending.chunk().get();
+            changes.addAll(chunk.changes());
+            int unchanged = chunk.size() - chunk.changes().size() - chunk.missing();
+            p.unchanged += unchanged;
+            p.missing += chunk.missing();
+            unchangedTitles.increment(unchanged);
+            missingTitles.increment(chunk.missing());
+        } catch (ExecutionException e) {
+            log.warn("Metadata refresh of {} titles failed", pending.size(), e.getCause());
+            failed(pending.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.chunk().cancel(true);
+            failed(pending.size());
+        }
+        p.scanned += pending.size();
+        if (changes.size() >= props.getBatchSize()) write(changes);
+        p.report(props.getProgressEvery().toNanos());
+    }
+
+    private void write(List<Change> changes) {
+        if (changes.isEmpty()) return;
+        try {
+            store.accept(List.copyOf(changes));
+            progress.changed += changes.size();
+            changedTitles.increment(changes.size());
+        } catch (DataAccessException e) {
+            // the batch rolled back, the next run finds the same differences again
+            log.warn("Storing {} refreshed titles failed", changes.size(), e);
+            failed(changes.size());
+        }
+        changes.clear();
+    }
+
+    private void failed(int titles) {
+        progress.failed += titles;
+        failedTitles.increment(titles);
+    }
+
+    private static void update(JdbcTemplate jdbc, List<Change> changes) {
+        jdbc.batchUpdate(UPDATE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Change c = changes.get(i);
+                ps.setString(1, c.title());
+                ps.setObject(2, c.year(), Types.INTEGER);
+                ps.setString(3, c.coverImageUrl());
+                ps.setString(4, c.status() != null ? c.status().name() : null);
+                ps.setLong(5, c.id());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return changes.size();
+            }
+        });
+    }
+
+    // counters of one run, written by the thread running it and read by status()
+    private static final class Progress {
+        final Instant startedAt = Instant.now();
+        final long startedNanos = System.nanoTime();
+        volatile long total;
+        volatile long scanned;
+        volatile long changed;
+        volatile long unchanged;
+        volatile long missing;
+        volatile long failed;
+        // lookups run on several threads
+        final AtomicLong calls = new AtomicLong();
+        volatile Instant finishedAt;
+        volatile long elapsedNanos;
+        long lastReport = startedNanos;
+
+        void finish() {
+            if (finishedAt != null) return;
+            elapsedNanos = System.nanoTime() - startedNanos;
+            finishedAt = Instant.now();
+        }
+
+        void report(long everyNanos) {
+            long now = System.nanoTime();
+            if (now - lastReport < everyNanos) return;
+            lastReport = now;
+            MangaRefreshStatus s = snapshot();
+            log.info("Metadata refresh {}/{} titles, {} changed, {} titles/s",
+                s.scanned(), s.total(), s.changed(), Math.round(s.titlesPerSecond()));
+        }
+
+        MangaRefreshStatus snapshot() {
+            boolean done = finishedAt != null;
+            long elapsed = done ? elapsedNanos : System.nanoTime() - startedNanos;
+            double rate = elapsed > 0 ? scanned * 1e9 / elapsed : 0;
+            return new MangaRefreshStatus(!done, startedAt, finishedAt, total, scanned, changed, unchanged, missing,
+                failed, calls.get(), rate);
+        }
+    }
+}
@@ -1,9 +1,54 @@
 package com.shiori.backend;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
-public interface MangaRepository extends JpaRepository<Manga, Long>{
+public interface MangaRepository extends JpaRepository<Manga, Long>, MangaRepositoryCustom {
     Optional<Manga> findByMangadexId(String mangadexId);
+
+    // what a conditional GET needs to know, read without loading the entity
+    interface Stamp {
+        Long getId();
+        Instant getUpdatedAt();
+    }
+
+    @Query("select m.id as id, m.updatedAt as updatedAt from Manga m where m.id = :id")
+    Optional<Stamp> findStampById(Long id);
+
+    @Query("select m.id as id, m.updatedAt as updatedAt from Manga m where m.mangadexId = :mangadexId")
+    Optional<Stamp> findStampByMangadexId(String mangadexId);
+
+    @Query("select m.mangadexId from Manga m where m.mangadexId is not null")
+    List<String> findAllMangadexIds();
+
+    interface SyncTarget {
+        Long getId();
+        String getMangadexId();
+    }
+
+    // tracked manga whose id falls into one slice of the id space
+    @Query("select m.id as id, m.mangadexId as mangadexId from Manga m where m.mangadexId is not null and mod(m.id, :slots) = :slot")
+    List<SyncTarget> findSyncTargets(int slots, int slot);
+
+    interface RefreshTarget {
+        Long getId();
+        String getMangadexId();
+        String getTitle();
+        Integer getYear();
+        String getCoverImageUrl();
+        Manga.MangaStatus getStatus();
+    }
+
+    // the next tracked manga after an id, in id order, one chunk of the metadata refresh
+    @Query("select m.id as id, m.mangadexId as mangadexId, m.title as title, m.year as year, "
+        + "m.coverImageUrl as coverImageUrl, m.status as status "
+        + "from Manga m where m.mangadexId is not null and m.id > :after order by m.id")
+    List<RefreshTarget> findRefreshTargets(long after, Limit limit);
+
+    long countByMangadexIdNotNull();
 }
@@ -0,0 +1,16 @@
+package com.shiori.backend;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.shiori.backend.dto.MangaSummary;
+
+// listing queries with optional filters, built with criteria so unused filters drop out of the sql
+public interface MangaRepositoryCustom {
+
+    // one page ordered by updatedAt desc, id desc, strictly after the cursor when given
+    List<MangaSummary> findSummaries(Manga.MangaStatus status, Integer year, MangaCursor after, int limit);
+
+    // every matching row in the same order, read through a jdbc cursor, must run inside a transaction
+    Stream<MangaSummary> streamSummaries(Manga.MangaStatus status, Integer year);
+}
@@ -0,0 +1,63 @@
+package com.shiori.backend;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+
+import com.shiori.backend.dto.MangaSummary;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+class MangaRepositoryCustomImpl implements MangaRepositoryCustom {
+    // rows pulled per round trip while streaming
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<MangaSummary> findSummaries(Manga.MangaStatus status, Integer year, MangaCursor after, int limit) {
+        return em.createQuery(summaries(status, year, after))
+            .setMaxResults(limit)
+            .getResultList();
+    }
+
+    @Override
+    public Stream<MangaSummary> streamSummaries(Manga.MangaStatus status, Integer year) {
+        return em.createQuery(summaries(status, year, null))
+            .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+            .setHint(HibernateHints.HINT_READ_ONLY, true)
+            .getResultStream();
+    }
+
+    private CriteriaQuery<MangaSummary> summaries(Manga.MangaStatus status, Integer year, MangaCursor after) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<MangaSummary> q = cb.createQuery(MangaSummary.class);
+        Root<Manga> m = q.from(Manga.class);
+
+        q.select(cb.construct(MangaSummary.class,
+            m.get("id"), m.get("title"), m.get("mangadexId"), m.get("year"),
+            m.get("coverImageUrl"), m.get("status"), m.get("createdAt"), m.get("updatedAt")));
+
+        List<Predicate> where = new ArrayList<>();
+        if (status != null) where.add(cb.equal(m.get("status"), status));
+        if (year != null) where.add(cb.equal(m.get("year"), year));
+        if (after != null) {
+            // (updatedAt, id) < (cursor.updatedAt, cursor.id)
+            where.add(cb.or(
+                cb.lessThan(m.<Instant>get("updatedAt"), after.updatedAt()),
+                cb.and(cb.equal(m.get("updatedAt"), after.updatedAt()), cb.lessThan(m.<Long>get("id"), after.id()))));
+        }
+        q.where(where.toArray(Predicate[]::new));
+        q.orderBy(cb.desc(m.get("updatedAt")), cb.desc(m.get("id")));
+        return q;
+    }
+}
@@ -1,9 +1,16 @@
 package com.shiori.backend;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.shiori.backend.dto.MangaPage;
+import com.shiori.backend.dto.MangaSummary;
 
 import jakarta.persistence.EntityNotFoundException;
 
@@ -11,29 +18,76 @@ import jakarta.persistence.EntityNotFoundException;
 public class MangaService {
     
     private final MangaRepository mangaRepo;
+    private final ChapterRepository chapterRepo;
+    private final MangaSyncStateRepository syncStateRepo;
+    private final ReadingProgressRepository progressRepo;
+    private final TitleIndex titleIndex;
 
-    public MangaService(MangaRepository mangaRepo) {
+    public MangaService(MangaRepository mangaRepo, ChapterRepository chapterRepo, MangaSyncStateRepository syncStateRepo,
+                        ReadingProgressRepository progressRepo, TitleIndex titleIndex) {
         this.mangaRepo = mangaRepo;
+        this.chapterRepo = chapterRepo;
+        this.syncStateRepo = syncStateRepo;
+        this.progressRepo = progressRepo;
+        this.titleIndex = titleIndex;
     }
 
-    public Manga create(String title, String mangadexId, Integer year, String coverUrl, Manga.MangaStatus status) {
+    public Manga create(String title, String mangadexId, Integer year, String coverUrl, Manga.MangaStatus status,
+                        List<String> altTitles) {
         Manga manga = new Manga(title, mangadexId, year, coverUrl, status);
-        return mangaRepo.save(manga);
+        manga.setAltTitles(altTitles);
+        Manga saved = mangaRepo.save(manga);
+        titleIndex.upsert(TitleDocument.of(saved));
+        return saved;
+    }
+
+    public Optional<MangaRepository.Stamp> stamp(Long id) {
+        return mangaRepo.findStampById(id);
+    }
+
+    public Optional<MangaRepository.Stamp> stampByMangadexId(String mangadexId) {
+        return mangaRepo.findStampByMangadexId(mangadexId);
     }
 
     public Manga getById(Long id) {
         return mangaRepo.findById(id).orElseThrow(() -> new RuntimeException("Manga with id " + id + " not found"));
     }
 
-    public List<Manga> getAll() {
-        return mangaRepo.findAll();
+    // one page of the library, newest updates first
+    public MangaPage getPage(String cursor, int limit, Manga.MangaStatus status, Integer year) {
+        MangaCursor after = cursor != null && !cursor.isBlank() ? MangaCursor.decode(cursor) : null;
+        // one extra row tells us whether there is a next page
+        List<MangaSummary> rows = mangaRepo.findSummaries(status, year, after, limit + 1);
+        if (rows.size() <= limit) {
+            return new MangaPage(rows, null);
+        }
+        List<MangaSummary> items = rows.subList(0, limit);
+        MangaSummary last = items.get(limit - 1);
+        return new MangaPage(items, new MangaCursor(last.updatedAt(), last.id()).encode());
     }
 
-    public void deleteById(Long id) {
-        if (!mangaRepo.existsById(id)) {
-            throw new EntityNotFoundException("Manga with id " + id + " not found");
+    // hands every matching row to the consumer while it is read, nothing is buffered
+    @Transactional(readOnly = true)
+    public void forEachSummary(Manga.MangaStatus status, Integer year, Consumer<MangaSummary> consumer) {
+        try (Stream<MangaSummary> rows = mangaRepo.streamSummaries(status, year)) {
+            rows.forEach(consumer);
         }
-        mangaRepo.deleteById(id);
+    }
+
+    // synced chapters reference the row, they go first. sync state and reading progress would be orphans
+    @Transactional
+    public void deleteById(Long id) {
+        Manga manga = mangaRepo.findById(id)
+            .orElseThrow(() -> new EntityNotFoundException("Manga with id " + id + " not found"));
+        chapterRepo.deleteByMangaId(id);
+        syncStateRepo.deleteByMangaId(id);
+        progressRepo.deleteByMangaId(id);
+        mangaRepo.delete(manga);
+        titleIndex.remove(TitleDocument.of(manga).key());
+    }
+
+    public List<String> getTrackedMangadexIds() {
+        return mangaRepo.findAllMangadexIds();
     }
 
     public Optional<Manga> findByMangadexId(String mangadexId) {
@@ -43,13 +97,20 @@ public class MangaService {
     public Manga updateManga(Long id, Manga mangaUpdate) {
         Manga manga = mangaRepo.findById(id)
             .orElseThrow(() -> new EntityNotFoundException("Manga with id " + id + " not found."));
+            String previousKey = TitleDocument.of(manga).key();
 
             manga.setTitle(mangaUpdate.getTitle());
             manga.setMangadexId(mangaUpdate.getMangadexId());
             manga.setYear(mangaUpdate.getYear());
             manga.setCoverImageUrl(mangaUpdate.getCoverImageUrl());
             manga.setStatus(mangaUpdate.getStatus());
+            manga.setAltTitles(mangaUpdate.getAltTitles());
+            // alt titles alone don't make hibernate run @PreUpdate, updatedAt is the etag of the row
+            manga.setUpdatedAt(Instant.now());
 
-            return mangaRepo.save(manga);
+            Manga saved = mangaRepo.save(manga);
+            titleIndex.remove(previousKey);
+            titleIndex.upsert(TitleDocument.of(saved));
+            return saved;
     }
 }
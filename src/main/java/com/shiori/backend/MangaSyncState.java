@@ -0,0 +1,64 @@
+package com.shiori.backend;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// per manga and language progress of the chapter sync
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"mangaId", "lang"}))
+public class MangaSyncState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private Long mangaId;
+    @Column(nullable = false, length = 10)
+    private String lang;
+    // highest readableAt stored so far, the next sync only asks for chapters after it
+    private Instant cursor;
+    // readableAt of the newest chapter, used to sync active titles first and more often
+    private Instant lastChapterAt;
+    private Instant lastSyncedAt;
+
+    public MangaSyncState() {}
+
+    public MangaSyncState(Long mangaId, String lang) {
+        this.mangaId = mangaId;
+        this.lang = lang;
+    }
+    public Long getId() {
+        return id;
+    }
+    public Long getMangaId() {
+        return mangaId;
+    }
+    public String getLang() {
+        return lang;
+    }
+    public Instant getCursor() {
+        return cursor;
+    }
+    public void setCursor(Instant cursor) {
+        this.cursor = cursor;
+    }
+    public Instant getLastChapterAt() {
+        return lastChapterAt;
+    }
+    public void setLastChapterAt(Instant lastChapterAt) {
+        this.lastChapterAt = lastChapterAt;
+    }
+    public Instant getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+    public void setLastSyncedAt(Instant lastSyncedAt) {
+        this.lastSyncedAt = lastSyncedAt;
+    }
+}
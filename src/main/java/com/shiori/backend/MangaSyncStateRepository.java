@@ -0,0 +1,23 @@
+package com.shiori.backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface MangaSyncStateRepository extends JpaRepository<MangaSyncState, Long> {
+
+    Optional<MangaSyncState> findByMangaIdAndLang(Long mangaId, String lang);
+
+    List<MangaSyncState> findByMangaIdInAndLang(Collection<Long> mangaIds, String lang);
+
+    @Query("select s from MangaSyncState s where s.lang = :lang and s.mangaId = (select m.id from Manga m where m.mangadexId = :mangadexId)")
+    Optional<MangaSyncState> findByMangadexIdAndLang(String mangadexId, String lang);
+
+    @Modifying
+    @Query("delete from MangaSyncState s where s.mangaId = :mangaId")
+    int deleteByMangaId(Long mangaId);
+}
@@ -0,0 +1,76 @@
+package com.shiori.backend;
+
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shiori.backend.dto.TitleHit;
+
+// title index backed by postgres pg_trgm, every instance sees the same data
+// only tracked manga are searchable, the table is the index so writes need no extra work.
+// the extension and gin indexes come from the V3 postgres migration, not from this class
+@Component
+@ConditionalOnProperty(prefix = "shiori.search", name = "mode", havingValue = "pg-trgm")
+public class PgTrgmTitleIndex implements TitleIndex {
+
+    // % uses pg_trgm.similarity_threshold, the prefix match keeps short typeahead queries working
+    private static final String SEARCH = """
+        select m.id, m.mangadex_id, m.title, m.year, m.cover_image_url,
+               max(similarity(lower(t.title), lower(:q))
+                   + case when lower(t.title) like :prefix escape '\\' then 1 else 0 end) as score
+        from (select id as manga_id, title from manga
+              union all
+              select manga_id, title from manga_alt_title) t
+        join manga m on m.id = t.manga_id
+        where lower(t.title) % lower(:q) or lower(t.title) like :prefix escape '\\'
+        group by m.id, m.mangadex_id, m.title, m.year, m.cover_image_url
+        order by score desc, m.title
+        limit :limit""";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final double minScore;
+
+    public PgTrgmTitleIndex(NamedParameterJdbcTemplate jdbc, TransactionTemplate tx, TitleSearchProperties props) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.minScore = props.getMinScore();
+    }
+
+    @Override
+    public List<TitleHit> search(String query, int limit) {
+        if (query == null || query.isBlank() || limit <= 0) return List.of();
+        String q = query.trim();
+        String prefix = q.toLowerCase().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("q", q)
+            .addValue("prefix", prefix)
+            .addValue("limit", limit)
+            .addValue("threshold", String.valueOf(minScore));
+        // the threshold is set local to the transaction so pooled connections keep their default
+        return tx.execute(status -> {
+            jdbc.queryForObject("select set_config('pg_trgm.similarity_threshold', :threshold, true)", params, String.class);
+            return jdbc.query(SEARCH, params, (rs, i) -> new TitleHit(
+                rs.getString("mangadex_id"),
+                rs.getLong("id"),
+                rs.getString("title"),
+                (Integer) rs.getObject("year"),
+                rs.getString("cover_image_url"),
+                rs.getDouble("score")));
+        });
+    }
+
+    // the manga table is the index, nothing to do on writes
+    @Override
+    public void upsert(TitleDocument doc) {}
+
+    @Override
+    public void offer(TitleDocument doc) {}
+
+    @Override
+    public void remove(String key) {}
+}
@@ -0,0 +1,107 @@
+package com.shiori.backend;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+// what one reader has read of one manga in one language, with the unread aggregate kept next to it.
+// unreadCount and unreadLatestAt are bumped by the chapter sync as chapters arrive, so listing a
+// reader's updates never has to look at chapters
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"userId", "mangaId", "lang"}),
+    indexes = {
+        @Index(name = "idx_progress_user_updates", columnList = "userId, unreadLatestAt"),
+        @Index(name = "idx_progress_manga_lang", columnList = "mangaId, lang")
+    })
+public class ReadingProgress {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false, length = 64)
+    private String userId;
+    @Column(nullable = false)
+    private Long mangaId;
+    @Column(nullable = false, length = 10)
+    private String lang;
+    // null while following a title without having read any of it
+    private String lastReadChapter;
+    @Column(precision = 12, scale = 4)
+    private BigDecimal lastReadNumber;
+    // distinct chapter numbers above lastReadNumber
+    @Column(nullable = false)
+    private int unreadCount;
+    // newest unread chapter and its readableAt, both null when caught up
+    private String latestChapter;
+    private Instant unreadLatestAt;
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onWrite() {
+        updatedAt = Instant.now();
+    }
+
+    public ReadingProgress() {}
+
+    public ReadingProgress(String userId, Long mangaId, String lang) {
+        this.userId = userId;
+        this.mangaId = mangaId;
+        this.lang = lang;
+    }
+    public Long getId() {
+        return id;
+    }
+    public String getUserId() {
+        return userId;
+    }
+    public Long getMangaId() {
+        return mangaId;
+    }
+    public String getLang() {
+        return lang;
+    }
+    public String getLastReadChapter() {
+        return lastReadChapter;
+    }
+    public void setLastReadChapter(String lastReadChapter) {
+        this.lastReadChapter = lastReadChapter;
+    }
+    public BigDecimal getLastReadNumber() {
+        return lastReadNumber;
+    }
+    public void setLastReadNumber(BigDecimal lastReadNumber) {
+        this.lastReadNumber = lastReadNumber;
+    }
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+    public String getLatestChapter() {
+        return latestChapter;
+    }
+    public void setLatestChapter(String latestChapter) {
+        this.latestChapter = latestChapter;
+    }
+    public Instant getUnreadLatestAt() {
+        return unreadLatestAt;
+    }
+    public void setUnreadLatestAt(Instant unreadLatestAt) {
+        this.unreadLatestAt = unreadLatestAt;
+    }
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,70 @@
+package com.shiori.backend;
+
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.shiori.backend.dto.MangaUpdate;
+import com.shiori.backend.dto.ReadingProgressRequest;
+import com.shiori.backend.dto.ReadingProgressResult;
+
+// the calling reader's progress, identified by X-User-Id (there is no authentication in front of this)
+@RestController
+@RequestMapping("/api/me")
+public class ReadingProgressController {
+
+    private static final String USER = "X-User-Id";
+    private static final int MAX_UPDATES = 200;
+
+    private final ReadingProgressService progress;
+
+    ReadingProgressController(ReadingProgressService progress) {
+        this.progress = progress;
+    }
+
+    // followed titles with unread chapters, newest release first
+    @GetMapping("/updates")
+    public List<MangaUpdate> updates(@RequestHeader(USER) String userId, @RequestParam(defaultValue = "50") int limit) {
+        return progress.updates(user(userId), Math.max(1, Math.min(limit, MAX_UPDATES)));
+    }
+
+    @GetMapping("/progress/{mangaId}")
+    public ReadingProgressResult get(@RequestHeader(USER) String userId, @PathVariable Long mangaId,
+                                     @RequestParam(defaultValue = "en") String lang) {
+        return progress.get(user(userId), mangaId, lang);
+    }
+
+    // marks chapter as the last one read, follows the title if it wasn't yet
+    @PutMapping("/progress/{mangaId}")
+    public ReadingProgressResult markRead(@RequestHeader(USER) String userId, @PathVariable Long mangaId,
+                                          @RequestBody ReadingProgressRequest request) {
+        String lang = request.lang() != null && !request.lang().isBlank() ? request.lang() : "en";
+        return progress.markRead(user(userId), mangaId, lang, request.chapter());
+    }
+
+    @DeleteMapping("/progress/{mangaId}")
+    public ResponseEntity<Void> unfollow(@RequestHeader(USER) String userId, @PathVariable Long mangaId,
+                                         @RequestParam(defaultValue = "en") String lang) {
+        progress.unfollow(user(userId), mangaId, lang);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static String user(String userId) {
+        String id = userId.trim();
+        if (id.isEmpty() || id.length() > 64) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, USER + " must be 1 to 64 characters");
+        }
+        return id;
+    }
+}
@@ -0,0 +1,45 @@
+package com.shiori.backend;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import com.shiori.backend.dto.MangaUpdate;
+
+public interface ReadingProgressRepository extends JpaRepository<ReadingProgress, Long> {
+
+    Optional<ReadingProgress> findByUserIdAndMangaIdAndLang(String userId, Long mangaId, String lang);
+
+    boolean existsByMangaIdAndLang(Long mangaId, String lang);
+
+    // one newly seen chapter number: every reader behind it gets one more unread,
+    // and it becomes their latest unread when it is newer than the one they have
+    @Modifying
+    @Query("""
+        update ReadingProgress p set
+            p.unreadCount = p.unreadCount + 1,
+            p.latestChapter = case when p.unreadLatestAt is null or p.unreadLatestAt < :at then :chapter else p.latestChapter end,
+            p.unreadLatestAt = case when p.unreadLatestAt is null or p.unreadLatestAt < :at then :at else p.unreadLatestAt end
+        where p.mangaId = :mangaId and p.lang = :lang
+            and (p.lastReadNumber is null or p.lastReadNumber < :number)""")
+    int addUnread(Long mangaId, String lang, BigDecimal number, String chapter, Instant at);
+
+    // only rows with something unread have unreadLatestAt, idx_progress_user_updates serves this directly
+    @Query("""
+        select new com.shiori.backend.dto.MangaUpdate(m.id, m.mangadexId, m.title, m.coverImageUrl, p.lang,
+            p.lastReadChapter, p.latestChapter, p.unreadLatestAt, p.unreadCount)
+        from ReadingProgress p join Manga m on m.id = p.mangaId
+        where p.userId = :userId and p.unreadLatestAt is not null
+        order by p.unreadLatestAt desc, p.id desc""")
+    List<MangaUpdate> findUpdates(String userId, Pageable page);
+
+    @Modifying
+    @Query("delete from ReadingProgress p where p.mangaId = :mangaId")
+    int deleteByMangaId(Long mangaId);
+}
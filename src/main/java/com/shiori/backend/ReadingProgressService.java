@@ -0,0 +1,123 @@
+package com.shiori.backend;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.shiori.backend.dto.MangaUpdate;
+import com.shiori.backend.dto.ReadingProgressResult;
+
+// per reader last read chapter, unread counts are kept up to date as the chapter sync stores chapters.
+// a reader's count is computed from the chapter table once when they mark something read,
+// after that every new chapter number bumps it with one update over the title's followers
+@Service
+public class ReadingProgressService {
+    // below every chapter number, stands for "nothing read yet"
+    private static final BigDecimal NOTHING_READ = BigDecimal.ONE.negate();
+
+    private final ReadingProgressRepository progressRepo;
+    private final ChapterRepository chapterRepo;
+    private final MangaRepository mangaRepo;
+    private final boolean localCovers;
+
+    public ReadingProgressService(ReadingProgressRepository progressRepo, ChapterRepository chapterRepo,
+                                  MangaRepository mangaRepo, CoverCacheProperties coverProps) {
+        this.progressRepo = progressRepo;
+        this.chapterRepo = chapterRepo;
+        this.mangaRepo = mangaRepo;
+        this.localCovers = coverProps.isRewriteUrls();
+    }
+
+    public ReadingProgressResult get(String userId, Long mangaId, String lang) {
+        return progressRepo.findByUserIdAndMangaIdAndLang(userId, mangaId, lang)
+            .map(ReadingProgressService::toResult)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Manga " + mangaId + " is not followed"));
+    }
+
+    // chapter null follows the title with nothing read, otherwise it has to be a numbered chapter
+    @Transactional
+    public ReadingProgressResult markRead(String userId, Long mangaId, String lang, String chapter) {
+        if (!mangaRepo.existsById(mangaId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Manga with id " + mangaId + " not found");
+        }
+        BigDecimal number = null;
+        if (chapter != null) {
+            number = ChapterService.number(chapter);
+            if (number == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only numbered chapters can be marked read");
+            }
+        }
+        ReadingProgress progress = progressRepo.findByUserIdAndMangaIdAndLang(userId, mangaId, lang)
+            .orElseGet(() -> new ReadingProgress(userId, mangaId, lang));
+        progress.setLastReadChapter(chapter);
+        progress.setLastReadNumber(number);
+
+        BigDecimal after = number != null ? number : NOTHING_READ;
+        progress.setUnreadCount((int) chapterRepo.countNumbersAfter(mangaId, lang, after));
+        List<Chapter> newest = chapterRepo.findNewestAfter(mangaId, lang, after, PageRequest.of(0, 1));
+        if (progress.getUnreadCount() > 0 && !newest.isEmpty()) {
+            Chapter latest = newest.get(0);
+            progress.setLatestChapter(latest.getChapter());
+            progress.setUnreadLatestAt(latest.getReadableAt() != null ? latest.getReadableAt() : Instant.now());
+        } else {
+            progress.setLatestChapter(null);
+            progress.setUnreadLatestAt(null);
+        }
+        return toResult(progressRepo.save(progress));
+    }
+
+    @Transactional
+    public void unfollow(String userId, Long mangaId, String lang) {
+        progressRepo.findByUserIdAndMangaIdAndLang(userId, mangaId, lang).ifPresent(progressRepo::delete);
+    }
+
+    // followed titles with unread chapters, most recent release first
+    public List<MangaUpdate> updates(String userId, int limit) {
+        List<MangaUpdate> updates = progressRepo.findUpdates(userId, PageRequest.of(0, limit));
+        if (!localCovers) return updates;
+        return updates.stream()
+            .map(u -> new MangaUpdate(u.mangaId(), u.mangadexId(), u.title(), CoverCache.localUrl(u.coverImageUrl()),
+                u.lang(), u.lastReadChapter(), u.latestChapter(), u.latestChapterAt(), u.unreadCount()))
+            .toList();
+    }
+
+    // called by ChapterService.upsert with the chapters it is about to insert, before they are saved.
+    // only numbers the title didn't have yet count, several groups uploading one chapter is one chapter
+    @Transactional
+    public void onNewChapters(Long mangaId, String lang, Collection<Chapter> added) {
+        // compareTo keys, "12.5000" from the database and "12.5" are the same number
+        TreeMap<BigDecimal, Chapter> newest = new TreeMap<>();
+        for (Chapter c : added) {
+            if (c.getChapterNumber() == null) continue;
+            newest.merge(c.getChapterNumber(), c, ReadingProgressService::later);
+        }
+        if (newest.isEmpty() || !progressRepo.existsByMangaIdAndLang(mangaId, lang)) return;
+
+        for (BigDecimal known : chapterRepo.findNumbersIn(mangaId, lang, newest.keySet())) {
+            newest.remove(known);
+        }
+        for (Chapter c : newest.values()) {
+            Instant at = c.getReadableAt() != null ? c.getReadableAt() : Instant.now();
+            progressRepo.addUnread(mangaId, lang, c.getChapterNumber(), c.getChapter(), at);
+        }
+    }
+
+    private static Chapter later(Chapter a, Chapter b) {
+        if (a.getReadableAt() == null) return b;
+        if (b.getReadableAt() == null) return a;
+        return b.getReadableAt().isAfter(a.getReadableAt()) ? b : a;
+    }
+
+    private static ReadingProgressResult toResult(ReadingProgress p) {
+        return new ReadingProgressResult(p.getMangaId(), p.getLang(), p.getLastReadChapter(), p.getUnreadCount(),
+            p.getLatestChapter(), p.getUnreadLatestAt(), p.getUpdatedAt());
+    }
+}
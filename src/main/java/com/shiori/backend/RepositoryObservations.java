@@ -0,0 +1,46 @@
+package com.shiori.backend;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+// wraps every spring data repository call in a shiori.repository observation, a timer tagged by
+// repository and method plus a span under the request that made the query.
+// replaces boot's spring.data.repository.invocations timer, which has no span.
+// methods returning a Stream are timed until the stream is opened, not while it is read
+@Component
+public class RepositoryObservations implements BeanPostProcessor {
+
+    // post processors are created before the registry exists, look it up on first use
+    private final ObjectProvider<ObservationRegistry> registry;
+
+    public RepositoryObservations(ObjectProvider<ObservationRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                (proxy, info) -> proxy.addAdvice(observe(info.getRepositoryInterface().getSimpleName()))));
+        }
+        return bean;
+    }
+
+    private MethodInterceptor observe(String repository) {
+        return invocation -> {
+            ObservationRegistry observations = registry.getIfAvailable(() -> ObservationRegistry.NOOP);
+            String method = invocation.getMethod().getName();
+            return Observation.createNotStarted("shiori.repository", observations)
+                .contextualName(repository + "." + method)
+                .lowCardinalityKeyValue("repository", repository)
+                .lowCardinalityKeyValue("method", method)
+                .observeChecked(invocation::proceed);
+        };
+    }
+}
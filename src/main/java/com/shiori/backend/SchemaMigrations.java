@@ -0,0 +1,28 @@
+package com.shiori.backend;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.stereotype.Component;
+
+// the flyway migrations run before the entity manager starts, unless shiori.schema.migrate is off
+@Component
+public class SchemaMigrations implements FlywayMigrationStrategy {
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    private final SchemaProperties props;
+
+    public SchemaMigrations(SchemaProperties props) {
+        this.props = props;
+    }
+
+    @Override
+    public void migrate(Flyway flyway) {
+        if (!props.isMigrate()) {
+            log.info("Schema migrations skipped, shiori.schema.migrate is off");
+            return;
+        }
+        flyway.migrate();
+    }
+}
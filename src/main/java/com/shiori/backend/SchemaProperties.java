@@ -0,0 +1,19 @@
+package com.shiori.backend;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// schema migrations (flyway, src/main/resources/db/migration)
+// migrate: apply pending migrations on startup. off for the cds training run, which has no database, and for
+//   instances started after the release applied them. read at runtime, unlike spring.flyway.enabled in an aot build
+@ConfigurationProperties("shiori.schema")
+public class SchemaProperties {
+
+    private boolean migrate = true;
+
+    public boolean isMigrate() {
+        return migrate;
+    }
+    public void setMigrate(boolean migrate) {
+        this.migrate = migrate;
+    }
+}
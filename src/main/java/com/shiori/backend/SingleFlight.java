@@ -0,0 +1,71 @@
+package com.shiori.backend;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// coalesces concurrent identical upstream calls, keyed on (endpoint, params)
+// the first caller runs the call, everyone arriving while it is in flight waits for
+// the same result or exception instead of going upstream again
+@Component
+public class SingleFlight {
+
+    private record Key(String endpoint, Object params) {}
+
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+
+    public SingleFlight(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("mangadex.singleflight.inflight", inFlight, ConcurrentHashMap::size)
+            .description("Distinct upstream calls currently in flight")
+            .register(registry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String endpoint, Object params, Callable<T> call) throws Exception {
+        Key key = new Key(endpoint, params);
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            counter(endpoint, "shared").increment();
+            try {
+                return (T) existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception ex) throw ex;
+                if (cause instanceof Error err) throw err;
+                throw e;
+            }
+        }
+
+        counter(endpoint, "leader").increment();
+        try {
+            T result = call.call();
+            mine.complete(result);
+            return result;
+        } catch (Throwable t) {
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // role=leader went upstream, role=shared was deduplicated onto a leader's call
+    private Counter counter(String endpoint, String role) {
+        return Counter.builder("mangadex.singleflight.calls")
+            .description("Upstream calls by whether they ran or joined an identical in-flight call")
+            .tag("endpoint", endpoint)
+            .tag("role", role)
+            .register(registry);
+    }
+}
@@ -0,0 +1,129 @@
+package com.shiori.backend;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+// what starting this instance cost, measured once it takes traffic: time since jvm start and time spent in
+// spring, resident memory, heap and loaded classes at that point, and whether the aot and cds artifacts
+// of the fast start build were used. logged once and kept under /actuator/info and as shiori.startup.*
+// gauges, next to the build version, so releases can be compared on the same numbers
+@Component
+public class StartupReport implements InfoContributor {
+    private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+
+    public record Report(long readyMillis, long contextMillis, long rssBytes, long heapUsedBytes,
+                         int loadedClasses, boolean aot, boolean cds) {}
+
+    private final MeterRegistry registry;
+    private volatile Duration contextReady;
+    private volatile Report report;
+
+    public StartupReport(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @EventListener
+    void ready(ApplicationReadyEvent event) {
+        contextReady = event.getTimeTaken();
+    }
+
+    // published after every ApplicationReadyEvent listener ran, so the title index load is included
+    @EventListener
+    void accepting(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC || report != null) return;
+        Duration context = contextReady;
+        Report r = new Report(
+            ManagementFactory.getRuntimeMXBean().getUptime(),
+            context != null ? context.toMillis() : -1,
+            rss(),
+            ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+            ManagementFactory.getClassLoadingMXBean().getLoadedClassCount(),
+            AotDetector.useGeneratedArtifacts(),
+            cds());
+        report = r;
+        TimeGauge.builder("shiori.startup.ready", r, TimeUnit.MILLISECONDS, Report::readyMillis)
+            .description("Time from jvm start until the instance took traffic")
+            .register(registry);
+        Gauge.builder("shiori.startup.rss", r, Report::rssBytes)
+            .description("Resident memory when the instance took traffic")
+            .baseUnit("bytes")
+            .register(registry);
+        log.info("Startup: ready in {} ms ({} ms in spring), rss {} MB, heap {} MB, {} classes, aot {}, cds {}",
+            r.readyMillis(), r.contextMillis(), r.rssBytes() >= 0 ? r.rssBytes() >> 20 : "n/a",
+            r.heapUsedBytes() >> 20, r.loadedClasses(), r.aot(), r.cds());
+    }
+
+    public Report report() {
+        return report;
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        Report r = report;
+        if (r == null) return;
+        Map<String, Object> detail = new LinkedHashMap<>();
+        detail.put("readyMillis", r.readyMillis());
+        detail.put("contextMillis", r.contextMillis());
+        detail.put("rssBytes", r.rssBytes());
+        detail.put("heapUsedBytes", r.heapUsedBytes());
+        detail.put("loadedClasses", r.loadedClasses());
+        detail.put("aot", r.aot());
+        detail.put("cds", r.cds());
+        builder.withDetail("startup", detail);
+    }
+
+    // -1 where there is no /proc, the heap numbers are still reported there
+    private static long rss() {
+        try {
+            return rss(Files.readAllLines(Path.of("/proc/self/status")));
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    // VmRSS from /proc/self/status, in bytes
+    static long rss(List<String> status) {
+        for (String line : status) {
+            if (!line.startsWith("VmRSS:")) continue;
+            String[] parts = line.substring(6).trim().split("\\s+");
+            long value = Long.parseLong(parts[0]);
+            return parts.length > 1 && parts[1].equalsIgnoreCase("kB") ? value * 1024 : value;
+        }
+        return -1;
+    }
+
+    // an application archive was mapped, the jdk's default one alone doesn't count
+    private static boolean cds() {
+        try {
+            HotSpotDiagnosticMXBean vm = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            return vm != null && !vm.getVMOption("SharedArchiveFile").getValue().isEmpty()
+                && Boolean.parseBoolean(vm.getVMOption("UseSharedSpaces").getValue());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.shiori.backend;
+
+import java.time.Instant;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+// one row per slice of the manga id space, an instance may only sync a slice while it holds the lease
+@Entity
+public class SyncLease {
+
+    @Id
+    private Integer slot;
+    private String owner;
+    private Instant leaseUntil;
+
+    public SyncLease() {}
+
+    public SyncLease(Integer slot) {
+        this.slot = slot;
+    }
+    public Integer getSlot() {
+        return slot;
+    }
+    public String getOwner() {
+        return owner;
+    }
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+}
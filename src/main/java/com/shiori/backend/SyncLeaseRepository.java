@@ -0,0 +1,24 @@
+package com.shiori.backend;
+
+import java.time.Instant;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface SyncLeaseRepository extends JpaRepository<SyncLease, Integer> {
+
+    // compare-and-set on the lease row, returns 1 when this owner got (or renewed) the slot
+    @Transactional
+    @Modifying
+    @Query("""
+        update SyncLease l set l.owner = :owner, l.leaseUntil = :until
+        where l.slot = :slot and (l.leaseUntil is null or l.leaseUntil < :now or l.owner = :owner)""")
+    int tryAcquire(Integer slot, String owner, Instant now, Instant until);
+
+    @Transactional
+    @Modifying
+    @Query("update SyncLease l set l.leaseUntil = null where l.slot = :slot and l.owner = :owner")
+    int release(Integer slot, String owner);
+}
@@ -0,0 +1,27 @@
+package com.shiori.backend;
+
+import java.util.List;
+
+// what the title index knows about one manga, mangaId is null for titles only seen in mangadex results
+public record TitleDocument(
+    String mangadexId,
+    Long mangaId,
+    String title,
+    List<String> altTitles,
+    Integer year,
+    String coverUrl) {
+
+    // mangadexId when known so a tracked row replaces the search result it came from
+    public String key() {
+        return mangadexId != null ? mangadexId : "local:" + mangaId;
+    }
+
+    public static TitleDocument of(Manga manga) {
+        return new TitleDocument(manga.getMangadexId(), manga.getId(), manga.getTitle(), manga.getAltTitles(),
+            manga.getYear(), manga.getCoverImageUrl());
+    }
+
+    public boolean tracked() {
+        return mangaId != null;
+    }
+}
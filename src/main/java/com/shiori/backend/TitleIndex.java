@@ -0,0 +1,19 @@
+package com.shiori.backend;
+
+import java.util.List;
+
+import com.shiori.backend.dto.TitleHit;
+
+// fuzzy title lookup over tracked manga and titles seen in mangadex results
+public interface TitleIndex {
+
+    // best matches first, empty when nothing is similar enough
+    List<TitleHit> search(String query, int limit);
+
+    void upsert(TitleDocument doc);
+
+    // adds a title seen in mangadex results unless it is already tracked
+    void offer(TitleDocument doc);
+
+    void remove(String key);
+}
@@ -0,0 +1,29 @@
+package com.shiori.backend;
+
+import java.util.List;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.shiori.backend.dto.TitleHit;
+
+@RestController
+@RequestMapping("/api/search")
+public class TitleSearchController {
+
+    private static final int MAX_LIMIT = 50;
+
+    private final TitleSearchService titleSearch;
+
+    public TitleSearchController(TitleSearchService titleSearch) {
+        this.titleSearch = titleSearch;
+    }
+
+    // typeahead, never calls mangadex
+    @GetMapping("/titles")
+    public List<TitleHit> titles(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return titleSearch.searchTitles(q, Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+}
@@ -0,0 +1,33 @@
+package com.shiori.backend;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// mode: memory keeps a trigram index in this process, pg-trgm asks postgres (shared by all instances)
+// minScore: trigram similarity a title needs to count as a match, prefix matches always count
+// maxRemote: titles from mangadex results kept in the memory index, oldest are dropped first
+@ConfigurationProperties("shiori.search")
+public class TitleSearchProperties {
+
+    private String mode = "memory";
+    private double minScore = 0.3;
+    private int maxRemote = 50_000;
+
+    public String getMode() {
+        return mode;
+    }
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+    public double getMinScore() {
+        return minScore;
+    }
+    public void setMinScore(double minScore) {
+        this.minScore = minScore;
+    }
+    public int getMaxRemote() {
+        return maxRemote;
+    }
+    public void setMaxRemote(int maxRemote) {
+        this.maxRemote = maxRemote;
+    }
+}
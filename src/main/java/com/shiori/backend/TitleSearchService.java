@@ -0,0 +1,112 @@
+package com.shiori.backend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.shiori.backend.dto.MangaSearchResult;
+import com.shiori.backend.dto.TitleHit;
+
+// title search answered locally first, mangadex is only asked when nothing local is close enough
+@Service
+public class TitleSearchService {
+    private static final Logger log = LoggerFactory.getLogger(TitleSearchService.class);
+
+    private static final String ROWS = "select id, mangadex_id, title, year, cover_image_url from manga";
+    private static final String ALT_TITLES = "select manga_id, title from manga_alt_title";
+
+    private final TitleIndex index;
+    private final MangaDexService mdService;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TitleSearchProperties props;
+    private final boolean localCovers;
+
+    public TitleSearchService(TitleIndex index, MangaDexService mdService, NamedParameterJdbcTemplate jdbc,
+                              TitleSearchProperties props, CoverCacheProperties coverProps) {
+        this.index = index;
+        this.mdService = mdService;
+        this.jdbc = jdbc;
+        this.props = props;
+        this.localCovers = coverProps.isRewriteUrls();
+    }
+
+    // the memory index starts empty, fill it with the whole library once
+    @EventListener(ApplicationReadyEvent.class)
+    void loadLibrary() {
+        if (!"memory".equals(props.getMode())) return;
+        long start = System.nanoTime();
+        int count = load(ROWS, ALT_TITLES, new MapSqlParameterSource());
+        log.info("Indexed {} manga titles in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // typeahead over the library and titles seen in earlier mangadex searches
+    public List<TitleHit> searchTitles(String query, int limit) {
+        List<TitleHit> hits = index.search(query, limit);
+        if (!localCovers) return hits;
+        return hits.stream()
+            .map(h -> new TitleHit(h.mangadexId(), h.mangaId(), h.title(), h.year(), CoverCache.localUrl(h.coverUrl()), h.score()))
+            .toList();
+    }
+
+    // local hits when there are any, otherwise (or when remote is asked for) the mangadex search
+    public MangaDexService.Served<List<MangaSearchResult>> search(String title, int limit, boolean remote) {
+        if (!remote) {
+            // rows without a mangadexId can't be opened on mangadex, they don't count as hits here
+            List<MangaSearchResult> local = index.search(title, limit).stream()
+                .filter(hit -> hit.mangadexId() != null)
+                .map(hit -> new MangaSearchResult(hit.mangadexId(), hit.title(), hit.year(), hit.coverUrl(), List.of()))
+                .toList();
+            if (!local.isEmpty()) return MangaDexService.Served.fresh(withLocalCovers(local));
+        }
+        MangaDexService.Served<List<MangaSearchResult>> remoteResults = mdService.search(title, limit);
+        List<MangaSearchResult> results = withLocalCovers(remoteResults.value());
+        // rewritten covers make a new list per request, only the cached one itself is shared
+        return new MangaDexService.Served<>(results, remoteResults.staleSince(),
+            remoteResults.shared() && results == remoteResults.value());
+    }
+
+    // clients load covers through /api/covers instead of hotlinking the mangadex cdn
+    private List<MangaSearchResult> withLocalCovers(List<MangaSearchResult> results) {
+        if (!localCovers) return results;
+        return results.stream()
+            .map(r -> new MangaSearchResult(r.id(), r.title(), r.year(), CoverCache.localUrl(r.coverUrl()), r.altTitles()))
+            .toList();
+    }
+
+    // re-reads rows written outside MangaService (bulk import) so the index sees them
+    public void reindex(Collection<String> mangadexIds) {
+        if (mangadexIds.isEmpty() || !"memory".equals(props.getMode())) return;
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", mangadexIds);
+        load(ROWS + " where mangadex_id in (:ids)",
+            ALT_TITLES + " where manga_id in (select id from manga where mangadex_id in (:ids))", params);
+    }
+
+    private int load(String rowsSql, String altSql, MapSqlParameterSource params) {
+        Map<Long, List<String>> alts = new HashMap<>();
+        jdbc.query(altSql, params, rs -> {
+            alts.computeIfAbsent(rs.getLong("manga_id"), k -> new ArrayList<>()).add(rs.getString("title"));
+        });
+        List<TitleDocument> docs = jdbc.query(rowsSql, params, (rs, i) -> {
+            long id = rs.getLong("id");
+            return new TitleDocument(
+                rs.getString("mangadex_id"),
+                id,
+                rs.getString("title"),
+                alts.getOrDefault(id, List.of()),
+                (Integer) rs.getObject("year"),
+                rs.getString("cover_image_url"));
+        });
+        docs.forEach(index::upsert);
+        return docs.size();
+    }
+}
@@ -0,0 +1,314 @@
+package com.shiori.backend;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.shiori.backend.dto.TitleHit;
+
+// in process trigram index, same trigram rules and similarity as postgres pg_trgm
+// every title and alt title is one entry, postings map a trigram to the entries containing it.
+// a query counts shared trigrams per entry straight from the postings, so its cost depends on
+// how common the query's trigrams are and not on the size of the library.
+@Component
+@ConditionalOnProperty(prefix = "shiori.search", name = "mode", havingValue = "memory", matchIfMissing = true)
+public class TrigramTitleIndex implements TitleIndex {
+
+    // identity equality on purpose, docs are map keys while scoring
+    private static final class Doc {
+        private final TitleDocument source;
+        private final int[] entries;
+
+        Doc(TitleDocument source, int[] entries) {
+            this.source = source;
+            this.entries = entries;
+        }
+        TitleDocument source() {
+            return source;
+        }
+        int[] entries() {
+            return entries;
+        }
+    }
+
+    private record Entry(Doc doc, String text, long[] trigrams) {}
+
+    private final double minScore;
+    private final int maxRemote;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private final Map<String, Doc> docs = new HashMap<>();
+    // untracked docs in insertion order, the oldest is dropped once maxRemote is reached
+    private final LinkedHashSet<String> remoteKeys = new LinkedHashSet<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final IntList freeEntries = new IntList();
+    private final Map<Long, IntList> postings = new HashMap<>();
+
+    public TrigramTitleIndex(TitleSearchProperties props) {
+        this.minScore = props.getMinScore();
+        this.maxRemote = props.getMaxRemote();
+    }
+
+    @Override
+    public List<TitleHit> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) return List.of();
+        long[] qTrigrams = trigrams(q);
+
+        lock.readLock().lock();
+        try {
+            // sized by the entries the query touches, not by the index
+            Counts shared = new Counts();
+            IntList touched = new IntList();
+            for (long t : qTrigrams) {
+                IntList posting = postings.get(t);
+                if (posting == null) continue;
+                for (int i = 0; i < posting.size; i++) {
+                    int e = posting.values[i];
+                    if (shared.increment(e) == 0) touched.add(e);
+                }
+            }
+
+            String wordPrefix = " " + q;
+            Map<Doc, Double> best = new HashMap<>();
+            for (int i = 0; i < touched.size; i++) {
+                int e = touched.values[i];
+                Entry entry = entries.get(e);
+                int c = shared.get(e);
+                double similarity = (double) c / (qTrigrams.length + entry.trigrams().length - c);
+                double bonus = entry.text().startsWith(q) ? 1.0 : entry.text().contains(wordPrefix) ? 0.5 : 0;
+                if (similarity < minScore && bonus == 0) continue;
+                best.merge(entry.doc(), similarity + bonus, Math::max);
+            }
+
+            return best.entrySet().stream()
+                .sorted(Map.Entry.<Doc, Double>comparingByValue().reversed()
+                    .thenComparing(en -> !en.getKey().source().tracked())
+                    .thenComparing(en -> en.getKey().source().title(), Comparator.nullsLast(Comparator.naturalOrder())))
+                .limit(limit)
+                .map(en -> {
+                    TitleDocument d = en.getKey().source();
+                    return new TitleHit(d.mangadexId(), d.mangaId(), d.title(), d.year(), d.coverUrl(), en.getValue());
+                })
+                .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(TitleDocument doc) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(doc.key());
+            if (doc.mangaId() != null && doc.mangadexId() != null) {
+                // a row tracked without a mangadex id before may have been indexed under its local key
+                removeLocked("local:" + doc.mangaId());
+            }
+            addLocked(doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void offer(TitleDocument doc) {
+        lock.writeLock().lock();
+        try {
+            Doc existing = docs.get(doc.key());
+            if (existing != null && existing.source().tracked()) return;
+            removeLocked(doc.key());
+            addLocked(doc);
+            remoteKeys.add(doc.key());
+            Iterator<String> oldest = remoteKeys.iterator();
+            while (remoteKeys.size() > maxRemote && oldest.hasNext()) {
+                String key = oldest.next();
+                oldest.remove();
+                removeLocked(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addLocked(TitleDocument source) {
+        LinkedHashSet<String> texts = new LinkedHashSet<>();
+        texts.add(normalize(source.title()));
+        if (source.altTitles() != null) {
+            for (String alt : source.altTitles()) texts.add(normalize(alt));
+        }
+        texts.remove("");
+
+        int[] ids = new int[texts.size()];
+        Doc doc = new Doc(source, ids);
+        int n = 0;
+        for (String text : texts) {
+            Entry entry = new Entry(doc, text, trigrams(text));
+            int id;
+            if (freeEntries.size > 0) {
+                id = freeEntries.values[--freeEntries.size];
+                entries.set(id, entry);
+            } else {
+                id = entries.size();
+                entries.add(entry);
+            }
+            for (long t : entry.trigrams()) {
+                postings.computeIfAbsent(t, k -> new IntList()).add(id);
+            }
+            ids[n++] = id;
+        }
+        docs.put(source.key(), doc);
+    }
+
+    private void removeLocked(String key) {
+        Doc doc = docs.remove(key);
+        if (doc == null) return;
+        remoteKeys.remove(key);
+        for (int id : doc.entries()) {
+            for (long t : entries.get(id).trigrams()) {
+                IntList posting = postings.get(t);
+                posting.remove(id);
+                if (posting.size == 0) postings.remove(t);
+            }
+            entries.set(id, null);
+            freeEntries.add(id);
+        }
+    }
+
+    // lower case letters and digits, runs of anything else become one space,
+    // latin diacritics are dropped, so "Pokémon: Adventures" and "pokemon adventures" are the same text
+    static String normalize(String s) {
+        if (s == null) return "";
+        String n = Normalizer.normalize(s, Normalizer.Form.NFKC);
+        StringBuilder b = new StringBuilder(n.length());
+        boolean space = true;
+        for (int i = 0; i < n.length(); ) {
+            int cp = n.codePointAt(i);
+            i += Character.charCount(cp);
+            if (cp >= 0x80 && cp < 0x2000) {
+                cp = Normalizer.normalize(Character.toString(cp), Normalizer.Form.NFD).codePointAt(0);
+            }
+            if (Character.isLetterOrDigit(cp)) {
+                b.appendCodePoint(Character.toLowerCase(cp));
+                space = false;
+            } else if (!space) {
+                b.append(' ');
+                space = true;
+            }
+        }
+        int len = b.length();
+        if (len > 0 && b.charAt(len - 1) == ' ') b.setLength(len - 1);
+        return b.toString();
+    }
+
+    // distinct trigrams, each word padded with two spaces in front and one behind like pg_trgm
+    static long[] trigrams(String normalized) {
+        LinkedHashSet<Long> out = new LinkedHashSet<>();
+        for (String word : normalized.split(" ")) {
+            if (word.isEmpty()) continue;
+            int[] cps = ("  " + word + " ").codePoints().toArray();
+            for (int i = 0; i + 2 < cps.length; i++) {
+                out.add(((long) cps[i] << 42) | ((long) cps[i + 1] << 21) | cps[i + 2]);
+            }
+        }
+        long[] result = new long[out.size()];
+        int i = 0;
+        for (long t : out) result[i++] = t;
+        return result;
+    }
+
+    // entry id to count, open addressing in two int arrays that grow with the number of ids added
+    private static final class Counts {
+        // id + 1, 0 marks a free slot
+        int[] keys = new int[64];
+        int[] counts = new int[64];
+        int size;
+
+        // adds one to the id's count and returns the count it had before
+        int increment(int id) {
+            if (size * 2 >= keys.length) grow();
+            int i = slot(keys, id);
+            if (keys[i] == 0) {
+                keys[i] = id + 1;
+                size++;
+            }
+            return counts[i]++;
+        }
+
+        int get(int id) {
+            int i = slot(keys, id);
+            return keys[i] == 0 ? 0 : counts[i];
+        }
+
+        private static int slot(int[] keys, int id) {
+            int mask = keys.length - 1;
+            int h = (id + 1) * 0x9E3779B9;
+            int i = (h ^ (h >>> 16)) & mask;
+            while (keys[i] != 0 && keys[i] != id + 1) i = (i + 1) & mask;
+            return i;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == 0) continue;
+                int i = slot(keys, oldKeys[j] - 1);
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+
+    // growable int array, order is not kept on remove
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        void remove(int v) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == v) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.shiori.backend.dto;
+
+// a new latest chapter of a watched title, id only grows on one node and doubles as the SSE event id
+public record ChapterEvent(
+    long id,
+    String mangaId,
+    String lang,
+    ChapterResult chapter) {}
@@ -0,0 +1,9 @@
+package com.shiori.backend.dto;
+
+import java.util.List;
+
+// ids: mangadex ids to look up, all: also include every tracked manga
+public record LatestBatchRequest(
+    List<String> ids,
+    boolean all,
+    String lang) {}
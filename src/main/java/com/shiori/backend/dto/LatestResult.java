@@ -0,0 +1,16 @@
+package com.shiori.backend.dto;
+
+// one item of a batch latest lookup, either chapter or error is set
+public record LatestResult(
+    String mangaId,
+    ChapterResult chapter,
+    String error) {
+
+    public static LatestResult ok(String mangaId, ChapterResult chapter) {
+        return new LatestResult(mangaId, chapter, null);
+    }
+
+    public static LatestResult failed(String mangaId, String error) {
+        return new LatestResult(mangaId, null, error);
+    }
+}
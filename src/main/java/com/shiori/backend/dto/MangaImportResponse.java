@@ -0,0 +1,10 @@
+package com.shiori.backend.dto;
+
+import java.util.List;
+
+public record MangaImportResponse(
+    int created,
+    int updated,
+    int unchanged,
+    int rejected,
+    List<MangaImportResult> rows) {}
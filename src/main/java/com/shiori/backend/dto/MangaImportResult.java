@@ -0,0 +1,19 @@
+package com.shiori.backend.dto;
+
+// outcome of one row of a bulk import, index is the row's position in the request
+public record MangaImportResult(
+    int index,
+    String mangadexId,
+    Outcome outcome,
+    String error) {
+
+    public enum Outcome {
+        CREATED,
+        UPDATED,
+        UNCHANGED,
+        // a later row in the same request had the same mangadexId and won
+        DUPLICATE,
+        INVALID,
+        FAILED
+    }
+}
@@ -0,0 +1,20 @@
+package com.shiori.backend.dto;
+
+import java.time.Instant;
+
+// the running or last dump ingest, file and startedAt are null when none ran yet.
+// error is set when the dump could not be read to its end
+public record MangaIngestStatus(
+    boolean running,
+    String file,
+    Instant startedAt,
+    Instant finishedAt,
+    long bytesRead,
+    long totalBytes,
+    long read,
+    long changed,
+    long unchanged,
+    long invalid,
+    long failed,
+    double recordsPerSecond,
+    String error) {}
@@ -0,0 +1,8 @@
+package com.shiori.backend.dto;
+
+import java.util.List;
+
+// nextCursor is null on the last page
+public record MangaPage(
+    List<MangaSummary> items,
+    String nextCursor) {}
@@ -0,0 +1,17 @@
+package com.shiori.backend.dto;
+
+import java.time.Instant;
+
+// the running or last metadata refresh, startedAt is null when none ran yet
+public record MangaRefreshStatus(
+    boolean running,
+    Instant startedAt,
+    Instant finishedAt,
+    long total,
+    long scanned,
+    long changed,
+    long unchanged,
+    long missing,
+    long failed,
+    long calls,
+    double titlesPerSecond) {}
@@ -1,7 +1,10 @@
 package com.shiori.backend.dto;
 
+import java.util.List;
+
 public record MangaSearchResult(
     String id,
     String title,
     Integer year,
-    String coverUrl) {}
+    String coverUrl,
+    List<String> altTitles) {}
@@ -0,0 +1,16 @@
+package com.shiori.backend.dto;
+
+import java.time.Instant;
+
+import com.shiori.backend.Manga;
+
+// read only view of a manga row, selected directly instead of loading managed entities
+public record MangaSummary(
+    Long id,
+    String title,
+    String mangadexId,
+    Integer year,
+    String coverImageUrl,
+    Manga.MangaStatus status,
+    Instant createdAt,
+    Instant updatedAt) {}
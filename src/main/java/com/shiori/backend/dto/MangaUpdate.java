@@ -0,0 +1,15 @@
+package com.shiori.backend.dto;
+
+import java.time.Instant;
+
+// a followed title with unread chapters, latestChapter is the newest of them
+public record MangaUpdate(
+    Long mangaId,
+    String mangadexId,
+    String title,
+    String coverImageUrl,
+    String lang,
+    String lastReadChapter,
+    String latestChapter,
+    Instant latestChapterAt,
+    int unreadCount) {}
@@ -0,0 +1,6 @@
+package com.shiori.backend.dto;
+
+// chapter is the last one read, null to follow a title from the start
+public record ReadingProgressRequest(
+    String chapter,
+    String lang) {}
@@ -0,0 +1,12 @@
+package com.shiori.backend.dto;
+
+import java.time.Instant;
+
+public record ReadingProgressResult(
+    Long mangaId,
+    String lang,
+    String lastReadChapter,
+    int unreadCount,
+    String latestChapter,
+    Instant latestChapterAt,
+    Instant updatedAt) {}
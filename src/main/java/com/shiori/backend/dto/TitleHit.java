@@ -0,0 +1,10 @@
+package com.shiori.backend.dto;
+
+// one title search match, mangaId is set when the title is in the local library
+public record TitleHit(
+    String mangadexId,
+    Long mangaId,
+    String title,
+    Integer year,
+    String coverUrl,
+    double score) {}
@@ -0,0 +1,16 @@
+-- the manga table as hibernate's ddl-auto=update made it before the migrations. databases created that way
+-- are baselined at this version (spring.flyway.baseline-on-migrate) and skip it, everything added since comes
+-- in later migrations. constraint names differ on those databases, hibernate made them up, so migrations
+-- shouldn't refer to constraints by name
+
+create table manga (
+    id bigint generated by default as identity,
+    cover_image_url varchar(255),
+    created_at timestamp(6) with time zone,
+    mangadex_id varchar(36) unique,
+    status varchar(255) check (status in ('ONGOING', 'COMPLETED', 'HIATUS', 'CANCELLED')),
+    title varchar(255) not null,
+    updated_at timestamp(6) with time zone,
+    year integer,
+    primary key (id)
+);
@@ -0,0 +1,68 @@
+-- chapters, sync state, reading progress and the keyset indexes. a database that ran the app with
+-- ddl-auto=update after these entities existed already has some of them, so every statement is if not exists
+
+create sequence if not exists chapter_seq start with 1 increment by 50;
+
+create table if not exists manga_alt_title (
+    manga_id bigint not null,
+    title varchar(255),
+    constraint fk_manga_alt_title_manga foreign key (manga_id) references manga
+);
+
+create table if not exists chapter (
+    id bigint not null,
+    chapter varchar(255),
+    chapter_number numeric(12, 4),
+    created_at timestamp(6) with time zone,
+    group_name varchar(255),
+    lang varchar(10) not null,
+    mangadex_id varchar(36) not null unique,
+    readable_at timestamp(6) with time zone,
+    title varchar(255),
+    updated_at timestamp(6) with time zone,
+    volume varchar(255),
+    manga_id bigint not null,
+    primary key (id),
+    constraint fk_chapter_manga foreign key (manga_id) references manga
+);
+
+create table if not exists manga_sync_state (
+    id bigint generated by default as identity,
+    cursor timestamp(6) with time zone,
+    lang varchar(10) not null,
+    last_chapter_at timestamp(6) with time zone,
+    last_synced_at timestamp(6) with time zone,
+    manga_id bigint not null,
+    primary key (id),
+    unique (manga_id, lang)
+);
+
+create table if not exists reading_progress (
+    id bigint generated by default as identity,
+    lang varchar(10) not null,
+    last_read_chapter varchar(255),
+    last_read_number numeric(12, 4),
+    latest_chapter varchar(255),
+    manga_id bigint not null,
+    unread_count integer not null,
+    unread_latest_at timestamp(6) with time zone,
+    updated_at timestamp(6) with time zone,
+    user_id varchar(64) not null,
+    primary key (id),
+    unique (user_id, manga_id, lang)
+);
+
+create table if not exists sync_lease (
+    slot integer not null,
+    lease_until timestamp(6) with time zone,
+    owner varchar(255),
+    primary key (slot)
+);
+
+create index if not exists idx_manga_updated_id on manga (updated_at, id);
+create index if not exists idx_manga_status_updated_id on manga (status, updated_at, id);
+create index if not exists idx_manga_year_updated_id on manga (year, updated_at, id);
+create index if not exists idx_chapter_manga_lang_readable on chapter (manga_id, lang, readable_at);
+create index if not exists idx_chapter_manga_lang_number on chapter (manga_id, lang, chapter_number);
+create index if not exists idx_progress_user_updates on reading_progress (user_id, unread_latest_at);
+create index if not exists idx_progress_manga_lang on reading_progress (manga_id, lang);
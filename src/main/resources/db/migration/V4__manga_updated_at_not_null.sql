@@ -0,0 +1,6 @@
+-- the keyset listing orders and pages on (updated_at, id) and can't place a row without updated_at.
+-- every write sets it, rows from before that get their creation time, or now when that is missing too
+
+update manga set updated_at = coalesce(created_at, now()) where updated_at is null;
+
+alter table manga alter column updated_at set not null;
@@ -0,0 +1,86 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ChapterNumberTests {
+
+	@Test
+	void numbersSortByValue() {
+		assertTrue(ChapterNumber.encode("12") < ChapterNumber.encode("12.5"));
+		assertTrue(ChapterNumber.encode("12.5") < ChapterNumber.encode("100.1"));
+		assertTrue(ChapterNumber.encode("9.99") < ChapterNumber.encode("10"));
+		assertEquals(ChapterNumber.encode("5"), ChapterNumber.encode("005.0"));
+		assertEquals(ChapterNumber.encode("0.5"), ChapterNumber.encode(".5"));
+		assertEquals(0, ChapterNumber.encode("0"));
+	}
+
+	@Test
+	void labelsSortBelowNumbersAndAreOrdered() {
+		List<String> labels = new ArrayList<>(List.of("2", "Special", "1", "extra", "Extra B", "Extra A", "0"));
+		labels.sort(ChapterNumber.ORDER);
+		assertEquals(List.of("extra", "Extra A", "Extra B", "Special", "0", "1", "2"), labels);
+
+		// too precise, too large, signs and exponents are labels, never exceptions
+		for (String label : List.of("1.23456", "123456789012345", "-1", "1e3", ".", "1.2.3", "１２")) {
+			assertTrue(ChapterNumber.isLabel(ChapterNumber.encode(label)), label);
+		}
+		// as many integer digits as numeric(12, 4) holds, leading zeros don't count
+		assertTrue(ChapterNumber.isNumber(ChapterNumber.encode("99999999")));
+		assertTrue(ChapterNumber.isNumber(ChapterNumber.encode("0012345678.5")));
+		assertTrue(ChapterNumber.isLabel(ChapterNumber.encode("100000000")));
+		assertTrue(ChapterNumber.isLabel(ChapterNumber.encode("123456789.5")));
+		assertEquals(ChapterNumber.ABSENT, ChapterNumber.encode(null));
+		assertEquals(ChapterNumber.ABSENT, ChapterNumber.encode(" "));
+	}
+
+	@Test
+	void formatAndBigDecimalGiveTheValueBack() {
+		for (String label : List.of("0", "12", "12.5", "100.01", "7.0001", "99999999.9999")) {
+			long key = ChapterNumber.encode(label);
+			assertEquals(label, ChapterNumber.format(key));
+			assertEquals(0, new BigDecimal(label).compareTo(ChapterNumber.toBigDecimal(key)));
+		}
+		assertNull(ChapterNumber.toBigDecimal(ChapterNumber.encode("Extra")));
+	}
+
+	@Test
+	void indexKeepsDistinctChaptersInOrder() {
+		ChapterIndex index = ChapterIndex.of(List.of("10", "Extra", "2", "012", "10.5", "2", "Oneshot", "1"));
+
+		assertEquals(7, index.size());
+		assertEquals(5, index.numbered());
+		assertEquals(List.of("Extra", "Oneshot", "1", "2", "10", "10.5", "012"), labels(index));
+		// the label is kept as mangadex wrote it so it can be asked for again
+		assertEquals("012", index.maxNumbered());
+		assertTrue(index.contains("Oneshot"));
+		assertTrue(index.contains("2.0"));
+		assertFalse(index.contains("Special"));
+	}
+
+	@Test
+	void behindCountsNumberedChaptersAfterLastRead() {
+		ChapterIndex index = ChapterIndex.of(List.of("1", "2", "2.5", "3", "Extra"));
+
+		assertEquals(2, index.behind("2"));
+		assertEquals(3, index.behind("1.5"));
+		assertEquals(0, index.behind("3"));
+		assertEquals(4, index.behind(null));
+		assertEquals(4, index.behind("Extra"));
+		assertNull(ChapterIndex.EMPTY.maxNumbered());
+	}
+
+	private static List<String> labels(ChapterIndex index) {
+		List<String> out = new ArrayList<>();
+		for (int i = 0; i < index.size(); i++) out.add(index.label(i));
+		return out;
+	}
+}
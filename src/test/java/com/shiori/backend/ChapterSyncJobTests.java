@@ -0,0 +1,52 @@
+package com.shiori.backend;
+
+import static com.shiori.backend.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class ChapterSyncJobTests {
+
+	// slots other instances hold
+	private final Set<Integer> taken = Set.of(0, 1, 3);
+	private final List<String> calls = new ArrayList<>();
+	private final ChapterSyncProperties props = new ChapterSyncProperties();
+
+	private ChapterSyncJob job() {
+		props.setSlots(4);
+		return new ChapterSyncJob(
+				stub(MangaRepository.class, (name, args) -> switch (name) {
+					case "findSyncTargets" -> {
+						calls.add("sync " + args[1]);
+						yield List.of();
+					}
+					default -> throw new UnsupportedOperationException(name);
+				}),
+				stub(MangaSyncStateRepository.class, (name, args) -> switch (name) {
+					case "findByMangaIdInAndLang" -> List.of();
+					default -> throw new UnsupportedOperationException(name);
+				}),
+				stub(SyncLeaseRepository.class, (name, args) -> switch (name) {
+					case "tryAcquire" -> taken.contains((Integer) args[0]) ? 0 : 1;
+					case "release" -> {
+						calls.add("release " + args[0]);
+						yield 1;
+					}
+					default -> throw new UnsupportedOperationException(name);
+				}),
+				null, null, props);
+	}
+
+	@Test
+	void aTickSyncsTheFirstFreeSlotAndGivesItBack() {
+		ChapterSyncJob job = job();
+		// instances start at a random slot, whichever it is the only free one is found
+		for (int tick = 0; tick < 4; tick++) job.tick();
+
+		assertEquals(List.of("sync 2", "release 2", "sync 2", "release 2", "sync 2", "release 2", "sync 2", "release 2"), calls);
+	}
+}
@@ -0,0 +1,153 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.shiori.backend.MangaDexService.Served;
+import com.shiori.backend.dto.ChapterEvent;
+import com.shiori.backend.dto.ChapterResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ChapterWatchServiceTests {
+
+	private static final String MANGA = "a1b2c3d4-0000-4000-8000-000000000001";
+
+	private final AtomicLong now = new AtomicLong();
+	private final AtomicInteger lookups = new AtomicInteger();
+	// what the latest lookup answers per title
+	private final Map<String, Served<ChapterResult>> latest = new ConcurrentHashMap<>();
+	private final ChapterWatchProperties props = new ChapterWatchProperties();
+	private final ChapterWatchService service = new ChapterWatchService((id, lang) -> {
+		lookups.incrementAndGet();
+		return latest.get(id);
+	}, props, new SimpleMeterRegistry(), now::get);
+
+	@AfterEach
+	void shutdown() {
+		service.shutdown();
+	}
+
+	private static Served<ChapterResult> chapter(String id, String number) {
+		return Served.fresh(new ChapterResult(id, number, null, null, "2024-05-01T10:00:00+00:00", null));
+	}
+
+	// one round of checks, returns once every watched title was looked up
+	private void checkAll(int titles) throws InterruptedException {
+		int target = lookups.get() + titles;
+		service.checkAll();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (lookups.get() < target && System.nanoTime() < deadline) Thread.sleep(1);
+		// the lookup returned, give the rest of the check a moment
+		Thread.sleep(20);
+	}
+
+	@Test
+	void oneCheckFansOutToEverySubscriber() throws InterruptedException {
+		latest.put(MANGA, chapter("c-375", "375"));
+		BlockingQueue<ChapterEvent> first = new LinkedBlockingQueue<>();
+		BlockingQueue<ChapterEvent> second = new LinkedBlockingQueue<>();
+		service.subscribe(List.of(MANGA), "en", first::add);
+		service.subscribe(List.of(MANGA), "en", second::add);
+
+		// the first check only learns what is already out
+		checkAll(1);
+		assertNull(first.poll(50, TimeUnit.MILLISECONDS));
+
+		latest.put(MANGA, chapter("c-376", "376"));
+		checkAll(1);
+
+		ChapterEvent event = first.poll(1, TimeUnit.SECONDS);
+		assertEquals("c-376", event.chapter().chapterId());
+		assertEquals(event, second.poll(1, TimeUnit.SECONDS));
+		assertEquals(2, lookups.get());
+	}
+
+	@Test
+	void unchangedStaleOrOlderAnswersAreNotNews() throws InterruptedException {
+		latest.put(MANGA, chapter("c-375", "375"));
+		BlockingQueue<ChapterEvent> events = new LinkedBlockingQueue<>();
+		service.subscribe(List.of(MANGA), "en", events::add);
+		checkAll(1);
+
+		checkAll(1);
+		latest.put(MANGA, new Served<>(new ChapterResult("c-376", "376", null, null, null, null), Instant.EPOCH));
+		checkAll(1);
+		latest.put(MANGA, chapter("c-374", "374"));
+		checkAll(1);
+
+		assertNull(events.poll(50, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void idleTitlesKeepTheirStateForReconnects() throws InterruptedException {
+		latest.put(MANGA, chapter("c-375", "375"));
+		ChapterWatchService.Subscription subscription = service.subscribe(List.of(MANGA), "en", e -> {});
+		checkAll(1);
+		subscription.close();
+		subscription.close();
+
+		// a chapter comes out while nobody is connected
+		latest.put(MANGA, chapter("c-376", "376"));
+		service.checkAll();
+		assertEquals(1, service.watching());
+
+		BlockingQueue<ChapterEvent> events = new LinkedBlockingQueue<>();
+		service.subscribe(List.of(MANGA), "en", events::add);
+		checkAll(1);
+		ChapterEvent event = events.poll(1, TimeUnit.SECONDS);
+		assertEquals("c-376", event.chapter().chapterId());
+		assertEquals(List.of(event), service.since(List.of(MANGA), "en", event.id() - 1));
+		assertTrue(service.since(List.of(MANGA), "en", event.id()).isEmpty());
+	}
+
+	@Test
+	void titlesIdleLongerThanIdleForAreDropped() throws InterruptedException {
+		latest.put(MANGA, chapter("c-375", "375"));
+		service.subscribe(List.of(MANGA), "en", e -> {}).close();
+
+		now.addAndGet(props.getIdleFor().minus(Duration.ofSeconds(1)).toNanos());
+		service.checkAll();
+		assertEquals(1, service.watching());
+
+		now.addAndGet(Duration.ofSeconds(2).toNanos());
+		service.checkAll();
+		assertEquals(0, service.watching());
+		assertEquals(0, lookups.get());
+	}
+
+	@Test
+	void heartbeatsRunOnTheirOwnTimer() throws InterruptedException {
+		props.setHeartbeat(Duration.ofMillis(20));
+		CountDownLatch beats = new CountDownLatch(3);
+		service.subscribe(List.of(MANGA), "en", new ChapterWatchService.Subscriber() {
+			@Override
+			public void onChapter(ChapterEvent event) {}
+
+			@Override
+			public void onHeartbeat() {
+				beats.countDown();
+			}
+		});
+		// no spring scheduler here, the service keeps time itself
+		service.start();
+
+		assertTrue(beats.await(2, TimeUnit.SECONDS));
+	}
+}
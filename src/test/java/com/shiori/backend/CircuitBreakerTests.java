@@ -0,0 +1,85 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.shiori.backend.CircuitBreaker.State;
+
+class CircuitBreakerTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final AtomicLong now = new AtomicLong(1_000 * SECOND);
+	// opens at half of the last 4 calls failing, once 4 are in, for 10s, 2 trial calls
+	private final CircuitBreaker breaker = new CircuitBreaker(0.5, 4, 4, 10 * SECOND, 2, now::get);
+
+	private void call(boolean fails) {
+		assertTrue(breaker.tryAcquire());
+		if (fails) breaker.onFailure(); else breaker.onSuccess();
+	}
+
+	@Test
+	void opensOnlyOnceEnoughCallsFailed() {
+		call(true);
+		call(true);
+		assertEquals(State.CLOSED, breaker.state());
+		call(false);
+		call(true);
+		assertEquals(State.OPEN, breaker.state());
+		assertFalse(breaker.tryAcquire());
+		assertEquals(10 * SECOND, breaker.remainingOpenNanos());
+	}
+
+	@Test
+	void oldOutcomesLeaveTheWindow() {
+		call(true);
+		call(false);
+		call(false);
+		call(false);
+		// the first failure is pushed out, 1 of 4 failing stays closed
+		call(true);
+		assertEquals(State.CLOSED, breaker.state());
+	}
+
+	@Test
+	void halfOpenClosesAfterAllTrialsPass() {
+		for (int i = 0; i < 4; i++) call(true);
+		now.addAndGet(10 * SECOND);
+
+		assertEquals(State.HALF_OPEN, breaker.state());
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		// only two trials at a time
+		assertFalse(breaker.tryAcquire());
+		breaker.onSuccess();
+		breaker.onSuccess();
+		assertEquals(State.CLOSED, breaker.state());
+	}
+
+	@Test
+	void failedTrialOpensAgain() {
+		for (int i = 0; i < 4; i++) call(true);
+		now.addAndGet(10 * SECOND);
+
+		call(true);
+		assertEquals(State.OPEN, breaker.state());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	@Test
+	void ignoredTrialGivesItsSlotBack() {
+		for (int i = 0; i < 4; i++) call(true);
+		now.addAndGet(10 * SECOND);
+
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		breaker.onIgnored();
+		assertTrue(breaker.tryAcquire());
+	}
+}
@@ -0,0 +1,105 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CoverCacheTests {
+
+	private static final String MANGA = "a1b2c3d4-0000-4000-8000-000000000001";
+
+	@TempDir
+	Path dir;
+
+	private final AtomicInteger fetches = new AtomicInteger();
+
+	private Response respond(int status, String body) {
+		Request request = Request.create(Request.HttpMethod.GET, "https://uploads.mangadex.org", Map.of(), null,
+				StandardCharsets.UTF_8, null);
+		return Response.builder().status(status).request(request).headers(Map.of())
+				.body(body, StandardCharsets.UTF_8).build();
+	}
+
+	private final MangaDexCoverClient client = (mangaId, fileName) -> {
+		fetches.incrementAndGet();
+		return fileName.startsWith("missing") ? respond(404, "") : respond(200, "bytes of " + fileName);
+	};
+
+	private CoverCache cache(long maxBytes) throws Exception {
+		CoverCacheProperties props = new CoverCacheProperties();
+		props.setDir(dir);
+		props.setMaxSize(DataSize.ofBytes(maxBytes));
+		return new CoverCache(client, new SingleFlight(new SimpleMeterRegistry()), props);
+	}
+
+	@Test
+	void fetchesOnceAndSurvivesRestart() throws Exception {
+		CoverCache.Cover first = cache(1024).get(MANGA, "cover.jpg");
+		assertArrayEquals("bytes of cover.jpg".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(first.file()));
+
+		CoverCache.Cover again = cache(1024).get(MANGA, "cover.jpg");
+		assertEquals(first, again);
+		assertEquals(1, fetches.get());
+	}
+
+	@Test
+	void identicalBytesAreStoredOnce() throws Exception {
+		CoverCache cache = cache(1024);
+		CoverCache.Cover a = cache.get(MANGA, "cover.jpg");
+		CoverCache.Cover b = cache.get("a1b2c3d4-0000-4000-8000-000000000002", "cover.jpg");
+
+		assertEquals(a.file(), b.file());
+		assertEquals(a.size(), cache.size());
+	}
+
+	@Test
+	void leastRecentlyServedIsEvictedAndRefetched() throws Exception {
+		// each body is 18 bytes, room for two
+		CoverCache cache = cache(40);
+		CoverCache.Cover a = cache.get(MANGA, "aaaaa.jpg");
+		cache.get(MANGA, "bbbbb.jpg");
+		cache.get(MANGA, "aaaaa.jpg");
+		CoverCache.Cover c = cache.get(MANGA, "ccccc.jpg");
+
+		assertTrue(Files.exists(a.file()));
+		assertTrue(Files.exists(c.file()));
+		assertEquals(36, cache.size());
+
+		// b was evicted for c, fetching it again pushes out a
+		cache.get(MANGA, "bbbbb.jpg");
+		assertEquals(4, fetches.get());
+		assertFalse(Files.exists(a.file()));
+		assertTrue(Files.exists(c.file()));
+	}
+
+	@Test
+	void upstreamMissIsNotFound() throws Exception {
+		ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> cache(1024).get(MANGA, "missing.jpg"));
+		assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+	}
+
+	@Test
+	void mangadexUrlsPointAtTheProxy() {
+		assertEquals("/api/covers/" + MANGA + "/cover.jpg.256.jpg",
+				CoverCache.localUrl("https://uploads.mangadex.org/covers/" + MANGA + "/cover.jpg.256.jpg"));
+		assertEquals("https://example.com/x.jpg", CoverCache.localUrl("https://example.com/x.jpg"));
+	}
+}
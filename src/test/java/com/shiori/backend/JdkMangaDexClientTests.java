@@ -0,0 +1,84 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import feign.Response;
+import feign.RetryableException;
+
+class JdkMangaDexClientTests {
+
+	private HttpServer server;
+	private final AtomicReference<String> requested = new AtomicReference<>();
+	private JdkMangaDexClient client;
+
+	@BeforeEach
+	void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			requested.set(exchange.getRequestURI().getRawPath() + "?" + exchange.getRequestURI().getRawQuery());
+			byte[] body = "{\"result\":\"ok\",\"data\":[]}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("X-RateLimit-Remaining", "4");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+
+		MangaDexHttpProperties props = new MangaDexHttpProperties();
+		props.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+		props.setReadTimeout(Duration.ofSeconds(5));
+		client = new JdkMangaDexClient(props);
+	}
+
+	@AfterEach
+	void stop() {
+		server.stop(0);
+	}
+
+	@Test
+	void encodesParamsAndSkipsNulls() throws IOException {
+		try (Response response = client.feedSince("abc", "en", 100, 0, "asc", null, 0, "scanlation_group", "safe")) {
+			assertEquals(200, response.status());
+			assertEquals(List.of("4"), List.copyOf(response.headers().get("x-ratelimit-remaining")));
+			assertEquals("{\"result\":\"ok\",\"data\":[]}", new String(response.body().asInputStream().readAllBytes(), StandardCharsets.UTF_8));
+		}
+		assertEquals("/manga/abc/feed?translatedLanguage%5B%5D=en&limit=100&offset=0&order%5BreadableAt%5D=asc"
+				+ "&includeFuturePublishAt=0&includes%5B%5D=scanlation_group&contentRating%5B%5D=safe", requested.get());
+
+		client.search("one piece", 5, "cover_art", "safe").close();
+		assertEquals("/manga?title=one%20piece&limit=5&includes%5B%5D=cover_art&contentRating%5B%5D=safe", requested.get());
+
+		// lists repeat the param
+		client.byIds(List.of("a", "b"), 2, "cover_art", List.of("safe", "erotica")).close();
+		assertEquals("/manga?ids%5B%5D=a&ids%5B%5D=b&limit=2&includes%5B%5D=cover_art"
+				+ "&contentRating%5B%5D=safe&contentRating%5B%5D=erotica", requested.get());
+	}
+
+	@Test
+	void idsStayInTheirPathSegment() {
+		client.aggregate("abc def?limit=1/x", "en").close();
+		assertEquals("/manga/abc%20def%3Flimit%3D1%2Fx/aggregate?translatedLanguage%5B%5D=en", requested.get());
+	}
+
+	@Test
+	void connectionFailureIsRetryable() {
+		server.stop(0);
+		assertThrows(RetryableException.class, () -> client.aggregate("abc", "en"));
+	}
+}
@@ -0,0 +1,85 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shiori.backend.dto.ChapterResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class JsonResponsesTests {
+
+	private final JsonResponses responses = new JsonResponses(new ObjectMapper(), new SimpleMeterRegistry());
+
+	private static List<ChapterResult> feed(int chapters) {
+		List<ChapterResult> feed = new ArrayList<>();
+		for (int i = chapters; i > 0; i--) {
+			feed.add(new ChapterResult("c-" + i, Integer.toString(i), null, null, "2024-05-01T10:00:00+00:00", "Scans"));
+		}
+		return feed;
+	}
+
+	@Test
+	void theSameCachedValueIsRenderedOnce() {
+		List<ChapterResult> cached = feed(3);
+		JsonResponses.Rendered first = responses.hot(cached);
+
+		assertSame(first, responses.hot(cached));
+		// an equal value from somewhere else is rendered again, with the same etag
+		JsonResponses.Rendered copy = responses.hot(feed(3));
+		assertNotSame(first, copy);
+		assertEquals(first.etag(), copy.etag());
+		assertNotEquals(first.etag(), responses.hot(feed(4)).etag());
+		assertTrue(first.etag().startsWith("W/\""));
+	}
+
+	@Test
+	void largeBodiesAreGzippedOnceForClientsThatTakeIt() throws IOException {
+		JsonResponses.Rendered body = responses.hot(feed(50));
+		assertTrue(body.json().length >= JsonResponses.GZIP_MIN_BYTES);
+
+		ResponseEntity<byte[]> gzipped = responses.ok(ResponseEntity.ok(), body, "gzip, deflate, br");
+		assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertEquals(body.etag(), gzipped.getHeaders().getETag());
+		assertEquals(HttpHeaders.ACCEPT_ENCODING, gzipped.getHeaders().getFirst(HttpHeaders.VARY));
+		assertSame(gzipped.getBody(), responses.ok(ResponseEntity.ok(), body, "gzip").getBody());
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+			assertArrayEquals(body.json(), in.readAllBytes());
+		}
+
+		ResponseEntity<byte[]> plain = responses.ok(ResponseEntity.ok(), body, null);
+		assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		assertSame(body.json(), plain.getBody());
+		// small bodies are never worth it
+		JsonResponses.Rendered small = responses.hot(feed(1));
+		assertSame(small.json(), responses.ok(ResponseEntity.ok(), small, "gzip").getBody());
+	}
+
+	@Test
+	void acceptEncodingHonoursQualityZero() {
+		assertTrue(JsonResponses.acceptsGzip("gzip"));
+		assertTrue(JsonResponses.acceptsGzip("br;q=1.0, GZIP;q=0.5"));
+		assertTrue(JsonResponses.acceptsGzip("*"));
+		assertFalse(JsonResponses.acceptsGzip("gzip;q=0"));
+		assertFalse(JsonResponses.acceptsGzip("*, gzip;q=0"));
+		assertFalse(JsonResponses.acceptsGzip("identity"));
+		assertFalse(JsonResponses.acceptsGzip(null));
+	}
+}
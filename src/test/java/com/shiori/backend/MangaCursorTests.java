@@ -0,0 +1,28 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class MangaCursorTests {
+
+	@Test
+	void roundTrips() {
+		MangaCursor cursor = new MangaCursor(Instant.parse("2024-05-01T10:00:00.123456Z"), 42L);
+		assertEquals(cursor, MangaCursor.decode(cursor.encode()));
+	}
+
+	@Test
+	void anythingElseIsABadRequest() {
+		// empty, not base64, no separator, no time, no id
+		for (String bad : new String[] { "", "not base64!", "bm8gc2VwYXJhdG9y", "bnVsbHw0Mg", "MjAyNC0wNS0wMVQxMDowMDowMFp8eA" }) {
+			ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> MangaCursor.decode(bad), bad);
+			assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+		}
+	}
+}
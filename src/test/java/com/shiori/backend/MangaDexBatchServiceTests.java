@@ -0,0 +1,98 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.shiori.backend.dto.ChapterResult;
+import com.shiori.backend.dto.LatestResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+class MangaDexBatchServiceTests {
+
+	private final AtomicInteger lookups = new AtomicInteger();
+	private volatile Duration lookupTakes = Duration.ofMillis(200);
+	private final MangaDexBatchProperties props = new MangaDexBatchProperties();
+
+	// only the latest lookup is used, it takes lookupTakes
+	private final MangaDexService mdService = new MangaDexService(null, null, null, null, null,
+			new MangaDexCacheProperties(), new MangaDexDeltaProperties(), null, new MangaDexResilienceProperties(),
+			new SimpleMeterRegistry(), ObservationRegistry.NOOP) {
+		@Override
+		public ChapterResult getLatestNumberedChapter(String mangaId, String lang) {
+			lookups.incrementAndGet();
+			try {
+				Thread.sleep(lookupTakes);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new ChapterResult("c-" + mangaId, "1", null, null, null, null);
+		}
+	};
+
+	private static List<String> ids(int n) {
+		return IntStream.rangeClosed(1, n).mapToObj(i -> "m-" + i).toList();
+	}
+
+	@Test
+	void itemTimeStartsOnceItHasASlot() {
+		// each item waits for the ones ahead of it longer than its own timeout, but only the slot wait counts against that
+		props.setConcurrency(1);
+		props.setItemTimeout(Duration.ofMillis(300));
+		List<LatestResult> results = new MangaDexBatchService(mdService, null, props).latest(ids(3), "en");
+
+		assertEquals(3, results.size());
+		for (LatestResult r : results) assertNull(r.error(), r.error());
+	}
+
+	@Test
+	void slotWaitHasItsOwnBound() {
+		props.setConcurrency(1);
+		props.setSlotTimeout(Duration.ofMillis(100));
+		lookupTakes = Duration.ofMillis(400);
+		List<LatestResult> results = new MangaDexBatchService(mdService, null, props).latest(ids(2), "en");
+
+		assertEquals(1, results.stream().filter(r -> r.error() == null).count());
+		assertTrue(results.stream().anyMatch(r -> "Timed out waiting for an upstream slot".equals(r.error())));
+	}
+
+	@Test
+	void clientGoingAwayCancelsTheRest() {
+		props.setConcurrency(1);
+		lookupTakes = Duration.ofMillis(50);
+		MangaDexBatchService batch = new MangaDexBatchService(mdService, null, props);
+		UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> batch.latest(ids(20), "en", result -> {
+			throw new UncheckedIOException(new IOException("Broken pipe"));
+		}));
+
+		assertEquals("Broken pipe", e.getCause().getMessage());
+		// the item that failed to write and at most the one that had the slot then
+		assertTrue(lookups.get() <= 2, "lookups " + lookups.get());
+	}
+
+	@Test
+	void clientGoingAwayWhileItemsAreStillSubmittedIsNotAServerError() {
+		// the first write fails long before a batch this size is all submitted
+		props.setConcurrency(64);
+		lookupTakes = Duration.ZERO;
+		MangaDexBatchService batch = new MangaDexBatchService(mdService, null, props);
+		UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> batch.latest(ids(20_000), "en", result -> {
+			throw new UncheckedIOException(new IOException("Broken pipe"));
+		}));
+
+		assertEquals("Broken pipe", e.getCause().getMessage());
+		assertTrue(lookups.get() < 20_000, "lookups " + lookups.get());
+	}
+}
@@ -0,0 +1,101 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.shiori.backend.dto.ChapterResult;
+import com.shiori.backend.dto.MangaSearchResult;
+
+class MangaDexParserTests {
+
+	private final MangaDexParser parser = new MangaDexParser();
+
+	private InputStream fixture(String name) {
+		return getClass().getResourceAsStream("/mangadex/" + name);
+	}
+
+	private InputStream json(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void searchResultsPickTitleAndCover() throws IOException {
+		List<MangaSearchResult> results = parser.readSearchResults(fixture("search.json"));
+
+		assertEquals(3, results.size());
+		assertEquals(new MangaSearchResult("a1b2c3d4-0000-4000-8000-000000000001", "Berserk", 1989,
+				"https://uploads.mangadex.org/covers/a1b2c3d4-0000-4000-8000-000000000001/cover.jpg",
+				List.of("ベルセルク", "Beruseruku")), results.get(0));
+		// alt en wins over alt ja, cover_art without attributes has no url
+		assertEquals(new MangaSearchResult("a1b2c3d4-0000-4000-8000-000000000002", "Solo Leveling", null, null,
+				List.of("나 혼자만 레벨업", "俺だけレベルアップな件")), results.get(1));
+		// any textual alt as a last resort
+		assertEquals("전독시", results.get(2).title());
+		assertEquals(2020, results.get(2).year());
+	}
+
+	@Test
+	void metadataCarriesStatus() throws IOException {
+		List<MangaDexParser.MangaMetadata> results = parser.readMangaMetadata(fixture("search.json"));
+
+		assertEquals(3, results.size());
+		assertEquals("Berserk", results.get(0).manga().title());
+		assertEquals(Manga.MangaStatus.ONGOING, results.get(0).status());
+		assertNull(results.get(1).status());
+	}
+
+	@Test
+	void dumpIsReadAsArrayOrNdjson() throws IOException {
+		String first = "{\"id\":\"m-1\",\"attributes\":{\"title\":{\"en\":\"Berserk\"},\"status\":\"completed\"},"
+				+ "\"relationships\":[{\"type\":\"cover_art\",\"attributes\":{\"fileName\":\"c.jpg\"}}]}";
+		String second = "{\"id\":\"m-2\",\"attributes\":{\"title\":{\"ja-ro\":\"Monster\"},\"year\":1994}}";
+
+		List<MangaDexParser.MangaMetadata> lines = new ArrayList<>();
+		parser.readMangaDump(json(first + "\n" + second + "\n"), lines::add);
+		List<MangaDexParser.MangaMetadata> array = new ArrayList<>();
+		parser.readMangaDump(json("[" + first + ", 7, " + second + "]"), array::add);
+
+		assertEquals(lines, array);
+		assertEquals(2, lines.size());
+		assertEquals(new MangaSearchResult("m-1", "Berserk", null, "https://uploads.mangadex.org/covers/m-1/c.jpg", List.of()),
+				lines.get(0).manga());
+		assertEquals(Manga.MangaStatus.COMPLETED, lines.get(0).status());
+		assertEquals(1994, lines.get(1).manga().year());
+	}
+
+	@Test
+	void feedChaptersUseAttributesAndFirstGroup() throws IOException {
+		List<ChapterResult> chapters = parser.readChapters(fixture("feed.json"));
+
+		assertEquals(3, chapters.size());
+		assertEquals(new ChapterResult("c0000000-0000-4000-8000-000000000003", "375", "Falcon", "42",
+				"2024-05-01T10:00:00+00:00", "Band of the Hawk Scans"), chapters.get(0));
+		// blank readableAt falls back to createdAt
+		assertEquals(new ChapterResult("c0000000-0000-4000-8000-000000000002", null, "Oneshot", null,
+				"2024-04-01T10:00:00+00:00", null), chapters.get(1));
+		// only the first scanlation group is looked at
+		assertNull(chapters.get(2).groupName());
+	}
+
+	@Test
+	void aggregateMaxSkipsNonNumericAndArrayChapters() throws IOException {
+		assertEquals("375", parser.readMaxChapter(fixture("aggregate.json")));
+		assertNull(parser.readMaxChapter(json("{\"result\":\"ok\",\"volumes\":[]}")));
+	}
+
+	@Test
+	void missingDataIsEmpty() throws IOException {
+		assertTrue(parser.readSearchResults(json("{\"result\":\"error\",\"errors\":[{\"status\":400}]}")).isEmpty());
+		assertTrue(parser.readChapters(json("{\"data\":{}}")).isEmpty());
+	}
+}
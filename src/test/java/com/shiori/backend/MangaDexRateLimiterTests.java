@@ -0,0 +1,67 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MangaDexRateLimiterTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final AtomicLong now = new AtomicLong(1_000 * SECOND);
+
+	private MangaDexRateLimiter limiter(double rate, int burst, Duration maxWait) {
+		MangaDexRateLimitProperties props = new MangaDexRateLimitProperties();
+		props.setPermitsPerSecond(rate);
+		props.setBurst(burst);
+		props.setMaxWait(maxWait);
+		return new MangaDexRateLimiter(props, new SimpleMeterRegistry(), now::get);
+	}
+
+	@Test
+	void burstThenEvenlySpacedSlots() {
+		MangaDexRateLimiter limiter = limiter(5, 2, Duration.ofSeconds(5));
+
+		assertEquals(0, limiter.reserve(now.get()));
+		assertEquals(0, limiter.reserve(now.get()));
+		// burst used up, callers queue 200ms apart in arrival order
+		assertEquals(0, limiter.reserve(now.get()));
+		assertEquals(SECOND / 5, limiter.reserve(now.get()));
+		assertEquals(2 * SECOND / 5, limiter.reserve(now.get()));
+	}
+
+	@Test
+	void slotBeyondMaxWaitIsShed() {
+		MangaDexRateLimiter limiter = limiter(1, 0, Duration.ofMillis(1500));
+
+		assertEquals(0, limiter.reserve(now.get()));
+		assertEquals(SECOND, limiter.reserve(now.get()));
+		assertTrue(limiter.reserve(now.get()) < 0);
+	}
+
+	@Test
+	void tooManyRequestsPausesAndHalvesRate() {
+		MangaDexRateLimiter limiter = limiter(4, 0, Duration.ofSeconds(30));
+
+		limiter.onResponse(429, Map.of("Retry-After", List.of("3")));
+
+		assertEquals(2, limiter.currentRate());
+		assertEquals(3 * SECOND, limiter.reserve(now.get()));
+		// the next slot follows at the halved rate
+		assertEquals(3 * SECOND + SECOND / 2, limiter.reserve(now.get()));
+
+		for (int i = 0; i < 100; i++) {
+			limiter.onResponse(200, Map.of());
+		}
+		assertEquals(4, limiter.currentRate());
+	}
+}
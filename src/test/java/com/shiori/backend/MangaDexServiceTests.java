@@ -0,0 +1,446 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.shiori.backend.MangaDexService.Served;
+import com.shiori.backend.dto.ChapterResult;
+
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+class MangaDexServiceTests {
+
+	private static final String MANGA = "a1b2c3d4-0000-4000-8000-000000000001";
+
+	private final AtomicInteger aggregates = new AtomicInteger();
+	private final AtomicInteger deltas = new AtomicInteger();
+	private final AtomicInteger feeds = new AtomicInteger();
+	private final List<List<String>> byIds = new CopyOnWriteArrayList<>();
+	// languages and offset of every full feed page asked for
+	private final List<String> pages = new CopyOnWriteArrayList<>();
+	private volatile int feedLength;
+	private volatile int uploadedDuringWalk;
+	private volatile String delta = chapters();
+	// statuses the feed answers with in order, 200 once they run out
+	private final Deque<Integer> feedStatuses = new ConcurrentLinkedDeque<>();
+	// when set, a feed call waits here until every caller of the test is inside one
+	private volatile CountDownLatch feedGate;
+	private final AtomicBoolean gateTimedOut = new AtomicBoolean();
+
+	private static String chapter(String id, String number, String readableAt) {
+		return "{\"id\":\"" + id + "\",\"type\":\"chapter\",\"attributes\":{\"chapter\":\"" + number
+				+ "\",\"translatedLanguage\":\"en\",\"readableAt\":\"" + readableAt + "\"},\"relationships\":[]}";
+	}
+
+	private static String chapters(String... items) {
+		return "{\"result\":\"ok\",\"data\":[" + String.join(",", items) + "]}";
+	}
+
+	private static byte[] fixture(String name) {
+		try (InputStream in = MangaDexServiceTests.class.getResourceAsStream("/mangadex/" + name)) {
+			return in.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Response ok(byte[] body) {
+		return respond(200, body);
+	}
+
+	private static Response respond(int status, byte[] body) {
+		Request request = Request.create(Request.HttpMethod.GET, "https://api.mangadex.org", Map.of(), null,
+				StandardCharsets.UTF_8, null);
+		return Response.builder().status(status).request(request).headers(Map.of()).body(body).build();
+	}
+
+	private final MangaDexClient client = new MangaDexClient() {
+		@Override
+		public Response search(String title, int limit, String includes, String contentRating) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Response byIds(List<String> ids, int limit, String includes, List<String> contentRating) {
+			byIds.add(ids);
+			return ok(fixture("search.json"));
+		}
+
+		@Override
+		public Response feed(String id, String translatedLanguage, int limit, String orderReadableAt, String includes,
+				String contentRating) {
+			feeds.incrementAndGet();
+			awaitGate();
+			Integer status = feedStatuses.poll();
+			if (status != null && status != 200) return respond(status, new byte[0]);
+			return ok(fixture("feed.json"));
+		}
+
+		@Override
+		public Response feedSince(String id, String translatedLanguage, int limit, int offset, String orderReadableAt,
+				String publishAtSince, int includeFuturePublishAt, String includes, String contentRating) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Response feedPage(String id, List<String> translatedLanguages, int limit, int offset,
+				String orderReadableAt, String includes, String contentRating) {
+			pages.add(translatedLanguages + "@" + offset);
+			// a chapter uploaded while the walk is under way pushes everything one place down
+			int shift = pages.size() > 1 ? uploadedDuringWalk : 0;
+			List<String> items = new ArrayList<>();
+			for (int i = offset - shift; i < Math.min(offset - shift + limit, feedLength); i++) {
+				items.add(chapter("c-" + (feedLength - i), Integer.toString(feedLength - i), "2024-05-01T10:00:00+00:00"));
+			}
+			return ok(chapters(items.toArray(String[]::new)).getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public Response feedUpdatedSince(String id, String translatedLanguage, int limit, String orderReadableAt,
+				String updatedAtSince, String includes, String contentRating) {
+			deltas.incrementAndGet();
+			return ok(delta.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public Response aggregate(String id, String translatedLanguage) {
+			aggregates.incrementAndGet();
+			return ok(fixture("aggregate.json"));
+		}
+
+		@Override
+		public Response chapterByNumber(String mangaId, String chapter, String translatedLanguage, String order,
+				int limit, String contentRating, String includes) {
+			return ok(fixture("feed.json"));
+		}
+	};
+
+	private void awaitGate() {
+		CountDownLatch gate = feedGate;
+		if (gate == null) return;
+		gate.countDown();
+		try {
+			if (!gate.await(2, TimeUnit.SECONDS)) gateTimedOut.set(true);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private final MangaDexResilienceProperties resilienceProps = new MangaDexResilienceProperties();
+	private final MangaDexRateLimitProperties rateLimitProps = new MangaDexRateLimitProperties();
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private MangaDexService service() {
+		ChapterSyncProperties sync = new ChapterSyncProperties();
+		sync.setServeLocal(false);
+		return service(new ChapterService(null, null, null, sync, null));
+	}
+
+	private MangaDexService service(ChapterService chapters) {
+		ObservationRegistry observations = ObservationRegistry.create();
+		observations.observationConfig().observationHandler(new DefaultMeterObservationHandler(registry));
+		// every lookup misses the response caches so each one goes to the stub client
+		MangaDexCacheProperties.Tier uncached = new MangaDexCacheProperties.Tier(Duration.ofNanos(1), Duration.ZERO,
+				DataSize.ofMegabytes(1));
+		MangaDexCacheProperties cacheProps = new MangaDexCacheProperties();
+		cacheProps.setFeed(uncached);
+		cacheProps.setAggregate(uncached);
+		cacheProps.setLatest(uncached);
+		resilienceProps.setBaseBackoff(Duration.ofMillis(1));
+		resilienceProps.setMaxBackoff(Duration.ofMillis(5));
+		MangaDexDeltaProperties deltaProps = new MangaDexDeltaProperties();
+		deltaProps.setLimit(2);
+		return new MangaDexService(client, new SingleFlight(registry),
+				new MangaDexRateLimiter(rateLimitProps, registry),
+				chapters, new TrigramTitleIndex(new TitleSearchProperties()),
+				cacheProps, deltaProps, new MangaDexResilience(resilienceProps, registry), resilienceProps, registry,
+				observations);
+	}
+
+	@Test
+	void metadataIsOneCallPerHundredIds() {
+		List<String> ids = List.of(MANGA, "a1b2c3d4-0000-4000-8000-000000000002", "a1b2c3d4-0000-4000-8000-000000000003");
+		List<MangaDexParser.MangaMetadata> found = service().metadata(ids);
+
+		assertEquals(3, found.size());
+		assertEquals(Manga.MangaStatus.ONGOING, found.get(0).status());
+		assertEquals(List.of(ids), byIds);
+		assertThrows(IllegalArgumentException.class,
+				() -> service().metadata(Collections.nCopies(MangaDexService.MAX_IDS + 1, MANGA)));
+	}
+
+	@Test
+	void wholeFeedIsWalkedPageByPageInAllLanguages() {
+		feedLength = 1234;
+		List<ChapterResult> seen = new ArrayList<>();
+		List<Integer> pageEnds = new ArrayList<>();
+		service().forEachChapter(MANGA, List.of("en", "ja", "en"), seen::add, () -> pageEnds.add(seen.size()));
+
+		assertEquals(List.of(500, 1000, 1234), pageEnds);
+		assertEquals(1234, seen.size());
+		assertEquals("1234", seen.get(0).chapter());
+		assertEquals("1", seen.get(1233).chapter());
+		assertEquals(List.of("[en, ja]@0", "[en, ja]@500", "[en, ja]@1000"), pages);
+	}
+
+	@Test
+	void walkEndsAtTheOffsetWindow() {
+		feedLength = MangaDexService.MAX_WINDOW + 700;
+		AtomicInteger count = new AtomicInteger();
+		service().forEachChapter(MANGA, List.of("en"), c -> count.incrementAndGet());
+
+		assertEquals(MangaDexService.MAX_WINDOW, count.get());
+		assertEquals(MangaDexService.MAX_WINDOW / MangaDexService.FEED_PAGE, pages.size());
+	}
+
+	@Test
+	void nextPageIsFetchedWhileTheCurrentOneIsConsumed() {
+		feedLength = 700;
+		AtomicInteger count = new AtomicInteger();
+		List<Boolean> prefetched = new ArrayList<>();
+		service().forEachChapter(MANGA, List.of("en"), c -> {
+			// still on the first chapter of page one, page two is already on its way
+			if (count.incrementAndGet() == 1) prefetched.add(awaitPages(2));
+		});
+		assertEquals(List.of(true), prefetched);
+		assertEquals(700, count.get());
+	}
+
+	private boolean awaitPages(int n) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (pages.size() < n) {
+			if (System.nanoTime() > deadline) return false;
+			Thread.onSpinWait();
+		}
+		return true;
+	}
+
+	@Test
+	void chaptersShiftedIntoTheNextPageAreNotRepeated() {
+		feedLength = 600;
+		uploadedDuringWalk = 2;
+		List<String> ids = new ArrayList<>();
+		service().forEachChapter(MANGA, List.of("en"), c -> ids.add(c.chapterId()));
+
+		assertEquals(600, ids.size());
+		assertEquals(600, new HashSet<>(ids).size());
+	}
+
+	@Test
+	void serverErrorsAreRetried() {
+		feedStatuses.addAll(List.of(503, 502));
+		Served<List<ChapterResult>> feed = service().feed(MANGA, 10, "en");
+
+		assertEquals(3, feed.value().size());
+		assertFalse(feed.stale());
+		assertEquals(3, feeds.get());
+	}
+
+	@Test
+	void clientErrorsKeepTheirStatusAndAreNotRetried() {
+		feedStatuses.add(404);
+		ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> service().feed(MANGA, 10, "en"));
+
+		assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+		assertEquals(1, feeds.get());
+	}
+
+	@Test
+	void failingMangaDexServesLastGoodMarkedStale() {
+		MangaDexService service = service();
+		assertFalse(service.feed(MANGA, 10, "en").stale());
+
+		feedStatuses.addAll(List.of(500, 500, 500));
+		Served<List<ChapterResult>> fallback = service.feed(MANGA, 10, "en");
+
+		assertTrue(fallback.stale());
+		assertEquals(3, fallback.value().size());
+	}
+
+	@Test
+	void onlyCachedUpstreamAnswersAreShared() {
+		assertTrue(service().feed(MANGA, 10, "en").shared());
+
+		// a synced title is answered from the chapter table, a new list every time
+		ChapterService synced = new ChapterService(null, null, null, new ChapterSyncProperties(), null) {
+			@Override
+			public Optional<List<ChapterResult>> localFeed(String mangadexId, int limit, String lang) {
+				return Optional.of(List.of(new ChapterResult("c-local", "1", null, null, null, null)));
+			}
+		};
+		Served<List<ChapterResult>> local = service(synced).feed(MANGA, 10, "en");
+		assertEquals("c-local", local.value().get(0).chapterId());
+		assertFalse(local.shared());
+	}
+
+	@Test
+	void failingMangaDexWithoutHistoryIsBadGateway() {
+		feedStatuses.addAll(List.of(500, 500, 500));
+		ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> service().feed(MANGA, 10, "en"));
+		assertEquals(HttpStatus.BAD_GATEWAY, e.getStatusCode());
+	}
+
+	@Test
+	void openBreakerStopsCallingMangaDex() {
+		resilienceProps.setMinimumCalls(2);
+		resilienceProps.setMaxAttempts(1);
+		MangaDexService service = service();
+		feedStatuses.addAll(List.of(500, 500));
+		assertThrows(ResponseStatusException.class, () -> service.feed(MANGA, 10, "en"));
+		assertThrows(ResponseStatusException.class, () -> service.feed(MANGA, 10, "en"));
+
+		ResponseStatusException e = assertThrows(MangaDexUnavailableException.class, () -> service.feed(MANGA, 10, "en"));
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+		assertNotNull(e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+		// turned away, not another failure for the breaker to count
+		assertFalse(MangaDexResilience.isFailure(e));
+		assertEquals(2, feeds.get());
+	}
+
+	@Test
+	void coldLoadsDoNotHoldCarrierThreads() throws InterruptedException {
+		// more cold lookups blocked upstream at once than there are carriers. a loader running inside the
+		// cache's compute would pin its carrier, and the last callers would never reach the client
+		int carriers = Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+				Runtime.getRuntime().availableProcessors());
+		int callers = carriers * 2 + 2;
+		feedGate = new CountDownLatch(callers);
+		resilienceProps.setBulkhead(new HashMap<>(Map.of("feed", callers)));
+		rateLimitProps.setBurst(callers);
+		MangaDexService service = service();
+
+		AtomicInteger answered = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 1; i <= callers; i++) {
+			int limit = i;
+			threads.add(Thread.ofVirtual().start(() -> {
+				if (service.feed(MANGA, limit, "en").value().size() == 3) answered.incrementAndGet();
+			}));
+		}
+		for (Thread t : threads) t.join(Duration.ofSeconds(10));
+
+		assertFalse(gateTimedOut.get());
+		assertEquals(callers, answered.get());
+		assertEquals(callers, feeds.get());
+	}
+
+	@Test
+	void callsQueuedOnTheRateLimitDoNotHoldBulkheadSlots() throws InterruptedException {
+		// one feed slot and a short wait for it, the limiter spaces the calls 100ms apart
+		resilienceProps.setBulkhead(new HashMap<>(Map.of("feed", 1)));
+		resilienceProps.setBulkheadWait(Duration.ofMillis(20));
+		rateLimitProps.setPermitsPerSecond(10);
+		rateLimitProps.setBurst(1);
+		MangaDexService service = service();
+
+		AtomicInteger answered = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 1; i <= 4; i++) {
+			int limit = i;
+			threads.add(Thread.ofVirtual().start(() -> {
+				if (service.feed(MANGA, limit, "en").value().size() == 3) answered.incrementAndGet();
+			}));
+		}
+		for (Thread t : threads) t.join(Duration.ofSeconds(10));
+
+		assertEquals(4, answered.get());
+		assertEquals(0, registry.find("mangadex.resilience.rejected").counters().stream()
+				.mapToDouble(c -> c.count()).sum());
+	}
+
+	@Test
+	void laterLookupsOnlyAskForChangedChapters() {
+		MangaDexService service = service();
+		assertEquals("375", service.getLatestNumberedChapter(MANGA, "en").chapter());
+		assertEquals(1, aggregates.get());
+
+		// nothing new keeps the mark
+		assertEquals("375", service.getLatestNumberedChapter(MANGA, "en").chapter());
+
+		delta = chapters(chapter("c-376", "376", "2024-05-08T10:00:00+00:00"));
+		ChapterResult latest = service.getLatestNumberedChapter(MANGA, "en");
+		assertEquals("c-376", latest.chapterId());
+
+		// an unnumbered extra doesn't beat a numbered chapter
+		delta = chapters(chapter("c-extra", "Extra", "2024-05-09T10:00:00+00:00"));
+		assertEquals("c-376", service.getLatestNumberedChapter(MANGA, "en").chapterId());
+
+		assertEquals(3, deltas.get());
+		assertEquals(1, aggregates.get());
+	}
+
+	@Test
+	void fullDeltaPageFallsBackToAggregate() {
+		MangaDexService service = service();
+		service.getLatestNumberedChapter(MANGA, "en");
+
+		delta = chapters(chapter("c-377", "377", "2024-05-09T10:00:00+00:00"),
+				chapter("c-376", "376", "2024-05-08T10:00:00+00:00"));
+		service.getLatestNumberedChapter(MANGA, "en");
+
+		assertEquals(2, aggregates.get());
+	}
+
+	@Test
+	void latestLoadsAreTimedPerBranch() {
+		MangaDexService service = service();
+		service.getLatestNumberedChapter(MANGA, "en");
+		delta = chapters(chapter("c-376", "376", "2024-05-08T10:00:00+00:00"));
+		service.getLatestNumberedChapter(MANGA, "en");
+
+		assertEquals(1, registry.get("mangadex.latest.load").tag("branch", "aggregate").timer().count());
+		assertEquals(1, registry.get("mangadex.latest.load").tag("branch", "delta").timer().count());
+		assertEquals(2, registry.get("mangadex.latest").tag("source", "mangadex").timer().count());
+		// aggregate, chapter and the delta
+		assertEquals(3, registry.get("mangadex.client").tag("status", "200").timers().stream()
+				.mapToLong(t -> t.count()).sum());
+		assertTrue(registry.get("mangadex.payload").tag("endpoint", "aggregate").summary().totalAmount() > 0);
+		assertEquals(1, registry.get("mangadex.parse").tag("endpoint", "chapter").timer().count());
+	}
+
+	@Test
+	void laterMeansHigherNumberThenLaterUpload() {
+		ChapterResult v1 = new ChapterResult("a", "10", null, null, "2024-01-01T00:00:00+00:00", null);
+		ChapterResult v2 = new ChapterResult("b", "10", null, null, "2024-02-01T00:00:00+00:00", null);
+		ChapterResult half = new ChapterResult("c", "10.5", null, null, "2023-01-01T00:00:00+00:00", null);
+
+		assertTrue(MangaDexService.isLater(v2, v1));
+		assertTrue(MangaDexService.isLater(half, v2));
+		assertTrue(MangaDexService.isLater(v1, null));
+		assertEquals(List.of(false, false), List.of(MangaDexService.isLater(v1, v2), MangaDexService.isLater(v2, half)));
+	}
+}
@@ -0,0 +1,110 @@
+package com.shiori.backend;
+
+import static com.shiori.backend.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.shiori.backend.dto.MangaImportResponse;
+import com.shiori.backend.dto.MangaImportResult;
+import com.shiori.backend.dto.MangaImportResult.Outcome;
+
+class MangaImportServiceTests {
+
+	// rows already in the library, and the update count the upsert reports per mangadex id
+	private final Set<String> existing = Set.of("m-2", "m-3");
+	private final Map<String, Integer> counts = Map.of("m-1", 1, "m-2", 1, "m-3", 0);
+	private boolean failing;
+
+	// postgres only on conflict upsert, the batch answers from counts
+	private final JdbcTemplate jdbc = new JdbcTemplate() {
+		@Override
+		public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+			if (failing) throw new QueryTimeoutException("canceling statement due to statement timeout");
+			List<String> ids = new ArrayList<>();
+			PreparedStatement ps = stub(PreparedStatement.class, (name, args) -> {
+				if (name.equals("setString") && (int) args[0] == 2) ids.add((String) args[1]);
+				return null;
+			});
+			try {
+				for (int i = 0; i < pss.getBatchSize(); i++) pss.setValues(ps, i);
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+			return ids.stream().mapToInt(counts::get).toArray();
+		}
+	};
+
+	private final NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(jdbc) {
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> List<T> queryForList(String sql, SqlParameterSource params, Class<T> type) {
+			return ((List<T>) params.getValue("ids")).stream().filter(existing::contains).toList();
+		}
+	};
+
+	private final MangaImportService service;
+
+	MangaImportServiceTests() {
+		TitleSearchProperties search = new TitleSearchProperties();
+		// nothing to reindex outside the memory index
+		search.setMode("pg-trgm");
+		service = new MangaImportService(named,
+				new TransactionTemplate(stub(PlatformTransactionManager.class, (name, args) -> switch (name) {
+					case "getTransaction" -> new SimpleTransactionStatus();
+					default -> null;
+				})),
+				new TitleSearchService(null, null, named, search, new CoverCacheProperties()));
+	}
+
+	private static Manga manga(String title, String mangadexId) {
+		return new Manga(title, mangadexId, null, null, Manga.MangaStatus.ONGOING);
+	}
+
+	@Test
+	void updateCountsAndExistingRowsDecideTheOutcome() {
+		MangaImportResponse response = service.importAll(Arrays.asList(
+				manga("Old name", "m-1"),
+				manga("One", "m-1"),
+				manga("Two", "m-2"),
+				manga("Three", "m-3"),
+				manga(" ", "m-4"),
+				null));
+
+		assertEquals(List.of(Outcome.DUPLICATE, Outcome.CREATED, Outcome.UPDATED, Outcome.UNCHANGED, Outcome.INVALID,
+				Outcome.INVALID), response.rows().stream().map(MangaImportResult::outcome).toList());
+		assertEquals(1, response.created());
+		assertEquals(1, response.updated());
+		assertEquals(1, response.unchanged());
+		assertEquals(2, response.rejected());
+		assertEquals("title is required", response.rows().get(4).error());
+	}
+
+	@Test
+	void aChunkThatRolledBackIsFailedRowByRow() {
+		failing = true;
+		MangaImportResponse response = service.importAll(List.of(manga("One", "m-1"), manga("Two", "m-2")));
+
+		assertEquals(2, response.rejected());
+		for (MangaImportResult row : response.rows()) {
+			assertEquals(Outcome.FAILED, row.outcome());
+			assertEquals("canceling statement due to statement timeout", row.error());
+		}
+	}
+}
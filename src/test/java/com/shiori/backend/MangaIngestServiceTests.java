@@ -0,0 +1,134 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.QueryTimeoutException;
+
+import com.shiori.backend.MangaDexParser.MangaMetadata;
+import com.shiori.backend.dto.MangaIngestStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MangaIngestServiceTests {
+
+	@TempDir
+	Path dir;
+
+	private final List<List<MangaMetadata>> batches = new CopyOnWriteArrayList<>();
+	private final MangaIngestProperties props = new MangaIngestProperties();
+
+	// every other record of a batch counts as changed, a batch holding m-13 is rejected
+	private final MangaIngestService service = new MangaIngestService(batch -> {
+		if (batch.stream().anyMatch(m -> m.manga().id().equals("m-13"))) throw new QueryTimeoutException("too slow");
+		batches.add(batch);
+		return (batch.size() + 1) / 2;
+	}, props, new SimpleMeterRegistry());
+
+	private static String manga(String id, String title) {
+		return "{\"id\":\"" + id + "\",\"type\":\"manga\",\"attributes\":{\"title\":{\"en\":\"" + title + "\"},"
+				+ "\"description\":{\"en\":\"skipped\"},\"status\":\"ongoing\"},\"relationships\":[]}";
+	}
+
+	private Path dump(String content) throws IOException {
+		props.setDir(dir.toString());
+		return Files.writeString(dir.resolve("dump.ndjson"), content);
+	}
+
+	@Test
+	void dumpGoesOutInSortedBatches() throws IOException {
+		StringBuilder ndjson = new StringBuilder();
+		for (int i = 25; i >= 1; i--) ndjson.append(manga("m-" + i, "Title " + i)).append('\n');
+		// a repeat within a batch replaces the earlier record, broken records are skipped
+		ndjson.append(manga("m-1", "Renamed")).append('\n');
+		ndjson.append(manga("", "No id")).append('\n');
+		ndjson.append("{\"id\":\"m-99\",\"attributes\":{}}\n");
+		props.setBatchSize(10);
+		props.setWorkers(3);
+		props.setQueue(1);
+
+		assertTrue(service.ingest(dump(ndjson.toString())));
+
+		MangaIngestStatus status = service.status();
+		assertFalse(status.running());
+		assertNull(status.error());
+		assertEquals("dump.ndjson", status.file());
+		assertEquals(28, status.read());
+		assertEquals(2, status.invalid());
+		// the batch read as m-15..m-6 was rejected, the other two went in
+		assertEquals(10, status.failed());
+		assertEquals(2, batches.size());
+		assertEquals(status.totalBytes(), status.bytesRead());
+		assertEquals(15, status.changed() + status.unchanged());
+
+		for (List<MangaMetadata> batch : batches) {
+			List<String> ids = batch.stream().map(m -> m.manga().id()).toList();
+			assertEquals(ids.stream().sorted().toList(), ids);
+		}
+		MangaMetadata first = batches.stream().flatMap(List::stream)
+				.filter(m -> m.manga().id().equals("m-1")).findFirst().orElseThrow();
+		assertEquals("Renamed", first.manga().title());
+		assertEquals(Manga.MangaStatus.ONGOING, first.status());
+	}
+
+	@Test
+	void brokenJsonStopsTheIngestAfterWritingWhatWasRead() throws IOException {
+		props.setBatchSize(1);
+		assertTrue(service.ingest(dump(manga("m-1", "One") + "\n" + manga("m-2", "Two") + "\n{\"id\":")));
+
+		MangaIngestStatus status = service.status();
+		assertFalse(status.running());
+		assertNotNull(status.error());
+		assertTrue(status.error().contains("line: 3"), status.error());
+		assertEquals(2, batches.size());
+	}
+
+	@Test
+	void storeFailingOutsideTheDatabaseOnlyFailsItsBatch() throws IOException {
+		// a batch that went in but couldn't be reindexed, on every batch so no writer survives if one ends
+		MangaIngestService reindexFails = new MangaIngestService(batch -> {
+			throw new IllegalStateException("reindex failed");
+		}, props, new SimpleMeterRegistry());
+		StringBuilder ndjson = new StringBuilder();
+		for (int i = 1; i <= 20; i++) ndjson.append(manga("m-" + i, "Title " + i)).append('\n');
+		props.setBatchSize(2);
+		props.setWorkers(2);
+		props.setQueue(1);
+
+		assertTrue(reindexFails.ingest(dump(ndjson.toString())));
+
+		MangaIngestStatus status = reindexFails.status();
+		assertFalse(status.running());
+		assertNull(status.error());
+		assertEquals(20, status.failed());
+		// the run let go of the lock, the next one can start
+		assertTrue(reindexFails.ingest(dump(manga("m-1", "One"))));
+	}
+
+	@Test
+	void namesOutsideTheIngestDirAreRejected() {
+		props.setDir(dir.toString());
+		assertEquals(dir.resolve("dump.json"), service.resolve("dump.json"));
+		assertNull(service.resolve("../etc/passwd"));
+		assertNull(service.resolve("/etc/passwd"));
+		assertNull(service.resolve("."));
+	}
+
+	@Test
+	void statusBeforeAnyRunIsEmpty() {
+		MangaIngestStatus status = service.status();
+		assertFalse(status.running());
+		assertNull(status.startedAt());
+	}
+}
@@ -0,0 +1,126 @@
+package com.shiori.backend;
+
+import static com.shiori.backend.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
+
+import com.shiori.backend.Manga.MangaStatus;
+import com.shiori.backend.MangaDexParser.MangaMetadata;
+import com.shiori.backend.MangaRefreshService.Change;
+import com.shiori.backend.dto.MangaRefreshStatus;
+import com.shiori.backend.dto.MangaSearchResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MangaRefreshServiceTests {
+
+	private static final String COVER = "https://uploads.mangadex.org/covers/m-1/cover.jpg";
+
+	private record Row(Long getId, String getMangadexId, String getTitle, Integer getYear, String getCoverImageUrl,
+			MangaStatus getStatus) implements MangaRepository.RefreshTarget {}
+
+	private final List<Row> rows = new ArrayList<>();
+	private final List<List<String>> lookups = new CopyOnWriteArrayList<>();
+	private final List<List<Change>> batches = new ArrayList<>();
+	private final MangaRefreshProperties props = new MangaRefreshProperties();
+
+	private final MangaRefreshService service = new MangaRefreshService(
+			stub(MangaRepository.class, (name, args) -> switch (name) {
+				case "countByMangadexIdNotNull" -> (long) rows.size();
+				case "findRefreshTargets" -> rows.stream()
+						.filter(r -> r.getId() > (long) args[0])
+						.limit(((Limit) args[1]).max())
+						.toList();
+				default -> throw new UnsupportedOperationException(name);
+			}),
+			this::lookup, batches::add, props, new SimpleMeterRegistry());
+
+	// mangadex knows every title but each 50th, and has a new title for each 10th
+	private List<MangaMetadata> lookup(List<String> ids) {
+		lookups.add(ids);
+		List<MangaMetadata> found = new ArrayList<>();
+		for (String id : ids) {
+			int n = Integer.parseInt(id.substring(2));
+			if (n % 50 == 0) continue;
+			String title = n % 10 == 0 ? "New " + n : "Title " + n;
+			found.add(new MangaMetadata(new MangaSearchResult(id, title, 2000, null, List.of()), MangaStatus.ONGOING));
+		}
+		return found;
+	}
+
+	private static MangaMetadata fresh(String title, Integer year, String cover, MangaStatus status) {
+		return new MangaMetadata(new MangaSearchResult("m-1", title, year, cover, List.of()), status);
+	}
+
+	@Test
+	void chunksAreOneLookupEachAndOnlyChangedRowsAreWritten() {
+		for (long i = 1; i <= 250; i++) {
+			rows.add(new Row(i, "m-" + i, "Title " + i, 2000, null, MangaStatus.ONGOING));
+		}
+		props.setBatchSize(8);
+
+		service.refresh();
+
+		assertEquals(3, lookups.size());
+		assertEquals(List.of(100, 100, 50), lookups.stream().map(List::size).toList());
+		List<Change> written = batches.stream().flatMap(List::stream).toList();
+		// each 10th changed, minus the ones mangadex doesn't have
+		assertEquals(20, written.size());
+		assertEquals(new Change(10, "m-10", "New 10", 2000, null, MangaStatus.ONGOING), written.get(0));
+
+		MangaRefreshStatus status = service.status();
+		assertFalse(status.running());
+		assertEquals(250, status.total());
+		assertEquals(250, status.scanned());
+		assertEquals(20, status.changed());
+		assertEquals(5, status.missing());
+		assertEquals(225, status.unchanged());
+		assertEquals(3, status.calls());
+	}
+
+	@Test
+	void storeFailuresCountAsFailedAndTheRunGoesOn() {
+		for (long i = 1; i <= 30; i++) {
+			rows.add(new Row(i, "m-" + i, "Title " + i, 2000, null, MangaStatus.ONGOING));
+		}
+		MangaRefreshService failing = new MangaRefreshService(
+				stub(MangaRepository.class, (name, args) -> switch (name) {
+					case "countByMangadexIdNotNull" -> (long) rows.size();
+					case "findRefreshTargets" -> rows.stream().filter(r -> r.getId() > (long) args[0]).toList();
+					default -> throw new UnsupportedOperationException(name);
+				}),
+				this::lookup, changes -> {
+					throw new QueryTimeoutException("timeout");
+				}, props, new SimpleMeterRegistry());
+
+		failing.refresh();
+
+		assertEquals(3, failing.status().failed());
+		assertEquals(0, failing.status().changed());
+		assertEquals(27, failing.status().unchanged());
+	}
+
+	@Test
+	void diffKeepsStoredValuesMangaDexHasNoneFor() {
+		Row stored = new Row(1L, "m-1", "Berserk", 1989, COVER, MangaStatus.ONGOING);
+
+		assertNull(MangaRefreshService.diff(stored, fresh("Berserk", 1989, COVER, MangaStatus.ONGOING)));
+		assertNull(MangaRefreshService.diff(stored, fresh(null, null, null, null)));
+		// the /api/covers form of the same cover is not a change
+		assertNull(MangaRefreshService.diff(
+				new Row(1L, "m-1", "Berserk", 1989, CoverCache.localUrl(COVER), MangaStatus.ONGOING),
+				fresh("Berserk", 1989, COVER, MangaStatus.ONGOING)));
+
+		assertEquals(new Change(1, "m-1", "Berserk", 1989, COVER, MangaStatus.HIATUS),
+				MangaRefreshService.diff(stored, fresh("Berserk", null, null, MangaStatus.HIATUS)));
+	}
+}
@@ -0,0 +1,77 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.shiori.backend.dto.MangaSummary;
+
+// queries against the flyway schema on h2 in postgres mode, like the load test
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:repository;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;NON_KEYWORDS=YEAR,VALUE",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class MangaRepositoryTests {
+
+	private static final Instant T = Instant.parse("2024-05-01T10:00:00Z");
+
+	@Autowired
+	private MangaRepository mangaRepo;
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@BeforeEach
+	void library() {
+		// ids 1..9, three of them share one updated_at so pages have to break ties on the id
+		for (int i = 1; i <= 9; i++) {
+			Instant updated = i >= 4 && i <= 6 ? T : T.plusSeconds(i * 60L);
+			jdbc.update("insert into manga (id, title, mangadex_id, status, created_at, updated_at) values (?, ?, ?, ?, ?, ?)",
+					i, "Title " + i, "m-" + i, i % 2 == 0 ? "ONGOING" : "COMPLETED", Timestamp.from(T), Timestamp.from(updated));
+		}
+	}
+
+	private List<Long> walk(Manga.MangaStatus status, int pageSize) {
+		List<Long> ids = new ArrayList<>();
+		MangaCursor after = null;
+		while (true) {
+			List<MangaSummary> page = mangaRepo.findSummaries(status, null, after, pageSize);
+			page.forEach(m -> ids.add(m.id()));
+			if (page.size() < pageSize) return ids;
+			MangaSummary last = page.getLast();
+			after = MangaCursor.decode(new MangaCursor(last.updatedAt(), last.id()).encode());
+		}
+	}
+
+	@Test
+	void pagesWalkTheWholeListingOnce() {
+		List<MangaSummary> all = mangaRepo.findSummaries(null, null, null, 100);
+		List<MangaSummary> expected = new ArrayList<>(all);
+		expected.sort(Comparator.comparing(MangaSummary::updatedAt).thenComparing(MangaSummary::id).reversed());
+		assertEquals(expected, all);
+
+		for (int pageSize = 1; pageSize <= 4; pageSize++) {
+			assertEquals(List.of(9L, 8L, 7L, 3L, 2L, 1L, 6L, 5L, 4L), walk(null, pageSize), "page size " + pageSize);
+		}
+		assertEquals(List.of(8L, 2L, 6L, 4L), walk(Manga.MangaStatus.ONGOING, 2));
+	}
+
+	@Test
+	void rowsCantLeaveTheListingWithoutUpdatedAt() {
+		assertThrows(DataIntegrityViolationException.class, () -> jdbc.update(
+				"insert into manga (title, mangadex_id, updated_at) values ('No time', 'm-x', null)"));
+	}
+}
@@ -0,0 +1,53 @@
+package com.shiori.backend;
+
+import static com.shiori.backend.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+class MangaServiceTests {
+
+	private static final long MANGA = 7L;
+
+	// every delete in the order it ran, with the id it was for
+	private final List<String> deletes = new CopyOnWriteArrayList<>();
+	private final TrigramTitleIndex index = new TrigramTitleIndex(new TitleSearchProperties());
+
+	private final MangaService service = new MangaService(
+			stub(MangaRepository.class, (name, args) -> switch (name) {
+				case "findById" -> Optional.of(synced());
+				case "delete" -> deletes.add("manga " + ((Manga) args[0]).getId());
+				default -> throw new UnsupportedOperationException(name);
+			}),
+			stub(ChapterRepository.class, (name, args) -> deleted(name, "chapters", args)),
+			stub(MangaSyncStateRepository.class, (name, args) -> deleted(name, "sync state", args)),
+			stub(ReadingProgressRepository.class, (name, args) -> deleted(name, "progress", args)),
+			index);
+
+	private Object deleted(String method, String what, Object[] args) {
+		if (!method.equals("deleteByMangaId")) throw new UnsupportedOperationException(method);
+		deletes.add(what + " " + args[0]);
+		return 1;
+	}
+
+	private static Manga synced() {
+		Manga manga = new Manga("Frieren", "a1b2c3d4-0000-4000-8000-000000000001", 2020, null, Manga.MangaStatus.ONGOING);
+		manga.setId(MANGA);
+		return manga;
+	}
+
+	@Test
+	void deletingASyncedMangaTakesItsRowsAlong() {
+		index.upsert(TitleDocument.of(synced()));
+
+		service.deleteById(MANGA);
+
+		// chapters reference the manga row, so it goes last
+		assertEquals(List.of("chapters 7", "sync state 7", "progress 7", "manga 7"), deletes);
+		assertEquals(List.of(), index.search("Frieren", 5));
+	}
+}
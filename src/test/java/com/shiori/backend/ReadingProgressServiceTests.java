@@ -0,0 +1,75 @@
+package com.shiori.backend;
+
+import static com.shiori.backend.Stubs.stub;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ReadingProgressServiceTests {
+
+	private static final long MANGA = 7L;
+
+	private boolean followed = true;
+	// numbers already in the chapter table, scale 4 like the column
+	private final List<BigDecimal> stored = new ArrayList<>();
+	// chapter label of every addUnread call
+	private final List<String> bumped = new ArrayList<>();
+
+	private final ReadingProgressService service = new ReadingProgressService(
+			stub(ReadingProgressRepository.class, (name, args) -> switch (name) {
+				case "existsByMangaIdAndLang" -> followed;
+				case "addUnread" -> {
+					bumped.add((String) args[3]);
+					yield 1;
+				}
+				default -> throw new UnsupportedOperationException(name);
+			}),
+			stub(ChapterRepository.class, (name, args) -> switch (name) {
+				case "findNumbersIn" -> stored;
+				default -> throw new UnsupportedOperationException(name);
+			}),
+			null, new CoverCacheProperties());
+
+	private static Chapter chapter(String id, String label, String readableAt) {
+		Chapter c = new Chapter(id, null, "en");
+		c.setChapter(label);
+		c.setChapterNumber(ChapterService.number(label));
+		c.setReadableAt(readableAt != null ? Instant.parse(readableAt) : null);
+		return c;
+	}
+
+	@Test
+	void eachNewNumberCountsOnceWithItsNewestUpload() {
+		service.onNewChapters(MANGA, "en", List.of(
+				chapter("a", "11", "2024-05-01T10:00:00Z"),
+				chapter("b", "11", "2024-05-02T10:00:00Z"),
+				chapter("c", "Extra", "2024-05-03T10:00:00Z"),
+				chapter("d", "12", null)));
+
+		assertEquals(List.of("11", "12"), bumped);
+	}
+
+	@Test
+	void numbersAlreadyStoredAreNotNew() {
+		stored.add(new BigDecimal("10.5000"));
+		service.onNewChapters(MANGA, "en", List.of(
+				chapter("a", "10.5", "2024-05-01T10:00:00Z"),
+				chapter("b", "11", "2024-05-02T10:00:00Z")));
+
+		assertEquals(List.of("11"), bumped);
+	}
+
+	@Test
+	void titlesNobodyFollowsAreSkipped() {
+		followed = false;
+		service.onNewChapters(MANGA, "en", List.of(chapter("a", "11", "2024-05-01T10:00:00Z")));
+
+		assertTrue(bumped.isEmpty());
+	}
+}
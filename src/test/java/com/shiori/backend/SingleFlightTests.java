@@ -0,0 +1,86 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SingleFlightTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final SingleFlight singleFlight = new SingleFlight(registry);
+
+	private double calls(String role) {
+		var counter = registry.find("mangadex.singleflight.calls").tag("endpoint", "aggregate").tag("role", role).counter();
+		return counter == null ? 0 : counter.count();
+	}
+
+	@Test
+	void concurrentIdenticalCallsShareOneExecution() throws Exception {
+		AtomicInteger upstream = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		int callers = 8;
+
+		try (ExecutorService pool = Executors.newFixedThreadPool(callers)) {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				results.add(pool.submit(() -> singleFlight.execute("aggregate", "abc:en", () -> {
+					upstream.incrementAndGet();
+					release.await();
+					return "375";
+				})));
+			}
+			// let every caller reach the in-flight call before it completes
+			while (calls("leader") + calls("shared") < callers) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+			for (Future<String> f : results) {
+				assertEquals("375", f.get());
+			}
+		}
+
+		assertEquals(1, upstream.get());
+		assertEquals(1, calls("leader"));
+		assertEquals(callers - 1, calls("shared"));
+	}
+
+	@Test
+	void errorsReachEveryWaiterAndNextCallRetries() throws Exception {
+		IOException boom = new IOException("MangaDex responded with HTTP 502");
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		try (ExecutorService pool = Executors.newFixedThreadPool(2)) {
+			Future<Object> leader = pool.submit(() -> singleFlight.execute("aggregate", "abc:en", () -> {
+				started.countDown();
+				release.await();
+				throw boom;
+			}));
+			started.await();
+			Future<Object> follower = pool.submit(() -> singleFlight.execute("aggregate", "abc:en", () -> "unused"));
+			while (calls("shared") < 1) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+
+			assertSame(boom, assertThrows(ExecutionException.class, leader::get).getCause());
+			assertSame(boom, assertThrows(ExecutionException.class, follower::get).getCause());
+		}
+
+		assertEquals("fresh", singleFlight.execute("aggregate", "abc:en", () -> "fresh"));
+	}
+}
@@ -0,0 +1,58 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class StartupReportTests {
+
+	@Test
+	void rssIsReadFromProcStatus() {
+		List<String> status = List.of("Name:\tjava", "VmPeak:\t 9000000 kB", "VmRSS:\t  204800 kB", "Threads:\t40");
+		assertEquals(204800L * 1024, StartupReport.rss(status));
+		assertEquals(-1, StartupReport.rss(List.of("Name:\tjava")));
+	}
+
+	@Test
+	void reportsOnceWhenTakingTraffic() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		StartupReport startup = new StartupReport(registry);
+		startup.ready(new ApplicationReadyEvent(new SpringApplication(), new String[0], null, Duration.ofMillis(1234)));
+		startup.accepting(new AvailabilityChangeEvent<>(this, ReadinessState.REFUSING_TRAFFIC));
+		assertNull(startup.report());
+
+		startup.accepting(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+		StartupReport.Report report = startup.report();
+		assertNotNull(report);
+		assertEquals(1234, report.contextMillis());
+		assertTrue(report.readyMillis() > 0);
+		assertTrue(report.loadedClasses() > 0);
+
+		// readiness coming back later, after a refusal, is not a second startup
+		startup.accepting(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+		assertSame(report, startup.report());
+		assertNotNull(registry.find("shiori.startup.ready").timeGauge());
+		assertNotNull(registry.find("shiori.startup.rss").gauge());
+
+		Info.Builder info = new Info.Builder();
+		startup.contribute(info);
+		Map<?, ?> detail = (Map<?, ?>) info.build().getDetails().get("startup");
+		assertEquals(1234L, detail.get("contextMillis"));
+		assertEquals(report.rssBytes(), detail.get("rssBytes"));
+	}
+}
@@ -0,0 +1,19 @@
+package com.shiori.backend;
+
+import java.lang.reflect.Proxy;
+
+// hand-written stubs of repository interfaces: every call goes to one answer keyed on the method name
+final class Stubs {
+
+	interface Answer {
+		Object answer(String method, Object[] args);
+	}
+
+	private Stubs() {}
+
+	@SuppressWarnings("unchecked")
+	static <T> T stub(Class<T> type, Answer answer) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> answer.answer(method.getName(), args));
+	}
+}
@@ -0,0 +1,75 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// the same h2 setup as MangaRepositoryTests, so both share one context
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:repository;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;NON_KEYWORDS=YEAR,VALUE",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=" })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SyncLeaseRepositoryTests {
+
+	private static final Instant NOW = Instant.parse("2024-05-01T10:00:00Z");
+	private static final Duration LEASE = Duration.ofMinutes(5);
+
+	@Autowired
+	private SyncLeaseRepository leaseRepo;
+	@Autowired
+	private MangaRepository mangaRepo;
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Test
+	void aSlotIsHeldByOneOwnerUntilItsLeaseRunsOut() {
+		leaseRepo.saveAndFlush(new SyncLease(0));
+
+		assertEquals(1, leaseRepo.tryAcquire(0, "a", NOW, NOW.plus(LEASE)));
+		assertEquals(0, leaseRepo.tryAcquire(0, "b", NOW.plusSeconds(60), NOW.plusSeconds(60).plus(LEASE)));
+		// the holder renews
+		assertEquals(1, leaseRepo.tryAcquire(0, "a", NOW.plusSeconds(120), NOW.plusSeconds(120).plus(LEASE)));
+
+		// a lease that ran out is anyone's, and only the holder can give it back
+		Instant later = NOW.plusSeconds(120).plus(LEASE).plusSeconds(1);
+		assertEquals(1, leaseRepo.tryAcquire(0, "b", later, later.plus(LEASE)));
+		assertEquals(0, leaseRepo.release(0, "a"));
+		assertEquals(1, leaseRepo.release(0, "b"));
+		assertEquals(1, leaseRepo.tryAcquire(0, "a", later, later.plus(LEASE)));
+		// no row, no slot
+		assertEquals(0, leaseRepo.tryAcquire(1, "a", NOW, NOW.plus(LEASE)));
+	}
+
+	@Test
+	void slotsSplitTrackedMangaWithoutOverlap() {
+		for (int i = 1; i <= 20; i++) {
+			jdbc.update("insert into manga (title, mangadex_id, updated_at) values (?, ?, now())",
+					"Title " + i, i % 5 == 0 ? null : "m-" + i);
+		}
+		int slots = 3;
+		List<String> seen = new ArrayList<>();
+		for (int slot = 0; slot < slots; slot++) {
+			for (MangaRepository.SyncTarget t : mangaRepo.findSyncTargets(slots, slot)) {
+				assertEquals(slot, Math.floorMod(t.getId(), slots));
+				seen.add(t.getMangadexId());
+			}
+		}
+		// every title with a mangadex id exactly once, local only titles are never synced
+		Set<String> tracked = new HashSet<>(mangaRepo.findAllMangadexIds());
+		assertEquals(16, tracked.size());
+		assertEquals(tracked.size(), seen.size());
+		assertEquals(tracked, new HashSet<>(seen));
+	}
+}
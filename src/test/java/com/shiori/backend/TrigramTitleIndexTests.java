@@ -0,0 +1,96 @@
+package com.shiori.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.shiori.backend.dto.TitleHit;
+
+class TrigramTitleIndexTests {
+
+	private final TrigramTitleIndex index = new TrigramTitleIndex(new TitleSearchProperties());
+
+	private static TitleDocument tracked(long id, String mangadexId, String title, String... alts) {
+		return new TitleDocument(mangadexId, id, title, List.of(alts), null, null);
+	}
+
+	private static TitleDocument remote(String mangadexId, String title) {
+		return new TitleDocument(mangadexId, null, title, List.of(), null, null);
+	}
+
+	@Test
+	void prefixTyposAndAltTitlesMatch() {
+		index.upsert(tracked(1, "md-1", "Berserk", "ベルセルク"));
+		index.upsert(tracked(2, "md-2", "Vinland Saga"));
+		index.upsert(tracked(3, "md-3", "Solo Leveling", "Na Honjaman Level Up"));
+
+		assertEquals("Berserk", index.search("ber", 5).get(0).title());
+		assertEquals("Berserk", index.search("bersrek", 5).get(0).title());
+		assertEquals("Berserk", index.search("ベルセルク", 5).get(0).title());
+		// word prefix inside the title
+		assertEquals("Vinland Saga", index.search("saga", 5).get(0).title());
+		assertEquals("Solo Leveling", index.search("honjaman", 5).get(0).title());
+		assertTrue(index.search("one piece", 5).isEmpty());
+	}
+
+	@Test
+	void queriesTouchingManyEntriesStillCountEachOne() {
+		// every title shares the "saga" trigrams, far more entries than the counts start out with
+		for (int i = 1; i <= 500; i++) index.upsert(tracked(i, "md-" + i, "Saga " + i));
+
+		List<TitleHit> hits = index.search("saga 421", 3);
+		assertEquals("Saga 421", hits.get(0).title());
+		assertEquals(1.0 + 1.0, hits.get(0).score(), 1e-9);
+		assertEquals(500, index.search("saga", 1000).size());
+	}
+
+	@Test
+	void normalizeFoldsCaseDiacriticsAndPunctuation() {
+		assertEquals("pokemon adventures", TrigramTitleIndex.normalize("Pokémon: Adventures!"));
+		assertEquals("dr stone", TrigramTitleIndex.normalize("  Dr. STONE "));
+	}
+
+	@Test
+	void trackedTitleReplacesRemoteResult() {
+		index.offer(remote("md-1", "Berserk"));
+		assertEquals(null, index.search("berserk", 5).get(0).mangaId());
+
+		index.upsert(tracked(7, "md-1", "Berserk"));
+		// a later search result must not demote the tracked row
+		index.offer(remote("md-1", "Berserk"));
+
+		List<TitleHit> hits = index.search("berserk", 5);
+		assertEquals(1, hits.size());
+		assertEquals(7L, hits.get(0).mangaId());
+	}
+
+	@Test
+	void removedTitlesAreGone() {
+		index.upsert(tracked(1, "md-1", "Berserk"));
+		index.upsert(tracked(2, "md-2", "Berserk of Gluttony"));
+		index.remove("md-1");
+
+		List<TitleHit> hits = index.search("berserk", 5);
+		assertEquals(1, hits.size());
+		assertEquals("Berserk of Gluttony", hits.get(0).title());
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void oldestRemoteTitlesAreDroppedPastTheCap() {
+		TitleSearchProperties props = new TitleSearchProperties();
+		props.setMaxRemote(2);
+		TrigramTitleIndex small = new TrigramTitleIndex(props);
+		small.upsert(tracked(1, "md-0", "Monster"));
+		small.offer(remote("md-1", "Berserk"));
+		small.offer(remote("md-2", "Vagabond"));
+		small.offer(remote("md-3", "Kingdom"));
+
+		assertTrue(small.search("berserk", 5).isEmpty());
+		assertEquals(3, small.size());
+		assertEquals("Monster", small.search("monster", 5).get(0).title());
+	}
+}